@@ -0,0 +1,108 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ohmdb.benchmarks;
+
+import com.ohmdb.api.Db;
+import com.ohmdb.api.Table;
+import griffon.plugins.ohmdb.DbFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to open a populated dataSource with {@code preload = "none"} and {@code preload = "sequential"}. Both
+ * dataSources point to the same file. The OS page cache is dropped before every iteration through
+ * {@code /proc/sys/vm/drop_caches}, hence the benchmark runs on Linux only, as root; it fails rather than report
+ * warm-cache numbers elsewhere.
+ *
+ * @author Andres Almiray
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class ColdStartBenchmark {
+    private static final String DATASOURCE = "coldstart";
+    private static final String DROP_CACHES = "/proc/sys/vm/drop_caches";
+
+    @Param({"none", "sequential"})
+    public String preload;
+
+    @Param({"100000"})
+    public int rows;
+
+    private BenchmarkApplication application;
+    private DbFactory dbFactory;
+    private String dataSourceName;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        application = BenchmarkApplication.start();
+        dbFactory = application.getInstance(DbFactory.class);
+        dataSourceName = "none".equals(preload) ? DATASOURCE : DATASOURCE + "_" + preload;
+
+        Db db = dbFactory.create(DATASOURCE);
+        Table<Person> people = db.table(Person.class);
+        for (int i = 0; i < rows; i++) {
+            people.insert(new Person("Andres", "Almiray"));
+        }
+        dbFactory.destroy(DATASOURCE, db);
+    }
+
+    @Setup(Level.Iteration)
+    public void dropPageCache() throws Exception {
+        // dirty pages are not dropped, write them out first
+        if (new ProcessBuilder("sync").inheritIO().start().waitFor() != 0) {
+            throw new IllegalStateException("Could not sync file systems before dropping the page cache");
+        }
+        try (Writer writer = new FileWriter(DROP_CACHES)) {
+            writer.write("3");
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not drop the page cache, " + DROP_CACHES + " must be writable (Linux, as root)", e);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        application.stop();
+        new File((String) dbFactory.getConfigurationFor(DATASOURCE).get("name")).delete();
+    }
+
+    @Benchmark
+    public Db open() {
+        Db db = dbFactory.create(dataSourceName);
+        dbFactory.destroy(dataSourceName, db);
+        return db;
+    }
+}
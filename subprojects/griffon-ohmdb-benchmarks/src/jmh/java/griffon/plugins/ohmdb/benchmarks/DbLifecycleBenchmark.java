@@ -0,0 +1,66 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ohmdb.benchmarks;
+
+import com.ohmdb.api.Db;
+import griffon.plugins.ohmdb.DbFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@code DbFactory.create} followed by {@code DbFactory.destroy}, i.e. a full open/shutdown cycle
+ * including lifecycle events and bootstrap hooks.
+ *
+ * @author Andres Almiray
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DbLifecycleBenchmark {
+    private static final String DATASOURCE = "lifecycle";
+
+    private BenchmarkApplication application;
+    private DbFactory dbFactory;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        application = BenchmarkApplication.start();
+        dbFactory = application.getInstance(DbFactory.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        application.stop();
+    }
+
+    @Benchmark
+    public Db createAndDestroy() {
+        Db db = dbFactory.create(DATASOURCE);
+        dbFactory.destroy(DATASOURCE, db);
+        return db;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ohmdb.benchmarks;
+
+import com.ohmdb.api.Db;
+import com.ohmdb.api.Table;
+import griffon.annotations.core.Nonnull;
+import griffon.plugins.ohmdb.DbCallback;
+import griffon.plugins.ohmdb.DbHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares going through {@code DbHandler.withOhmdb} against invoking the same work on the raw {@code Db}.
+ * The difference between each pair of benchmarks is the plugin's dispatch overhead.
+ *
+ * @author Andres Almiray
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DispatchBenchmark {
+    private static final String DATASOURCE = "people";
+
+    private BenchmarkApplication application;
+    private DbHandler dbHandler;
+    private Db db;
+    private long id;
+
+    private final DbCallback<Db> noop = new DbCallback<Db>() {
+        @Override
+        public Db handle(@Nonnull String dataSourceName, @Nonnull Db db) {
+            return db;
+        }
+    };
+
+    private final DbCallback<Person> lookup = new DbCallback<Person>() {
+        @Override
+        public Person handle(@Nonnull String dataSourceName, @Nonnull Db db) {
+            return db.table(Person.class).get(id);
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        application = BenchmarkApplication.start();
+        dbHandler = application.getInstance(DbHandler.class);
+        db = dbHandler.withOhmdb(DATASOURCE, noop);
+        Table<Person> people = db.table(Person.class);
+        id = people.insert(new Person("Andres", "Almiray"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dbHandler.closeOhmdb(DATASOURCE);
+        application.stop();
+    }
+
+    @Benchmark
+    public Db noopRaw() {
+        return noop.handle(DATASOURCE, db);
+    }
+
+    @Benchmark
+    public Db noopWithOhmdb() {
+        return dbHandler.withOhmdb(DATASOURCE, noop);
+    }
+
+    @Benchmark
+    public Person lookupRaw() {
+        return lookup.handle(DATASOURCE, db);
+    }
+
+    @Benchmark
+    public Person lookupWithOhmdb() {
+        return dbHandler.withOhmdb(DATASOURCE, lookup);
+    }
+}
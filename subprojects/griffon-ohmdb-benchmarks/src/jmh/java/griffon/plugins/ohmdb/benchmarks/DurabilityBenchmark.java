@@ -0,0 +1,86 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ohmdb.benchmarks;
+
+import com.ohmdb.api.Db;
+import griffon.annotations.core.Nonnull;
+import griffon.plugins.ohmdb.DbCallback;
+import griffon.plugins.ohmdb.DbHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and latency distribution of {@code withOhmdbWrite} inserts under each {@code durability} mode,
+ * with 1 and 16 concurrent writers.
+ *
+ * @author Andres Almiray
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DurabilityBenchmark {
+    @Param({"sync", "group_commit", "async"})
+    public String durability;
+
+    private BenchmarkApplication application;
+    private DbHandler dbHandler;
+    private String dataSourceName;
+
+    private final DbCallback<Long> insert = new DbCallback<Long>() {
+        @Override
+        public Long handle(@Nonnull String dataSourceName, @Nonnull Db db) {
+            return db.table(Person.class).insert(new Person("Andres", "Almiray"));
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        application = BenchmarkApplication.start();
+        dbHandler = application.getInstance(DbHandler.class);
+        dataSourceName = "durability_" + durability;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dbHandler.closeOhmdb(dataSourceName);
+        application.stop();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Long insert_01() {
+        return dbHandler.withOhmdbWrite(dataSourceName, insert);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Long insert_16() {
+        return dbHandler.withOhmdbWrite(dataSourceName, insert);
+    }
+}
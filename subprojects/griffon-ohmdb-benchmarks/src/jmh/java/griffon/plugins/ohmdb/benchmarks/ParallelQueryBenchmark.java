@@ -0,0 +1,128 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ohmdb.benchmarks;
+
+import com.ohmdb.api.Db;
+import com.ohmdb.api.Table;
+import griffon.annotations.core.Nonnull;
+import griffon.plugins.ohmdb.DbCallback;
+import griffon.plugins.ohmdb.DbHandler;
+import griffon.plugins.ohmdb.DbQueryExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Group-by count over a populated table: a sequential loop over {@code Table.getAll} against
+ * {@code DbQueryExecutor} with {@code query_parallelism} set to 1, 4 and the number of cores.
+ *
+ * @author Andres Almiray
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ParallelQueryBenchmark {
+    private static final String DATASOURCE = "query";
+
+    @Param({"1", "4", "cores"})
+    public String parallelism;
+
+    @Param({"500000"})
+    public int rows;
+
+    private BenchmarkApplication application;
+    private DbHandler dbHandler;
+    private DbQueryExecutor dbQueryExecutor;
+    private String dataSourceName;
+
+    private final DbCallback<Map<String, Long>> sequential = new DbCallback<Map<String, Long>>() {
+        @Override
+        public Map<String, Long> handle(@Nonnull String dataSourceName, @Nonnull Db db) {
+            Table<Person> people = db.table(Person.class);
+            List<Person> records = people.getAll(people.ids());
+            Map<String, Long> counts = new HashMap<>();
+            for (Person person : records) {
+                if (person != null && person.getName().length() > 5) {
+                    counts.merge(person.getLastname(), 1L, Long::sum);
+                }
+            }
+            return counts;
+        }
+    };
+
+    private final DbCallback<Map<String, Long>> parallel = new DbCallback<Map<String, Long>>() {
+        @Override
+        public Map<String, Long> handle(@Nonnull String dataSourceName, @Nonnull Db db) {
+            return dbQueryExecutor.collect(dataSourceName, db, Person.class,
+                person -> person.getName().length() > 5,
+                Collectors.groupingBy(Person::getLastname, Collectors.counting()));
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        application = BenchmarkApplication.start();
+        dbHandler = application.getInstance(DbHandler.class);
+        dbQueryExecutor = application.getInstance(DbQueryExecutor.class);
+        dataSourceName = DATASOURCE + "_" + parallelism;
+
+        dbHandler.withOhmdb(dataSourceName, new DbCallback<Void>() {
+            @Override
+            public Void handle(@Nonnull String dataSourceName, @Nonnull Db db) {
+                Table<Person> people = db.table(Person.class);
+                for (int i = 0; i < rows; i++) {
+                    people.insert(new Person("name" + i, "lastname" + (i % 100)));
+                }
+                return null;
+            }
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dbHandler.closeOhmdb(dataSourceName);
+        application.stop();
+    }
+
+    @Benchmark
+    public Map<String, Long> sequential() {
+        return dbHandler.withOhmdb(dataSourceName, sequential);
+    }
+
+    @Benchmark
+    public Map<String, Long> parallel() {
+        return dbHandler.withOhmdb(dataSourceName, parallel);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ohmdb.benchmarks;
+
+import com.ohmdb.api.Db;
+import com.ohmdb.api.Table;
+import griffon.annotations.core.Nonnull;
+import griffon.plugins.ohmdb.DbCallback;
+import griffon.plugins.ohmdb.DbHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@code Table.insert} and {@code Table.getAll} through {@code DbHandler.withOhmdb}
+ * with 1, 4 and 16 concurrent callers.
+ *
+ * @author Andres Almiray
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TableBenchmark {
+    private static final String DATASOURCE = "people";
+
+    @Param({"1000"})
+    public int rows;
+
+    private BenchmarkApplication application;
+    private DbHandler dbHandler;
+    private long[] ids;
+
+    private final DbCallback<Long> insert = new DbCallback<Long>() {
+        @Override
+        public Long handle(@Nonnull String dataSourceName, @Nonnull Db db) {
+            return db.table(Person.class).insert(new Person("Andres", "Almiray"));
+        }
+    };
+
+    private final DbCallback<Object> getAll = new DbCallback<Object>() {
+        @Override
+        public Object handle(@Nonnull String dataSourceName, @Nonnull Db db) {
+            return db.table(Person.class).getAll(ids);
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        application = BenchmarkApplication.start();
+        dbHandler = application.getInstance(DbHandler.class);
+        ids = dbHandler.withOhmdb(DATASOURCE, new DbCallback<long[]>() {
+            @Override
+            public long[] handle(@Nonnull String dataSourceName, @Nonnull Db db) {
+                Table<Person> people = db.table(Person.class);
+                long[] ids = new long[rows];
+                for (int i = 0; i < rows; i++) {
+                    ids[i] = people.insert(new Person("name" + i, "lastname" + i));
+                }
+                return ids;
+            }
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dbHandler.closeOhmdb(DATASOURCE);
+        application.stop();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Long insert_01() {
+        return dbHandler.withOhmdb(DATASOURCE, insert);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Long insert_04() {
+        return dbHandler.withOhmdb(DATASOURCE, insert);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Long insert_16() {
+        return dbHandler.withOhmdb(DATASOURCE, insert);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object getAll_01() {
+        return dbHandler.withOhmdb(DATASOURCE, getAll);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object getAll_04() {
+        return dbHandler.withOhmdb(DATASOURCE, getAll);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Object getAll_16() {
+        return dbHandler.withOhmdb(DATASOURCE, getAll);
+    }
+}
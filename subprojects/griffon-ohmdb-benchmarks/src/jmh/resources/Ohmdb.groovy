@@ -0,0 +1,70 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+dataSource {
+    name = 'build/benchmarks/${application_name}-default.bin'
+    delete = true
+}
+
+dataSources {
+    lifecycle {
+        name = 'build/benchmarks/${application_name}-lifecycle.bin'
+        delete = true
+    }
+    people {
+        name = 'build/benchmarks/${application_name}-people.bin'
+        delete = true
+    }
+    durability_sync {
+        name = 'build/benchmarks/${application_name}-durability-sync.bin'
+        delete = true
+        durability = 'sync'
+    }
+    durability_group_commit {
+        name = 'build/benchmarks/${application_name}-durability-group-commit.bin'
+        delete = true
+        durability = 'group_commit'
+        group_commit_window = 2
+    }
+    durability_async {
+        name = 'build/benchmarks/${application_name}-durability-async.bin'
+        delete = true
+        durability = 'async'
+    }
+    query_1 {
+        name = 'build/benchmarks/${application_name}-query-1.bin'
+        delete = true
+        query_parallelism = 1
+    }
+    query_4 {
+        name = 'build/benchmarks/${application_name}-query-4.bin'
+        delete = true
+        query_parallelism = 4
+    }
+    query_cores {
+        name = 'build/benchmarks/${application_name}-query-cores.bin'
+        delete = true
+        query_parallelism = Runtime.runtime.availableProcessors()
+    }
+    coldstart {
+        name = 'build/benchmarks/${application_name}-coldstart.bin'
+    }
+    coldstart_sequential {
+        name = 'build/benchmarks/${application_name}-coldstart.bin'
+        preload = 'sequential'
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ohmdb;
+
+import com.ohmdb.api.Table;
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+
+import java.util.List;
+
+/**
+ * Read-through view of a {@code Table}. Lookups are served from a bounded in-memory cache when possible;
+ * writes go straight to the underlying table and update the cache accordingly.
+ * <p>
+ * Records are copied in and out of the cache (shallow copies of their fields), changing an instance returned by this
+ * table affects neither the cache nor other callers until it is written back with {@link #update(Object)}.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public interface CachedTable<T> {
+    @Nonnull
+    Table<T> getTable();
+
+    @Nullable
+    T get(long id);
+
+    @Nonnull
+    List<T> getAll(@Nonnull long... ids);
+
+    long insert(@Nonnull T record);
+
+    void update(@Nonnull T record);
+
+    void delete(long id);
+
+    void invalidate(long id);
+
+    void invalidateAll();
+}
@@ -0,0 +1,57 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ohmdb;
+
+import griffon.annotations.core.Nonnull;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Collects writes on a single table from many producer threads and applies them in groups,
+ * each group within a single {@code withOhmdbWrite} interaction. A group is flushed as soon as it
+ * reaches {@code batch_size} operations or when {@code batch_window} milliseconds have passed
+ * since its first operation was queued, whichever happens first.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public interface DbBatchWriter<T> {
+    @Nonnull
+    String getDataSourceName();
+
+    @Nonnull
+    Class<T> getType();
+
+    /**
+     * Queues an insert. The returned future completes with the id of the new record.
+     */
+    @Nonnull
+    CompletableFuture<Long> insert(@Nonnull T record);
+
+    @Nonnull
+    CompletableFuture<Void> update(@Nonnull T record);
+
+    @Nonnull
+    CompletableFuture<Void> delete(long id);
+
+    /**
+     * Forces all operations queued so far to be written. The returned future completes once they are.
+     */
+    @Nonnull
+    CompletableFuture<Void> flush();
+}
@@ -0,0 +1,39 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ohmdb;
+
+import com.ohmdb.api.Db;
+import griffon.annotations.core.Nonnull;
+
+/**
+ * Hands out {@code CachedTable} instances, one cache per dataSource and table type. Caches are sized with the
+ * {@code cache_size} and {@code cache_ttl} settings of the dataSource; a {@code cache_size} of {@code 0} disables caching.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public interface DbCacheManager {
+    @Nonnull
+    <T> CachedTable<T> table(@Nonnull String dataSourceName, @Nonnull Db db, @Nonnull Class<T> type);
+
+    void invalidate(@Nonnull String dataSourceName);
+
+    void invalidate(@Nonnull String dataSourceName, @Nonnull Class<?> type, long id);
+
+    void invalidateAll();
+}
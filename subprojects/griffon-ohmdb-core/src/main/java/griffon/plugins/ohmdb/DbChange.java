@@ -0,0 +1,91 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ohmdb;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A single write made to a table, as delivered by {@code DbChangeCapture}.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public final class DbChange {
+    public enum Operation {
+        INSERT, UPDATE, DELETE
+    }
+
+    private final long sequence;
+    private final String dataSourceName;
+    private final Class<?> type;
+    private final Operation operation;
+    private final long id;
+    private final Object record;
+
+    public DbChange(long sequence, @Nonnull String dataSourceName, @Nonnull Class<?> type, @Nonnull Operation operation, long id, @Nullable Object record) {
+        this.sequence = sequence;
+        this.dataSourceName = requireNonBlank(dataSourceName, "Argument 'dataSourceName' must not be blank");
+        this.type = requireNonNull(type, "Argument 'type' must not be null");
+        this.operation = requireNonNull(operation, "Argument 'operation' must not be null");
+        this.id = id;
+        this.record = record;
+    }
+
+    /**
+     * Position of this change within the changes of its dataSource. Sequences grow by one with every change.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    @Nonnull
+    public String getDataSourceName() {
+        return dataSourceName;
+    }
+
+    @Nonnull
+    public Class<?> getType() {
+        return type;
+    }
+
+    @Nonnull
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * The record as it was written, {@code null} for deletes.
+     */
+    @Nullable
+    public Object getRecord() {
+        return record;
+    }
+
+    @Override
+    public String toString() {
+        return "DbChange[" + sequence + ", " + dataSourceName + ", " + operation + " " + type.getName() + "#" + id + "]";
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ohmdb;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+
+/**
+ * Publishes the inserts, updates and deletes made to the tables of a dataSource.
+ * <p>
+ * Writes made through {@code CachedTable}, {@code IndexedTable}, {@code DbBatchWriter}, {@code importInto} and
+ * {@code DbSnapshotManager.restore} are captured automatically. Code writing to a {@code Table} directly may call
+ * {@link #publish} itself.
+ * <p>
+ * Changes are kept in a bounded ring buffer per dataSource, sized with {@code cdc_buffer_size}. Every listener reads
+ * the buffer at its own pace on a thread of its own and receives up to {@code cdc_batch_size} changes at a time.
+ * Writers never wait for listeners: a listener that falls behind by more than the size of the buffer loses the
+ * oldest changes and is told so. Changes are not captured while a dataSource has no listeners.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public interface DbChangeCapture {
+    /**
+     * Registers a listener for changes made from now on to the given dataSource.
+     */
+    void subscribe(@Nonnull String dataSourceName, @Nonnull DbChangeListener listener);
+
+    void unsubscribe(@Nonnull String dataSourceName, @Nonnull DbChangeListener listener);
+
+    void publish(@Nonnull String dataSourceName, @Nonnull DbChange.Operation operation, @Nonnull Class<?> type, long id, @Nullable Object record);
+
+    /**
+     * Stops every listener once it has received the changes published so far.
+     */
+    void shutdown();
+}
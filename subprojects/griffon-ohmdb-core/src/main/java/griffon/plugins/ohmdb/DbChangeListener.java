@@ -0,0 +1,41 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ohmdb;
+
+import griffon.annotations.core.Nonnull;
+
+import java.util.List;
+
+/**
+ * Receives the changes captured on a dataSource, in batches and in the order they were made.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+@FunctionalInterface
+public interface DbChangeListener {
+    void onChanges(@Nonnull String dataSourceName, @Nonnull List<DbChange> changes);
+
+    /**
+     * Called when this listener fell so far behind that {@code count} changes were overwritten before it could
+     * receive them. Delivery resumes with the oldest change still available.
+     */
+    default void onChangesLost(@Nonnull String dataSourceName, long count) {
+        // empty
+    }
+}
@@ -20,7 +20,16 @@ package griffon.plugins.ohmdb;
 import griffon.annotations.core.Nonnull;
 import griffon.annotations.core.Nullable;
 
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 /**
+ * Every variant added after {@code withOhmdb} and {@code closeOhmdb} comes with a default implementation, so that
+ * existing implementations keep compiling: callback variants delegate to {@code withOhmdb} on the calling thread,
+ * batch writers and imports are not supported.
+ *
  * @author Andres Almiray
  */
 public interface DbHandler {
@@ -31,8 +40,86 @@ public interface DbHandler {
     @Nullable
     <R> R withOhmdb(@Nonnull String dataSourceName, @Nonnull DbCallback<R> callback);
 
+    @Nullable
+    default <R> R withOhmdbRead(@Nonnull DbCallback<R> callback) {
+        return withOhmdb(callback);
+    }
+
+    @Nullable
+    default <R> R withOhmdbRead(@Nonnull String dataSourceName, @Nonnull DbCallback<R> callback) {
+        return withOhmdb(dataSourceName, callback);
+    }
+
+    @Nullable
+    default <R> R withOhmdbReplica(@Nonnull DbCallback<R> callback) {
+        return withOhmdb(callback);
+    }
+
+    @Nullable
+    default <R> R withOhmdbReplica(@Nonnull String dataSourceName, @Nonnull DbCallback<R> callback) {
+        return withOhmdb(dataSourceName, callback);
+    }
+
+    @Nullable
+    default <R> R withOhmdbWrite(@Nonnull DbCallback<R> callback) {
+        return withOhmdb(callback);
+    }
+
+    @Nullable
+    default <R> R withOhmdbWrite(@Nonnull String dataSourceName, @Nonnull DbCallback<R> callback) {
+        return withOhmdb(dataSourceName, callback);
+    }
+
+    @Nonnull
+    default <R> CompletableFuture<R> withOhmdbAsync(@Nonnull DbCallback<R> callback) {
+        return CompletableFuture.supplyAsync(() -> withOhmdb(callback), Runnable::run);
+    }
+
+    @Nonnull
+    default <R> CompletableFuture<R> withOhmdbAsync(@Nonnull String dataSourceName, @Nonnull DbCallback<R> callback) {
+        return CompletableFuture.supplyAsync(() -> withOhmdb(dataSourceName, callback), Runnable::run);
+    }
+
+    @Nullable
+    default <R> R withOhmdbShard(@Nonnull Object key, @Nonnull DbCallback<R> callback) {
+        return withOhmdb(callback);
+    }
+
+    @Nullable
+    default <R> R withOhmdbShard(@Nonnull String dataSourceName, @Nonnull Object key, @Nonnull DbCallback<R> callback) {
+        return withOhmdb(dataSourceName, callback);
+    }
+
+    @Nonnull
+    default <R> List<R> withOhmdbShards(@Nonnull DbCallback<R> callback) {
+        return Collections.singletonList(withOhmdb(callback));
+    }
+
+    @Nonnull
+    default <R> List<R> withOhmdbShards(@Nonnull String dataSourceName, @Nonnull DbCallback<R> callback) {
+        return Collections.singletonList(withOhmdb(dataSourceName, callback));
+    }
+
+    @Nonnull
+    default <T> DbBatchWriter<T> withOhmdbBatch(@Nonnull Class<T> type) {
+        throw new UnsupportedOperationException(getClass().getName() + " does not support batch writers");
+    }
+
+    @Nonnull
+    default <T> DbBatchWriter<T> withOhmdbBatch(@Nonnull String dataSourceName, @Nonnull Class<T> type) {
+        throw new UnsupportedOperationException(getClass().getName() + " does not support batch writers");
+    }
+
+    default <T> long importInto(@Nonnull Class<T> type, @Nonnull InputStream input, @Nonnull ImportFormat format) {
+        throw new UnsupportedOperationException(getClass().getName() + " does not support imports");
+    }
+
+    default <T> long importInto(@Nonnull String dataSourceName, @Nonnull Class<T> type, @Nonnull InputStream input, @Nonnull ImportFormat format) {
+        throw new UnsupportedOperationException(getClass().getName() + " does not support imports");
+    }
+
     void closeOhmdb();
 
     void closeOhmdb(@Nonnull String dataSourceName);
     // end::methods[]
-}
\ No newline at end of file
+}
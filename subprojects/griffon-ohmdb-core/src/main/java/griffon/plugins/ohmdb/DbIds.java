@@ -0,0 +1,129 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ohmdb;
+
+import com.ohmdb.api.Table;
+import griffon.annotations.core.Nonnull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.function.Consumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Bulk operations over record ids that avoid boxing ids and materializing whole tables. Records are fetched with
+ * {@code Table.getAll} in batches of {@link #DEFAULT_BATCH_SIZE} ids, reusing the same id buffer for every batch.
+ * Records deleted since their ids were collected are skipped.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public final class DbIds {
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    private DbIds() {
+        // prevent instantiation
+    }
+
+    @Nonnull
+    public static IdBitmap ids(@Nonnull Table<?> table) {
+        requireNonNull(table, "Argument 'table' must not be null");
+        long[] ids = table.ids();
+        return ids != null ? IdBitmap.of(ids) : new IdBitmap();
+    }
+
+    @Nonnull
+    public static <T> List<T> getAll(@Nonnull Table<T> table, @Nonnull IdBitmap ids) {
+        requireNonNull(ids, "Argument 'ids' must not be null");
+        long cardinality = ids.cardinality();
+        List<T> records = new ArrayList<>((int) Math.min(cardinality, Integer.MAX_VALUE - 8));
+        forEach(table, ids, DEFAULT_BATCH_SIZE, records::add);
+        return records;
+    }
+
+    public static <T> void forEach(@Nonnull Table<T> table, @Nonnull IdBitmap ids, @Nonnull Consumer<? super T> consumer) {
+        forEach(table, ids, DEFAULT_BATCH_SIZE, consumer);
+    }
+
+    public static <T> void forEach(@Nonnull Table<T> table, @Nonnull IdBitmap ids, int batchSize, @Nonnull Consumer<? super T> consumer) {
+        requireNonNull(table, "Argument 'table' must not be null");
+        requireNonNull(ids, "Argument 'ids' must not be null");
+        requireNonNull(consumer, "Argument 'consumer' must not be null");
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Argument 'batchSize' must be positive: " + batchSize);
+        }
+
+        long[] batch = new long[(int) Math.min(batchSize, Math.max(1L, ids.cardinality()))];
+        int size = 0;
+        PrimitiveIterator.OfLong iterator = ids.iterator();
+        while (iterator.hasNext()) {
+            batch[size++] = iterator.nextLong();
+            if (size == batch.length) {
+                fetch(table, batch, consumer);
+                size = 0;
+            }
+        }
+        if (size > 0) {
+            fetch(table, Arrays.copyOf(batch, size), consumer);
+        }
+    }
+
+    @Nonnull
+    public static IdBitmap intersect(@Nonnull IdBitmap first, @Nonnull IdBitmap... others) {
+        requireNonNull(others, "Argument 'others' must not be null");
+        IdBitmap result = requireNonNull(first, "Argument 'first' must not be null");
+        for (IdBitmap other : others) {
+            result = IdBitmap.and(result, other);
+        }
+        return result == first ? first.copy() : result;
+    }
+
+    @Nonnull
+    public static IdBitmap union(@Nonnull IdBitmap first, @Nonnull IdBitmap... others) {
+        requireNonNull(others, "Argument 'others' must not be null");
+        IdBitmap result = requireNonNull(first, "Argument 'first' must not be null");
+        for (IdBitmap other : others) {
+            result = IdBitmap.or(result, other);
+        }
+        return result == first ? first.copy() : result;
+    }
+
+    @Nonnull
+    public static IdBitmap difference(@Nonnull IdBitmap first, @Nonnull IdBitmap... others) {
+        requireNonNull(others, "Argument 'others' must not be null");
+        IdBitmap result = requireNonNull(first, "Argument 'first' must not be null");
+        for (IdBitmap other : others) {
+            result = IdBitmap.andNot(result, other);
+        }
+        return result == first ? first.copy() : result;
+    }
+
+    private static <T> void fetch(@Nonnull Table<T> table, @Nonnull long[] batch, @Nonnull Consumer<? super T> consumer) {
+        List<T> records = table.getAll(batch);
+        if (records != null) {
+            for (T record : records) {
+                if (record != null) {
+                    consumer.accept(record);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ohmdb;
+
+import com.ohmdb.api.Db;
+import griffon.annotations.core.Nonnull;
+
+/**
+ * Hands out {@code IndexedTable} instances. Indexes are declared per dataSource with the {@code indexes} setting,
+ * a map of entity class names to property names, or with {@link Indexed} on entity fields. Indexes of the types
+ * listed in {@code indexes} and {@code tables} are built as soon as the dataSource is opened; other types are
+ * indexed the first time they are requested.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public interface DbIndexManager {
+    @Nonnull
+    <T> IndexedTable<T> table(@Nonnull String dataSourceName, @Nonnull Db db, @Nonnull Class<T> type);
+
+    void rebuild(@Nonnull String dataSourceName);
+}
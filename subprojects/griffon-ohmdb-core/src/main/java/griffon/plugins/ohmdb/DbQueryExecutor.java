@@ -0,0 +1,45 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ohmdb;
+
+import com.ohmdb.api.Db;
+import griffon.annotations.core.Nonnull;
+
+import java.util.function.Predicate;
+import java.util.stream.Collector;
+
+/**
+ * Evaluates filters and reductions over whole tables in parallel. The ids of the table are split recursively across a
+ * fork-join pool dedicated to the dataSource; each leaf fetches its records in chunks, accumulates the matching ones
+ * into its own container and containers are merged with the collector's combiner, in id order.
+ * <p>
+ * Any {@code Collector} works, for example {@code Collectors.groupingBy} or {@code Collectors.summingLong}. Filters
+ * and collectors run concurrently and must not modify records.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public interface DbQueryExecutor {
+    <T, A, R> R collect(@Nonnull String dataSourceName, @Nonnull Db db, @Nonnull Class<T> type, @Nonnull Collector<? super T, A, R> collector);
+
+    <T, A, R> R collect(@Nonnull String dataSourceName, @Nonnull Db db, @Nonnull Class<T> type, @Nonnull Predicate<? super T> filter, @Nonnull Collector<? super T, A, R> collector);
+
+    <T> long count(@Nonnull String dataSourceName, @Nonnull Db db, @Nonnull Class<T> type, @Nonnull Predicate<? super T> filter);
+
+    void shutdown();
+}
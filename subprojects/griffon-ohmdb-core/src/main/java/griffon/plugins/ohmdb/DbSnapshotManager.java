@@ -0,0 +1,49 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ohmdb;
+
+import griffon.annotations.core.Nonnull;
+
+import java.nio.file.Path;
+
+/**
+ * Writes the contents of a dataSource to a snapshot file and restores it later.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public interface DbSnapshotManager {
+    /**
+     * Writes every record of the given tables to {@code target}. The ids of all tables are read at once, writes wait
+     * only for that; records are then read a chunk at a time. The snapshot is not a point-in-time view: records
+     * inserted meanwhile are left out, records deleted meanwhile are skipped, and records updated meanwhile may be
+     * written with either value. The file is replaced atomically once complete.
+     *
+     * @return the number of records written
+     */
+    long snapshot(@Nonnull String dataSourceName, @Nonnull Path target, @Nonnull Class<?>... types);
+
+    /**
+     * Inserts every record found in {@code source} into the given dataSource. The tables being restored must be empty.
+     * Records receive new ids, assigned in the order they were written; ids stored in other records, or anywhere
+     * outside the dataSource, no longer refer to the records they referred to when the snapshot was taken.
+     *
+     * @return the number of records inserted
+     */
+    long restore(@Nonnull String dataSourceName, @Nonnull Path source);
+}
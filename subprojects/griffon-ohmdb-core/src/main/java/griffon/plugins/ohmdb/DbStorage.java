@@ -18,10 +18,27 @@
 package griffon.plugins.ohmdb;
 
 import com.ohmdb.api.Db;
+import griffon.annotations.core.Nonnull;
 import griffon.core.storage.ObjectStorage;
 
+import java.util.List;
+
 /**
  * @author Andres Almiray
  */
 public interface DbStorage extends ObjectStorage<Db> {
+    /**
+     * Returns the number of milliseconds since the named instance was last retrieved, or {@code -1} if it is not stored.
+     *
+     * @since 3.0.0
+     */
+    long getIdleTime(@Nonnull String name);
+
+    /**
+     * Returns the names of all stored instances, least recently used first.
+     *
+     * @since 3.0.0
+     */
+    @Nonnull
+    List<String> getKeysByLeastRecentUse();
 }
@@ -0,0 +1,89 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ohmdb;
+
+import com.ohmdb.api.Db;
+import com.ohmdb.api.Table;
+import griffon.annotations.core.Nonnull;
+
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Lazy streams over the records of a table. Records are fetched with {@code Table.getAll} one chunk of ids at a time
+ * as the stream is consumed, hence at most one chunk per thread is held in memory; short-circuiting operations such as
+ * {@code findFirst} or {@code limit} stop fetching right away. Only the ids of the table are read upfront.
+ * <p>
+ * Parallel streams split the ids in halves for the fork-join pool, each half fetching its own chunks. Records deleted
+ * while the stream is consumed are skipped.
+ * <p>
+ * Streams must be consumed within the callback that provided the {@code Db}.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public final class DbStreams {
+    public static final int DEFAULT_CHUNK_SIZE = 512;
+
+    private DbStreams() {
+        // prevent instantiation
+    }
+
+    @Nonnull
+    public static <T> Stream<T> stream(@Nonnull Db db, @Nonnull Class<T> type) {
+        requireNonNull(db, "Argument 'db' must not be null");
+        requireNonNull(type, "Argument 'type' must not be null");
+        return stream(db.table(type));
+    }
+
+    @Nonnull
+    public static <T> Stream<T> stream(@Nonnull Table<T> table) {
+        return stream(table, DEFAULT_CHUNK_SIZE);
+    }
+
+    @Nonnull
+    public static <T> Stream<T> stream(@Nonnull Table<T> table, int chunkSize) {
+        requireNonNull(table, "Argument 'table' must not be null");
+        long[] ids = table.ids();
+        return stream(table, ids != null ? ids : new long[0], chunkSize);
+    }
+
+    @Nonnull
+    public static <T> Stream<T> stream(@Nonnull Table<T> table, @Nonnull IdBitmap ids) {
+        requireNonNull(ids, "Argument 'ids' must not be null");
+        return stream(table, ids.toArray(), DEFAULT_CHUNK_SIZE);
+    }
+
+    @Nonnull
+    public static <T> Stream<T> stream(@Nonnull Table<T> table, @Nonnull long[] ids, int chunkSize) {
+        return StreamSupport.stream(spliterator(table, ids, chunkSize), false);
+    }
+
+    @Nonnull
+    public static <T> Spliterator<T> spliterator(@Nonnull Table<T> table, @Nonnull long[] ids, int chunkSize) {
+        requireNonNull(table, "Argument 'table' must not be null");
+        requireNonNull(ids, "Argument 'ids' must not be null");
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Argument 'chunkSize' must be positive: " + chunkSize);
+        }
+        return new TableSpliterator<>(table, ids, 0, ids.length, chunkSize);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ohmdb;
+
+import griffon.annotations.core.Nonnull;
+
+import java.util.Locale;
+
+/**
+ * When writes made through {@code withOhmdb} and {@code withOhmdbWrite} (and therefore {@code DbBatchWriter}) are
+ * forced to disk. Only what Ohmdb has handed to the operating system by the time a callback returns is forced.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public enum Durability {
+    /**
+     * The dataSource file is forced to disk before every write callback returns. The file is forced through a
+     * separate {@code FileChannel}; writes Ohmdb still buffers in process are not covered.
+     */
+    SYNC,
+
+    /**
+     * Concurrent write callbacks share a single force, issued at most {@code group_commit_window} milliseconds
+     * after the first of them completed. Each callback returns once the file has been forced through a separate
+     * {@code FileChannel}, which covers what Ohmdb handed to the operating system before the callback returned but
+     * not writes Ohmdb still buffers in process.
+     */
+    GROUP_COMMIT,
+
+    /**
+     * Writes reach the disk whenever the operating system flushes them.
+     */
+    ASYNC;
+
+    @Nonnull
+    public static Durability of(@Nonnull String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported durability '" + value + "'. Valid values are 'sync', 'group_commit' and 'async'", e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ohmdb;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Compile time generated access to the properties of an entity. Implementations are generated for classes annotated
+ * with {@code @griffon.transform.ohmdb.OhmdbEntity} and registered as {@code META-INF/services} entries; the plugin
+ * uses them instead of reflection to read ids, to read indexed properties and to populate imported records.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public interface EntityAccessor<T> {
+    @Nonnull
+    Class<T> getType();
+
+    @Nonnull
+    T newInstance();
+
+    long getId(@Nonnull T entity);
+
+    @Nonnull
+    List<String> getProperties();
+
+    @Nullable
+    Class<?> getPropertyType(@Nonnull String property);
+
+    @Nullable
+    Function<T, Object> getter(@Nonnull String property);
+
+    @Nullable
+    BiConsumer<T, Object> setter(@Nonnull String property);
+}
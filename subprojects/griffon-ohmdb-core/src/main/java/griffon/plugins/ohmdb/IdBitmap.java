@@ -0,0 +1,671 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ohmdb;
+
+import griffon.annotations.core.Nonnull;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.LongConsumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Compressed set of record ids. Ids are split in a 48 bit key and a 16 bit offset; the offsets of each key are kept in
+ * a sorted {@code char[]} while sparse, switching to a 8 KB bitmap past 4096 entries. Iteration is always in ascending
+ * id order.
+ * <p>
+ * Unions, intersections and differences work container by container without expanding ids, which makes them
+ * suitable for sets of hundreds of thousands of ids. Ids must not be negative.
+ * <p>
+ * Instances are not thread safe.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public final class IdBitmap {
+    private static final int INITIAL_CAPACITY = 4;
+
+    private long[] keys;
+    private Container[] containers;
+    private int size;
+
+    public IdBitmap() {
+        this(INITIAL_CAPACITY);
+    }
+
+    private IdBitmap(int capacity) {
+        keys = new long[capacity];
+        containers = new Container[capacity];
+    }
+
+    @Nonnull
+    public static IdBitmap of(@Nonnull long... ids) {
+        requireNonNull(ids, "Argument 'ids' must not be null");
+        IdBitmap bitmap = new IdBitmap();
+        for (long id : ids) {
+            bitmap.add(id);
+        }
+        return bitmap;
+    }
+
+    @Nonnull
+    public static IdBitmap of(@Nonnull LongIdSet ids) {
+        requireNonNull(ids, "Argument 'ids' must not be null");
+        IdBitmap bitmap = new IdBitmap();
+        ids.forEach(bitmap::add);
+        return bitmap;
+    }
+
+    public boolean add(long id) {
+        long key = keyOf(id);
+        char low = (char) id;
+        int i = indexOf(key);
+        if (i >= 0) {
+            Container container = containers[i];
+            int cardinality = container.cardinality();
+            containers[i] = container.add(low);
+            return containers[i].cardinality() > cardinality;
+        }
+        insertAt(-i - 1, key, new ArrayContainer().add(low));
+        return true;
+    }
+
+    public boolean remove(long id) {
+        if (id < 0) {
+            return false;
+        }
+        int i = indexOf(id >>> 16);
+        if (i < 0) {
+            return false;
+        }
+        Container container = containers[i];
+        int cardinality = container.cardinality();
+        container = container.remove((char) id);
+        if (container.cardinality() == 0) {
+            removeAt(i);
+        } else {
+            containers[i] = container;
+        }
+        return container.cardinality() < cardinality;
+    }
+
+    public boolean contains(long id) {
+        if (id < 0) {
+            return false;
+        }
+        int i = indexOf(id >>> 16);
+        return i >= 0 && containers[i].contains((char) id);
+    }
+
+    public long cardinality() {
+        long cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(containers, 0, size, null);
+        size = 0;
+    }
+
+    public void forEach(@Nonnull LongConsumer consumer) {
+        requireNonNull(consumer, "Argument 'consumer' must not be null");
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(keys[i] << 16, consumer);
+        }
+    }
+
+    @Nonnull
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            private int container;
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                while (container < size) {
+                    if (containers[container].nextSetBit(position) >= 0) {
+                        return true;
+                    }
+                    container++;
+                    position = 0;
+                }
+                return false;
+            }
+
+            @Override
+            public long nextLong() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int low = containers[container].nextSetBit(position);
+                position = low + 1;
+                return (keys[container] << 16) | low;
+            }
+        };
+    }
+
+    /**
+     * Copies the ids in ascending order. Prefer {@link #forEach(LongConsumer)} or {@link DbIds} for large sets.
+     */
+    @Nonnull
+    public long[] toArray() {
+        long cardinality = cardinality();
+        if (cardinality > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Too many ids to fit in an array: " + cardinality);
+        }
+        long[] ids = new long[(int) cardinality];
+        int offset = 0;
+        for (int i = 0; i < size; i++) {
+            offset = containers[i].fill(keys[i] << 16, ids, offset);
+        }
+        return ids;
+    }
+
+    @Nonnull
+    public IdBitmap copy() {
+        IdBitmap copy = new IdBitmap(Math.max(INITIAL_CAPACITY, size));
+        for (int i = 0; i < size; i++) {
+            copy.keys[i] = keys[i];
+            copy.containers[i] = containers[i].copy();
+        }
+        copy.size = size;
+        return copy;
+    }
+
+    @Nonnull
+    public static IdBitmap and(@Nonnull IdBitmap a, @Nonnull IdBitmap b) {
+        requireNonNull(a, "Argument 'a' must not be null");
+        requireNonNull(b, "Argument 'b' must not be null");
+        IdBitmap result = new IdBitmap(Math.max(INITIAL_CAPACITY, Math.min(a.size, b.size)));
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size) {
+            int c = Long.compare(a.keys[i], b.keys[j]);
+            if (c < 0) {
+                i++;
+            } else if (c > 0) {
+                j++;
+            } else {
+                result.append(a.keys[i], Container.and(a.containers[i++], b.containers[j++]));
+            }
+        }
+        return result;
+    }
+
+    @Nonnull
+    public static IdBitmap or(@Nonnull IdBitmap a, @Nonnull IdBitmap b) {
+        requireNonNull(a, "Argument 'a' must not be null");
+        requireNonNull(b, "Argument 'b' must not be null");
+        IdBitmap result = new IdBitmap(Math.max(INITIAL_CAPACITY, a.size + b.size));
+        int i = 0;
+        int j = 0;
+        while (i < a.size || j < b.size) {
+            int c = i == a.size ? 1 : j == b.size ? -1 : Long.compare(a.keys[i], b.keys[j]);
+            if (c < 0) {
+                result.append(a.keys[i], a.containers[i++].copy());
+            } else if (c > 0) {
+                result.append(b.keys[j], b.containers[j++].copy());
+            } else {
+                result.append(a.keys[i], Container.or(a.containers[i++], b.containers[j++]));
+            }
+        }
+        return result;
+    }
+
+    @Nonnull
+    public static IdBitmap andNot(@Nonnull IdBitmap a, @Nonnull IdBitmap b) {
+        requireNonNull(a, "Argument 'a' must not be null");
+        requireNonNull(b, "Argument 'b' must not be null");
+        IdBitmap result = new IdBitmap(Math.max(INITIAL_CAPACITY, a.size));
+        int i = 0;
+        int j = 0;
+        while (i < a.size) {
+            int c = j == b.size ? -1 : Long.compare(a.keys[i], b.keys[j]);
+            if (c < 0) {
+                result.append(a.keys[i], a.containers[i++].copy());
+            } else if (c > 0) {
+                j++;
+            } else {
+                result.append(a.keys[i], Container.andNot(a.containers[i++], b.containers[j++]));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof IdBitmap)) {
+            return false;
+        }
+        IdBitmap other = (IdBitmap) o;
+        if (size != other.size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (keys[i] != other.keys[i] || !containers[i].sameAs(other.containers[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int[] hash = {1};
+        forEach(id -> hash[0] = 31 * hash[0] + Long.hashCode(id));
+        return hash[0];
+    }
+
+    @Override
+    public String toString() {
+        return "IdBitmap[cardinality=" + cardinality() + ", containers=" + size + "]";
+    }
+
+    private static long keyOf(long id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Argument 'id' must not be negative: " + id);
+        }
+        return id >>> 16;
+    }
+
+    private int indexOf(long key) {
+        // appends are the common case
+        if (size > 0 && keys[size - 1] == key) {
+            return size - 1;
+        }
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void append(long key, @Nonnull Container container) {
+        if (container.cardinality() > 0) {
+            insertAt(size, key, container);
+        }
+    }
+
+    private void insertAt(int index, long key, @Nonnull Container container) {
+        if (size == keys.length) {
+            int capacity = keys.length << 1;
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+    private void removeAt(int index) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+        containers[--size] = null;
+    }
+
+    private abstract static class Container {
+        static final int ARRAY_LIMIT = 4096;
+
+        abstract Container add(char low);
+
+        abstract Container remove(char low);
+
+        abstract boolean contains(char low);
+
+        abstract int cardinality();
+
+        abstract int nextSetBit(int from);
+
+        abstract void forEach(long base, @Nonnull LongConsumer consumer);
+
+        abstract int fill(long base, @Nonnull long[] ids, int offset);
+
+        @Nonnull
+        abstract Container copy();
+
+        @Nonnull
+        abstract BitmapContainer toBitmap();
+
+        boolean sameAs(@Nonnull Container other) {
+            if (cardinality() != other.cardinality()) {
+                return false;
+            }
+            for (int low = nextSetBit(0); low >= 0; low = nextSetBit(low + 1)) {
+                if (!other.contains((char) low)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Nonnull
+        static Container and(@Nonnull Container a, @Nonnull Container b) {
+            if (a instanceof ArrayContainer || b instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) (a instanceof ArrayContainer ? a : b);
+                Container other = array == a ? b : a;
+                ArrayContainer result = new ArrayContainer(array.size);
+                for (int i = 0; i < array.size; i++) {
+                    if (other.contains(array.values[i])) {
+                        result.values[result.size++] = array.values[i];
+                    }
+                }
+                return result;
+            }
+            long[] words = ((BitmapContainer) a).words.clone();
+            long[] others = ((BitmapContainer) b).words;
+            for (int i = 0; i < words.length; i++) {
+                words[i] &= others[i];
+            }
+            return BitmapContainer.of(words).normalize();
+        }
+
+        @Nonnull
+        static Container or(@Nonnull Container a, @Nonnull Container b) {
+            if (a instanceof ArrayContainer && b instanceof ArrayContainer
+                && a.cardinality() + b.cardinality() <= ARRAY_LIMIT) {
+                ArrayContainer x = (ArrayContainer) a;
+                ArrayContainer y = (ArrayContainer) b;
+                ArrayContainer result = new ArrayContainer(x.size + y.size);
+                int i = 0;
+                int j = 0;
+                while (i < x.size || j < y.size) {
+                    int c = i == x.size ? 1 : j == y.size ? -1 : Character.compare(x.values[i], y.values[j]);
+                    if (c <= 0) {
+                        result.values[result.size++] = x.values[i++];
+                        if (c == 0) {
+                            j++;
+                        }
+                    } else {
+                        result.values[result.size++] = y.values[j++];
+                    }
+                }
+                return result;
+            }
+            long[] words = a.toBitmap().words.clone();
+            if (b instanceof BitmapContainer) {
+                long[] others = ((BitmapContainer) b).words;
+                for (int i = 0; i < words.length; i++) {
+                    words[i] |= others[i];
+                }
+            } else {
+                ArrayContainer array = (ArrayContainer) b;
+                for (int i = 0; i < array.size; i++) {
+                    words[array.values[i] >>> 6] |= 1L << array.values[i];
+                }
+            }
+            return BitmapContainer.of(words).normalize();
+        }
+
+        @Nonnull
+        static Container andNot(@Nonnull Container a, @Nonnull Container b) {
+            if (a instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) a;
+                ArrayContainer result = new ArrayContainer(array.size);
+                for (int i = 0; i < array.size; i++) {
+                    if (!b.contains(array.values[i])) {
+                        result.values[result.size++] = array.values[i];
+                    }
+                }
+                return result;
+            }
+            long[] words = ((BitmapContainer) a).words.clone();
+            if (b instanceof BitmapContainer) {
+                long[] others = ((BitmapContainer) b).words;
+                for (int i = 0; i < words.length; i++) {
+                    words[i] &= ~others[i];
+                }
+            } else {
+                ArrayContainer array = (ArrayContainer) b;
+                for (int i = 0; i < array.size; i++) {
+                    words[array.values[i] >>> 6] &= ~(1L << array.values[i]);
+                }
+            }
+            return BitmapContainer.of(words).normalize();
+        }
+    }
+
+    private static final class ArrayContainer extends Container {
+        private char[] values;
+        private int size;
+
+        private ArrayContainer() {
+            this(INITIAL_CAPACITY);
+        }
+
+        private ArrayContainer(int capacity) {
+            values = new char[Math.max(1, capacity)];
+        }
+
+        @Override
+        Container add(char low) {
+            int i = Arrays.binarySearch(values, 0, size, low);
+            if (i >= 0) {
+                return this;
+            }
+            if (size == ARRAY_LIMIT) {
+                return toBitmap().add(low);
+            }
+            i = -i - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, size << 1));
+            }
+            System.arraycopy(values, i, values, i + 1, size - i);
+            values[i] = low;
+            size++;
+            return this;
+        }
+
+        @Override
+        Container remove(char low) {
+            int i = Arrays.binarySearch(values, 0, size, low);
+            if (i >= 0) {
+                System.arraycopy(values, i + 1, values, i, size - i - 1);
+                size--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return Arrays.binarySearch(values, 0, size, low) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return size;
+        }
+
+        @Override
+        int nextSetBit(int from) {
+            if (from > Character.MAX_VALUE) {
+                return -1;
+            }
+            int i = Arrays.binarySearch(values, 0, size, (char) from);
+            i = i >= 0 ? i : -i - 1;
+            return i < size ? values[i] : -1;
+        }
+
+        @Override
+        void forEach(long base, @Nonnull LongConsumer consumer) {
+            for (int i = 0; i < size; i++) {
+                consumer.accept(base | values[i]);
+            }
+        }
+
+        @Override
+        int fill(long base, @Nonnull long[] ids, int offset) {
+            for (int i = 0; i < size; i++) {
+                ids[offset++] = base | values[i];
+            }
+            return offset;
+        }
+
+        @Nonnull
+        @Override
+        Container copy() {
+            ArrayContainer copy = new ArrayContainer(size);
+            System.arraycopy(values, 0, copy.values, 0, size);
+            copy.size = size;
+            return copy;
+        }
+
+        @Nonnull
+        @Override
+        BitmapContainer toBitmap() {
+            long[] words = new long[BitmapContainer.WORDS];
+            for (int i = 0; i < size; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            return new BitmapContainer(words, size);
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        static final int WORDS = 1024;
+
+        private final long[] words;
+        private int cardinality;
+
+        private BitmapContainer(@Nonnull long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Nonnull
+        static BitmapContainer of(@Nonnull long[] words) {
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            return new BitmapContainer(words, cardinality);
+        }
+
+        @Nonnull
+        Container normalize() {
+            if (cardinality > ARRAY_LIMIT) {
+                return this;
+            }
+            ArrayContainer array = new ArrayContainer(cardinality);
+            fillLows(array);
+            return array;
+        }
+
+        @Override
+        Container add(char low) {
+            long mask = 1L << low;
+            if ((words[low >>> 6] & mask) == 0) {
+                words[low >>> 6] |= mask;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char low) {
+            long mask = 1L << low;
+            if ((words[low >>> 6] & mask) != 0) {
+                words[low >>> 6] &= ~mask;
+                cardinality--;
+            }
+            return normalize();
+        }
+
+        @Override
+        boolean contains(char low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        int nextSetBit(int from) {
+            int i = from >>> 6;
+            if (i >= WORDS) {
+                return -1;
+            }
+            long word = words[i] & (-1L << from);
+            while (true) {
+                if (word != 0) {
+                    return (i << 6) + Long.numberOfTrailingZeros(word);
+                }
+                if (++i == WORDS) {
+                    return -1;
+                }
+                word = words[i];
+            }
+        }
+
+        @Override
+        void forEach(long base, @Nonnull LongConsumer consumer) {
+            for (int i = 0; i < WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    consumer.accept(base | ((i << 6) + Long.numberOfTrailingZeros(word)));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        int fill(long base, @Nonnull long[] ids, int offset) {
+            for (int i = 0; i < WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    ids[offset++] = base | ((i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return offset;
+        }
+
+        @Nonnull
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Nonnull
+        @Override
+        BitmapContainer toBitmap() {
+            return this;
+        }
+
+        private void fillLows(@Nonnull ArrayContainer array) {
+            for (int i = 0; i < WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    array.values[array.size++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ohmdb;
+
+import com.ohmdb.api.Table;
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+
+import java.util.List;
+
+/**
+ * View of a {@code Table} that keeps its secondary indexes current. Writes must go through this view (or be followed
+ * by {@link #rebuild()}) for lookups to see them.
+ * <p>
+ * Lookups take the value of an indexed property and return matching records in key order, then id order.
+ * A {@code null} bound leaves that side of a range open.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public interface IndexedTable<T> {
+    @Nonnull
+    Table<T> getTable();
+
+    @Nonnull
+    List<String> getIndexedProperties();
+
+    long insert(@Nonnull T record);
+
+    void update(@Nonnull T record);
+
+    void delete(long id);
+
+    @Nonnull
+    long[] findIds(@Nonnull String property, @Nonnull Object value);
+
+    @Nonnull
+    long[] findIds(@Nonnull String property, @Nullable Object from, boolean fromInclusive, @Nullable Object to, boolean toInclusive);
+
+    @Nonnull
+    List<T> findBy(@Nonnull String property, @Nonnull Object value);
+
+    @Nonnull
+    List<T> findBy(@Nonnull String property, @Nullable Object from, boolean fromInclusive, @Nullable Object to, boolean toInclusive);
+
+    void rebuild();
+}
@@ -0,0 +1,304 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ohmdb;
+
+import griffon.annotations.core.Nonnull;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Hash set of {@code long} ids backed by open addressing with linear probing. Unlike a {@code Set<Long>} no object is
+ * allocated per id, which keeps large id sets cheap to build and to scan. Iteration order is unspecified; use
+ * {@link IdBitmap} when ids must come out sorted or when sets are combined.
+ * <p>
+ * Instances are not thread safe.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public final class LongIdSet {
+    private static final long EMPTY = 0L;
+    private static final int MIN_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] slots;
+    private int mask;
+    private int size;
+    // EMPTY marks free slots, hence id 0 is tracked on its own
+    private boolean containsEmpty;
+
+    public LongIdSet() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongIdSet(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Argument 'expectedSize' must not be negative: " + expectedSize);
+        }
+        allocate(capacityFor(expectedSize));
+    }
+
+    @Nonnull
+    public static LongIdSet of(@Nonnull long... ids) {
+        requireNonNull(ids, "Argument 'ids' must not be null");
+        LongIdSet set = new LongIdSet(ids.length);
+        for (long id : ids) {
+            set.add(id);
+        }
+        return set;
+    }
+
+    public boolean add(long id) {
+        if (id == EMPTY) {
+            if (containsEmpty) {
+                return false;
+            }
+            containsEmpty = true;
+            size++;
+            return true;
+        }
+
+        int i = slotOf(id);
+        while (slots[i] != EMPTY) {
+            if (slots[i] == id) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        slots[i] = id;
+        if (++size > (slots.length * LOAD_FACTOR)) {
+            rehash(slots.length << 1);
+        }
+        return true;
+    }
+
+    public boolean remove(long id) {
+        if (id == EMPTY) {
+            if (!containsEmpty) {
+                return false;
+            }
+            containsEmpty = false;
+            size--;
+            return true;
+        }
+
+        int i = slotOf(id);
+        while (slots[i] != EMPTY) {
+            if (slots[i] == id) {
+                shiftBack(i);
+                size--;
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    public boolean contains(long id) {
+        if (id == EMPTY) {
+            return containsEmpty;
+        }
+
+        int i = slotOf(id);
+        while (slots[i] != EMPTY) {
+            if (slots[i] == id) {
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(slots, EMPTY);
+        containsEmpty = false;
+        size = 0;
+    }
+
+    public void forEach(@Nonnull LongConsumer consumer) {
+        requireNonNull(consumer, "Argument 'consumer' must not be null");
+        if (containsEmpty) {
+            consumer.accept(EMPTY);
+        }
+        for (long slot : slots) {
+            if (slot != EMPTY) {
+                consumer.accept(slot);
+            }
+        }
+    }
+
+    /**
+     * Keeps only the ids that are also contained in the given set.
+     */
+    public void retainAll(@Nonnull LongIdSet other) {
+        requireNonNull(other, "Argument 'other' must not be null");
+        removeIf(other, false);
+    }
+
+    /**
+     * Removes all the ids contained in the given set.
+     */
+    public void removeAll(@Nonnull LongIdSet other) {
+        requireNonNull(other, "Argument 'other' must not be null");
+        removeIf(other, true);
+    }
+
+    public void addAll(@Nonnull LongIdSet other) {
+        requireNonNull(other, "Argument 'other' must not be null");
+        other.forEach(this::add);
+    }
+
+    @Nonnull
+    public long[] toArray() {
+        long[] ids = new long[size];
+        int offset = 0;
+        if (containsEmpty) {
+            ids[offset++] = EMPTY;
+        }
+        for (long slot : slots) {
+            if (slot != EMPTY) {
+                ids[offset++] = slot;
+            }
+        }
+        return ids;
+    }
+
+    @Nonnull
+    public long[] toSortedArray() {
+        long[] ids = toArray();
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LongIdSet)) {
+            return false;
+        }
+        LongIdSet other = (LongIdSet) o;
+        if (size != other.size || containsEmpty != other.containsEmpty) {
+            return false;
+        }
+        for (long slot : slots) {
+            if (slot != EMPTY && !other.contains(slot)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (long slot : slots) {
+            hash += Long.hashCode(slot);
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "LongIdSet[size=" + size + "]";
+    }
+
+    private void removeIf(@Nonnull LongIdSet other, boolean contained) {
+        if (containsEmpty && other.contains(EMPTY) == contained) {
+            containsEmpty = false;
+            size--;
+        }
+        int i = 0;
+        while (i < slots.length) {
+            long slot = slots[i];
+            if (slot != EMPTY && other.contains(slot) == contained) {
+                shiftBack(i);
+                size--;
+                // a later entry may have moved into this slot
+                continue;
+            }
+            i++;
+        }
+    }
+
+    private void shiftBack(int hole) {
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            long id = slots[i];
+            if (id == EMPTY) {
+                break;
+            }
+            int home = slotOf(id);
+            // move the entry back unless its home lies cyclically within (hole, i]
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                slots[hole] = id;
+                hole = i;
+            }
+        }
+        slots[hole] = EMPTY;
+    }
+
+    private int slotOf(long id) {
+        // Stafford variant 13 mixer, spreads sequential ids across the table
+        long h = id;
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        h = h ^ (h >>> 31);
+        return (int) h & mask;
+    }
+
+    private void rehash(int capacity) {
+        long[] previous = slots;
+        allocate(capacity);
+        for (long id : previous) {
+            if (id != EMPTY) {
+                int i = slotOf(id);
+                while (slots[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                slots[i] = id;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        slots = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long required = Math.max(MIN_CAPACITY, (long) Math.ceil(expectedSize / LOAD_FACTOR) + 1);
+        if (required > (1 << 30)) {
+            throw new IllegalArgumentException("Too many ids: " + expectedSize);
+        }
+        return Integer.highestOneBit((int) required - 1) << 1;
+    }
+}
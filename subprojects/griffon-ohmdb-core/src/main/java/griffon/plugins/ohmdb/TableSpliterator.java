@@ -0,0 +1,99 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ohmdb;
+
+import com.ohmdb.api.Table;
+import griffon.annotations.core.Nonnull;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Walks the ids in {@code [index, fence)}, fetching records one chunk at a time. Splits hand out the first half of
+ * the ids that have not been fetched yet, and only while no chunk is buffered, which keeps encounter order intact.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+final class TableSpliterator<T> implements Spliterator<T> {
+    private final Table<T> table;
+    private final long[] ids;
+    private final int chunkSize;
+    private int index;
+    private final int fence;
+    private List<T> buffer;
+    private int position;
+
+    TableSpliterator(@Nonnull Table<T> table, @Nonnull long[] ids, int index, int fence, int chunkSize) {
+        this.table = table;
+        this.ids = ids;
+        this.index = index;
+        this.fence = fence;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public boolean tryAdvance(@Nonnull Consumer<? super T> action) {
+        requireNonNull(action, "Argument 'action' must not be null");
+        while (true) {
+            if (buffer != null && position < buffer.size()) {
+                T record = buffer.get(position++);
+                // deleted since the ids were read
+                if (record != null) {
+                    action.accept(record);
+                    return true;
+                }
+            } else if (index < fence) {
+                int end = Math.min(fence, index + chunkSize);
+                buffer = table.getAll(Arrays.copyOfRange(ids, index, end));
+                position = 0;
+                index = end;
+            } else {
+                buffer = null;
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        boolean buffered = buffer != null && position < buffer.size();
+        if (buffered || fence - index < (chunkSize << 1)) {
+            return null;
+        }
+        int middle = (index + fence) >>> 1;
+        Spliterator<T> prefix = new TableSpliterator<>(table, ids, index, middle, chunkSize);
+        index = middle;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        long buffered = buffer != null ? buffer.size() - position : 0;
+        return (fence - index) + buffered;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+}
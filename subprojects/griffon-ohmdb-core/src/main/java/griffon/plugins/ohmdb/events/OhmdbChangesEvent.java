@@ -0,0 +1,58 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ohmdb.events;
+
+import griffon.annotations.core.Nonnull;
+import griffon.core.event.Event;
+import griffon.plugins.ohmdb.DbChange;
+
+import java.util.List;
+
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Triggered with a batch of changes captured on a dataSource configured with {@code cdc_events = true}.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class OhmdbChangesEvent extends Event {
+    private final String name;
+    private final List<DbChange> changes;
+
+    public OhmdbChangesEvent(@Nonnull String name, @Nonnull List<DbChange> changes) {
+        this.name = requireNonBlank(name, "Argument 'name' must not be blank");
+        this.changes = requireNonNull(changes, "Argument 'changes' must not be null");
+    }
+
+    @Nonnull
+    public String getName() {
+        return name;
+    }
+
+    @Nonnull
+    public List<DbChange> getChanges() {
+        return changes;
+    }
+
+    @Nonnull
+    public static OhmdbChangesEvent of(@Nonnull String name, @Nonnull List<DbChange> changes) {
+        return new OhmdbChangesEvent(name, changes);
+    }
+}
@@ -18,6 +18,7 @@
 package griffon.plugins.ohmdb.events;
 
 import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
 import griffon.core.event.Event;
 
 import java.util.Map;
@@ -32,10 +33,16 @@ import static java.util.Objects.requireNonNull;
 public class OhmdbDisconnectEndEvent extends Event {
     private final String name;
     private final Map<String, Object> config;
+    private final Throwable failure;
 
     public OhmdbDisconnectEndEvent(@Nonnull String name, @Nonnull Map<String, Object> config) {
+        this(name, config, null);
+    }
+
+    public OhmdbDisconnectEndEvent(@Nonnull String name, @Nonnull Map<String, Object> config, @Nullable Throwable failure) {
         this.name = requireNonBlank(name, "Argument 'name' must not be blank");
         this.config = requireNonNull(config, "Argument 'config' must not be null");
+        this.failure = failure;
     }
 
     @Nonnull
@@ -48,8 +55,25 @@ public class OhmdbDisconnectEndEvent extends Event {
         return config;
     }
 
+    /**
+     * Returns the reason why the datasource could not be closed cleanly, if any.
+     */
+    @Nullable
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    public boolean isClean() {
+        return failure == null;
+    }
+
     @Nonnull
     public static OhmdbDisconnectEndEvent of(@Nonnull String name, @Nonnull Map<String, Object> config) {
         return new OhmdbDisconnectEndEvent(name, config);
     }
+
+    @Nonnull
+    public static OhmdbDisconnectEndEvent of(@Nonnull String name, @Nonnull Map<String, Object> config, @Nullable Throwable failure) {
+        return new OhmdbDisconnectEndEvent(name, config, failure);
+    }
 }
@@ -0,0 +1,76 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ohmdb.events;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+import griffon.core.event.Event;
+
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Triggered when {@code importInto} finishes, successfully or not.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class OhmdbImportEndEvent extends Event {
+    private final String dataSourceName;
+    private final Class<?> type;
+    private final long records;
+    private final Throwable failure;
+
+    public OhmdbImportEndEvent(@Nonnull String dataSourceName, @Nonnull Class<?> type, long records, @Nullable Throwable failure) {
+        this.dataSourceName = requireNonBlank(dataSourceName, "Argument 'dataSourceName' must not be blank");
+        this.type = requireNonNull(type, "Argument 'type' must not be null");
+        this.records = records;
+        this.failure = failure;
+    }
+
+    @Nonnull
+    public String getDataSourceName() {
+        return dataSourceName;
+    }
+
+    @Nonnull
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * Number of records written.
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    @Nullable
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    public boolean isSuccessful() {
+        return failure == null;
+    }
+
+    @Nonnull
+    public static OhmdbImportEndEvent of(@Nonnull String dataSourceName, @Nonnull Class<?> type, long records, @Nullable Throwable failure) {
+        return new OhmdbImportEndEvent(dataSourceName, type, records, failure);
+    }
+}
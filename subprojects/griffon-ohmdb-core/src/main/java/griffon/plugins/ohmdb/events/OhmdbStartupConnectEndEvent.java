@@ -0,0 +1,57 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ohmdb.events;
+
+import griffon.annotations.core.Nonnull;
+import griffon.core.event.Event;
+
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Triggered once every dataSource flagged with {@code connect_on_startup} has been opened, or failed to.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class OhmdbStartupConnectEndEvent extends Event {
+    private final Set<String> dataSourceNames;
+    private final Map<String, Throwable> failures;
+
+    public OhmdbStartupConnectEndEvent(@Nonnull Set<String> dataSourceNames, @Nonnull Map<String, Throwable> failures) {
+        this.dataSourceNames = requireNonNull(dataSourceNames, "Argument 'dataSourceNames' must not be null");
+        this.failures = requireNonNull(failures, "Argument 'failures' must not be null");
+    }
+
+    @Nonnull
+    public Set<String> getDataSourceNames() {
+        return dataSourceNames;
+    }
+
+    @Nonnull
+    public Map<String, Throwable> getFailures() {
+        return failures;
+    }
+
+    @Nonnull
+    public static OhmdbStartupConnectEndEvent of(@Nonnull Set<String> dataSourceNames, @Nonnull Map<String, Throwable> failures) {
+        return new OhmdbStartupConnectEndEvent(dataSourceNames, failures);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb;
+
+import griffon.annotations.core.Nonnull;
+import griffon.core.Configuration;
+import griffon.core.GriffonApplication;
+import griffon.core.event.Event;
+import griffon.core.event.EventRouter;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Publishes an event only if someone is subscribed to its type, so that payloads are not built in vain when
+ * dataSources are opened and closed often. Events may be handed to the router's asynchronous publisher,
+ * keeping listeners off the calling thread when {@code events_async} is set. Every event the plugin raises goes
+ * through this class.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public final class DbEvents {
+    private final EventRouter eventRouter;
+    private final boolean async;
+
+    @Inject
+    public DbEvents(@Nonnull @Named("ohmdb") Configuration configuration, @Nonnull GriffonApplication application) {
+        this(requireNonNull(application, "Argument 'application' must not be null").getEventRouter(),
+            requireNonNull(configuration, "Argument 'configuration' must not be null").getAsBoolean("events_async", false));
+    }
+
+    DbEvents(@Nonnull EventRouter eventRouter, boolean async) {
+        this.eventRouter = requireNonNull(eventRouter, "Argument 'eventRouter' must not be null");
+        this.async = async;
+    }
+
+    public <E extends Event> void publish(@Nonnull Class<E> eventType, @Nonnull Supplier<E> event) {
+        if (!hasListeners(eventType)) {
+            return;
+        }
+        if (async) {
+            eventRouter.publishEventAsync(event.get());
+        } else {
+            eventRouter.publishEvent(event.get());
+        }
+    }
+
+    public boolean hasListeners(@Nonnull Class<? extends Event> eventType) {
+        return eventRouter.isEventPublishingEnabled() && !eventRouter.getEventListeners(eventType.getSimpleName()).isEmpty();
+    }
+}
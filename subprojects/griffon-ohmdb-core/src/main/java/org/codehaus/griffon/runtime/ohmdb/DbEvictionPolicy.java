@@ -0,0 +1,74 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb;
+
+import griffon.annotations.core.Nonnull;
+import griffon.core.Configuration;
+import griffon.plugins.ohmdb.DbFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import static griffon.util.ConfigUtils.getConfigValueAsLong;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Settings that control when open dataSources are shut down to release memory and file handles.
+ * <ul>
+ * <li>{@code idle_timeout} (per dataSource) milliseconds without callbacks before the dataSource is closed.</li>
+ * <li>{@code max_open} (top level) maximum number of dataSources kept open; least recently used ones are closed first.</li>
+ * <li>{@code idle_check_interval} (top level) milliseconds between idle checks.</li>
+ * </ul>
+ * Closed dataSources are transparently reopened on next use.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DbEvictionPolicy {
+    private static final long DEFAULT_CHECK_INTERVAL = 60_000L;
+
+    private final Configuration configuration;
+    private final DbFactory dbFactory;
+
+    @Inject
+    public DbEvictionPolicy(@Nonnull @Named("ohmdb") Configuration configuration, @Nonnull DbFactory dbFactory) {
+        this.configuration = requireNonNull(configuration, "Argument 'configuration' must not be null");
+        this.dbFactory = requireNonNull(dbFactory, "Argument 'dbFactory' must not be null");
+    }
+
+    public int getMaxOpen() {
+        return Math.max(0, configuration.getAsInt("max_open", 0));
+    }
+
+    public long getCheckInterval() {
+        return Math.max(1L, configuration.getAsLong("idle_check_interval", DEFAULT_CHECK_INTERVAL));
+    }
+
+    public long getIdleTimeout(@Nonnull String dataSourceName) {
+        return Math.max(0L, getConfigValueAsLong(dbFactory.getConfigurationFor(dataSourceName), "idle_timeout", 0L));
+    }
+
+    public boolean hasIdleTimeouts() {
+        for (String dataSourceName : dbFactory.getDataSourceNames()) {
+            if (getIdleTimeout(dataSourceName) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb;
+
+import griffon.annotations.core.Nonnull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Brings a dataSource file into the OS page cache before Ohmdb replays it. With {@code preload = "sequential"} the
+ * file is read front to back in large blocks through a single reused buffer, which lets the kernel read ahead in big
+ * chunks; the replay that follows may then be served from the page cache instead of issuing many small reads. Nothing
+ * is mapped, hence nothing is left for the garbage collector to unmap.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+final class DbFilePreloader {
+    private static final Logger LOG = LoggerFactory.getLogger(DbFilePreloader.class);
+    private static final int BLOCK_SIZE = 1024 * 1024;
+
+    static final String PRELOAD_NONE = "none";
+    static final String PRELOAD_SEQUENTIAL = "sequential";
+
+    private DbFilePreloader() {
+        // prevent instantiation
+    }
+
+    static void preload(@Nonnull File file, @Nonnull String mode) {
+        String preload = mode.trim().toLowerCase(Locale.ROOT);
+        if (PRELOAD_NONE.equals(preload)) {
+            return;
+        }
+        if (!PRELOAD_SEQUENTIAL.equals(preload)) {
+            throw new IllegalArgumentException("Unsupported preload mode '" + mode + "'. Valid values are 'none' and 'sequential'");
+        }
+        if (!file.isFile() || file.length() == 0) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BLOCK_SIZE);
+            long size = 0;
+            for (int read = channel.read(buffer); read >= 0; read = channel.read(buffer)) {
+                size += read;
+                buffer.clear();
+            }
+            LOG.debug("Preloaded {} bytes of {} in {} ms", size, file, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException | RuntimeException e) {
+            // preloading is an optimization only, Ohmdb reads the file regardless
+            LOG.warn("Could not preload {}", file, e);
+        }
+    }
+}
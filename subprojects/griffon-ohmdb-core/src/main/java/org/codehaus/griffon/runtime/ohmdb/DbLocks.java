@@ -0,0 +1,47 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb;
+
+import griffon.annotations.core.Nonnull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.StampedLock;
+
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+
+/**
+ * Keeps a reader/writer lock per dataSource. Locks are not reentrant; a write callback must not
+ * request another read or write callback on the same dataSource.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DbLocks {
+    private final ConcurrentMap<String, StampedLock> locks = new ConcurrentHashMap<>();
+
+    @Nonnull
+    public StampedLock lockFor(@Nonnull String dataSourceName) {
+        StampedLock lock = locks.get(dataSourceName);
+        if (lock == null) {
+            requireNonBlank(dataSourceName, "Argument 'dataSourceName' must not be blank");
+            lock = locks.computeIfAbsent(dataSourceName, k -> new StampedLock());
+        }
+        return lock;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+import griffon.plugins.ohmdb.DbFactory;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static griffon.util.ConfigUtils.getConfigValueAsLong;
+import static griffon.util.ConfigUtils.getConfigValueAsString;
+import static griffon.util.GriffonNameUtils.isBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Tracks read replicas, dataSources that declare {@code replica_of} pointing at another dataSource (their primary).
+ * <p>
+ * Every {@code withOhmdb} and {@code withOhmdbWrite} callback on a primary bumps its version. A replica is eligible
+ * for reads once it has received a shipment; {@code withOhmdbReplica} callbacks on the primary are spread round-robin
+ * over its eligible replicas, and fall back to the primary while none is available.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DbReplicas {
+    private static final long DEFAULT_INTERVAL = 1000L;
+
+    private final DbFactory dbFactory;
+    private final Map<String, String> primaries = new LinkedHashMap<>();
+    private final Map<String, List<String>> replicas = new LinkedHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> shipped = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicInteger> cursors = new ConcurrentHashMap<>();
+
+    @Inject
+    public DbReplicas(@Nonnull DbFactory dbFactory) {
+        this.dbFactory = requireNonNull(dbFactory, "Argument 'dbFactory' must not be null");
+
+        for (String dataSourceName : dbFactory.getDataSourceNames()) {
+            String primary = getConfigValueAsString(dbFactory.getConfigurationFor(dataSourceName), "replica_of", null);
+            if (isBlank(primary)) {
+                continue;
+            }
+            if (primary.equals(dataSourceName) || !dbFactory.getDataSourceNames().contains(primary)) {
+                throw new IllegalArgumentException("DataSource '" + dataSourceName + "' is a replica of an unknown dataSource '" + primary + "'");
+            }
+            primaries.put(dataSourceName, primary);
+            replicas.computeIfAbsent(primary, k -> new ArrayList<>()).add(dataSourceName);
+        }
+        for (Map.Entry<String, String> e : primaries.entrySet()) {
+            if (primaries.containsKey(e.getValue())) {
+                throw new IllegalArgumentException("DataSource '" + e.getKey() + "' can not replicate '" + e.getValue() + "' as it is a replica itself");
+            }
+        }
+    }
+
+    public boolean hasReplicas() {
+        return !primaries.isEmpty();
+    }
+
+    public boolean isReplica(@Nonnull String dataSourceName) {
+        return primaries.containsKey(dataSourceName);
+    }
+
+    @Nullable
+    public String getPrimary(@Nonnull String replica) {
+        return primaries.get(replica);
+    }
+
+    @Nonnull
+    public List<String> getReplicas(@Nonnull String primary) {
+        List<String> names = replicas.get(primary);
+        return names != null ? Collections.unmodifiableList(names) : Collections.<String>emptyList();
+    }
+
+    @Nonnull
+    public List<String> getAllReplicas() {
+        return Collections.unmodifiableList(new ArrayList<>(primaries.keySet()));
+    }
+
+    /**
+     * Milliseconds between checks for changes to ship to the given replica.
+     */
+    public long getInterval(@Nonnull String replica) {
+        return Math.max(1L, getConfigValueAsLong(dbFactory.getConfigurationFor(replica), "replica_interval", DEFAULT_INTERVAL));
+    }
+
+    /**
+     * Records that the given dataSource has been written to.
+     */
+    public void written(@Nonnull String dataSourceName) {
+        if (replicas.containsKey(dataSourceName)) {
+            versionOf(dataSourceName).incrementAndGet();
+        }
+    }
+
+    public long getVersion(@Nonnull String primary) {
+        return versionOf(primary).get();
+    }
+
+    /**
+     * Whether the given replica has not yet received the latest version of its primary.
+     */
+    public boolean isStale(@Nonnull String replica) {
+        String primary = primaries.get(replica);
+        if (primary == null) {
+            return false;
+        }
+        Long version = shipped.get(replica);
+        return version == null || version < getVersion(primary);
+    }
+
+    /**
+     * Records that the given replica holds every change of its primary up to {@code version}.
+     */
+    public void shipped(@Nonnull String replica, long version) {
+        shipped.put(replica, version);
+    }
+
+    /**
+     * Drops the given replica from read routing until its next shipment.
+     */
+    public void invalidate(@Nonnull String replica) {
+        shipped.remove(replica);
+    }
+
+    /**
+     * Chooses the dataSource that serves a {@code withOhmdbReplica} callback on the given one.
+     */
+    @Nonnull
+    public String route(@Nonnull String dataSourceName) {
+        List<String> names = replicas.get(dataSourceName);
+        if (names == null) {
+            return dataSourceName;
+        }
+        int start = cursors.computeIfAbsent(dataSourceName, k -> new AtomicInteger()).getAndIncrement();
+        for (int i = 0; i < names.size(); i++) {
+            String replica = names.get(Math.floorMod(start + i, names.size()));
+            if (shipped.containsKey(replica)) {
+                return replica;
+            }
+        }
+        return dataSourceName;
+    }
+
+    @Nonnull
+    private AtomicLong versionOf(@Nonnull String primary) {
+        return versions.computeIfAbsent(primary, k -> new AtomicLong());
+    }
+}
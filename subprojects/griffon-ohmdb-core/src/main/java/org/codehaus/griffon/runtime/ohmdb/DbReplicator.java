@@ -0,0 +1,258 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb;
+
+import com.ohmdb.api.Db;
+import com.ohmdb.api.Ohm;
+import com.ohmdb.api.Table;
+import griffon.annotations.core.Nonnull;
+import griffon.exceptions.GriffonException;
+import griffon.plugins.ohmdb.DbCacheManager;
+import griffon.plugins.ohmdb.DbFactory;
+import griffon.plugins.ohmdb.DbHandler;
+import griffon.plugins.ohmdb.DbIndexManager;
+import griffon.plugins.ohmdb.DbSnapshotManager;
+import griffon.plugins.ohmdb.DbStorage;
+import org.codehaus.griffon.runtime.ohmdb.snapshot.DefaultDbSnapshotManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static griffon.util.ConfigUtils.getConfigValueAsLong;
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+import static org.codehaus.griffon.runtime.ohmdb.DbSupport.deleteQuietly;
+import static org.codehaus.griffon.runtime.ohmdb.DbSupport.move;
+import static org.codehaus.griffon.runtime.ohmdb.DbSupport.toClass;
+
+/**
+ * Copies the contents of primary dataSources to their replicas on a background thread.
+ * <p>
+ * This is not change shipping. Ohmdb neither exposes a change log nor inserts records with a given id, thus every
+ * shipment is a full copy of the primary's tables, whatever the size of the changes that triggered it. The primary
+ * is written to a snapshot (see {@link DbSnapshotManager#snapshot}); writes on the primary wait only while its ids
+ * are read. The snapshot is loaded into a fresh file next to the replica, and that file is swapped in place of the
+ * replica while the replica is held exclusively. Replicas kept in memory have their records replaced from the
+ * snapshot while held exclusively instead, so reads on them wait for the whole load. A replica is copied again once its
+ * primary has been written to with {@code withOhmdb} or {@code withOhmdbWrite} since the previous shipment, checking
+ * every {@code replica_interval} milliseconds.
+ * <p>
+ * Records are renumbered by each shipment, as Ohmdb assigns ids on insert. Ids read from a replica do not match the ids
+ * of the same records in the primary, hence replicas are only read when asked for with {@code withOhmdbReplica}.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DbReplicator {
+    private static final Logger LOG = LoggerFactory.getLogger(DbReplicator.class);
+    private static final long DEFAULT_TIMEOUT = 30000L;
+
+    private final DbHandler dbHandler;
+    private final DbFactory dbFactory;
+    private final DbStorage dbStorage;
+    private final DbSnapshotManager dbSnapshotManager;
+    private final DbReplicas dbReplicas;
+    private final DbCacheManager dbCacheManager;
+    private final DbIndexManager dbIndexManager;
+
+    private ScheduledExecutorService scheduler;
+
+    @Inject
+    public DbReplicator(@Nonnull DbHandler dbHandler, @Nonnull DbFactory dbFactory, @Nonnull DbStorage dbStorage, @Nonnull DbSnapshotManager dbSnapshotManager, @Nonnull DbReplicas dbReplicas, @Nonnull DbCacheManager dbCacheManager, @Nonnull DbIndexManager dbIndexManager) {
+        this.dbHandler = requireNonNull(dbHandler, "Argument 'dbHandler' must not be null");
+        this.dbFactory = requireNonNull(dbFactory, "Argument 'dbFactory' must not be null");
+        this.dbStorage = requireNonNull(dbStorage, "Argument 'dbStorage' must not be null");
+        this.dbSnapshotManager = requireNonNull(dbSnapshotManager, "Argument 'dbSnapshotManager' must not be null");
+        this.dbReplicas = requireNonNull(dbReplicas, "Argument 'dbReplicas' must not be null");
+        this.dbCacheManager = requireNonNull(dbCacheManager, "Argument 'dbCacheManager' must not be null");
+        this.dbIndexManager = requireNonNull(dbIndexManager, "Argument 'dbIndexManager' must not be null");
+    }
+
+    /**
+     * Starts copying primaries to every configured replica. Each replica receives its first shipment one
+     * {@code replica_interval} after this call.
+     */
+    public synchronized void start() {
+        if (scheduler != null || !dbReplicas.hasReplicas()) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ohmdb-replicator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (final String replica : dbReplicas.getAllReplicas()) {
+            long interval = dbReplicas.getInterval(replica);
+            scheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    if (dbReplicas.isStale(replica)) {
+                        ship(replica);
+                    }
+                } catch (RuntimeException e) {
+                    LOG.warn("Could not ship changes to replica '{}'", replica, e);
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public synchronized void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Replaces the contents of the given replica with those of its primary.
+     *
+     * @return the number of records shipped
+     */
+    public synchronized long ship(@Nonnull String replica) {
+        requireNonBlank(replica, "Argument 'replica' must not be blank");
+        String primary = dbReplicas.getPrimary(replica);
+        if (primary == null) {
+            throw new IllegalArgumentException("DataSource '" + replica + "' is not a replica.");
+        }
+        if (!(dbHandler instanceof DefaultDbHandler) || !(dbFactory instanceof DefaultDbFactory) || !(dbSnapshotManager instanceof DefaultDbSnapshotManager)) {
+            throw new UnsupportedOperationException("Replication requires the default DbHandler, DbFactory and DbSnapshotManager");
+        }
+
+        Map<String, Object> config = dbFactory.getConfigurationFor(replica);
+        Map<String, Object> primaryConfig = dbFactory.getConfigurationFor(primary);
+        Class<?>[] types = resolveTables(replica, config.containsKey("tables") ? config : primaryConfig);
+        long timeout = getConfigValueAsLong(config, "replica_timeout", DEFAULT_TIMEOUT);
+        // writes made while copying leave the replica stale, to be shipped again
+        long version = dbReplicas.getVersion(primary);
+
+        long records = ((DefaultDbFactory) dbFactory).isInMemory(replica)
+            ? shipInMemory(primary, replica, types, timeout)
+            : shipToFile(primary, replica, types, timeout);
+        dbReplicas.shipped(replica, version);
+
+        LOG.debug("Shipped {} records of dataSource '{}' to replica '{}'", records, primary, replica);
+        return records;
+    }
+
+    private long shipToFile(@Nonnull final String primary, @Nonnull String replica, @Nonnull Class<?>[] types, long timeout) {
+        final File file = ((DefaultDbFactory) dbFactory).resolveDbFile(replica);
+        Path shipment = file.toPath().resolveSibling(file.getName() + ".shipment");
+        final Path next = file.toPath().resolveSibling(file.getName() + ".next");
+
+        long records;
+        try {
+            dbSnapshotManager.snapshot(primary, shipment, types);
+            Files.deleteIfExists(next);
+            Db target = Ohm.db(next.toString());
+            try {
+                records = ((DefaultDbSnapshotManager) dbSnapshotManager).load(shipment, target);
+            } finally {
+                target.shutdown();
+            }
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(next);
+            throw e instanceof RuntimeException ? (RuntimeException) e : new GriffonException("Could not ship dataSource '" + primary + "' to replica '" + replica + "'", e);
+        } finally {
+            deleteQuietly(shipment);
+        }
+
+        ((DefaultDbHandler) dbHandler).withExclusiveAccess(replica, timeout, (String name, Db db) -> {
+            // the next callback reopens the replica from the shipped file
+            dbFactory.destroy(name, db);
+            dbStorage.remove(name);
+            try {
+                move(next, file.toPath());
+            } catch (IOException e) {
+                deleteQuietly(next);
+                dbReplicas.invalidate(name);
+                throw new GriffonException("Could not replace " + file + " with the contents of dataSource '" + primary + "'", e);
+            }
+            return null;
+        });
+        return records;
+    }
+
+    /**
+     * In-memory replicas have no file to swap. The primary is written to a temporary snapshot, one chunk at a time,
+     * which is then loaded into the replica while it is held exclusively; memory use does not depend on the size of
+     * the primary.
+     */
+    private long shipInMemory(@Nonnull String primary, @Nonnull String replica, @Nonnull final Class<?>[] types, long timeout) {
+        final Path shipment;
+        try {
+            shipment = Files.createTempFile("ohmdb-" + replica, ".shipment");
+        } catch (IOException e) {
+            throw new GriffonException("Could not ship dataSource '" + primary + "' to replica '" + replica + "'", e);
+        }
+
+        try {
+            dbSnapshotManager.snapshot(primary, shipment, types);
+            Long records = ((DefaultDbHandler) dbHandler).withExclusiveAccess(replica, timeout, (String name, Db db) -> {
+                for (Class<?> type : types) {
+                    clear(db.table(type));
+                }
+                // the same Db is kept, cached records and indexed ids would outlive the shipment
+                dbCacheManager.invalidate(name);
+                long loaded = ((DefaultDbSnapshotManager) dbSnapshotManager).load(shipment, db);
+                dbIndexManager.rebuild(name);
+                return loaded;
+            });
+            return records != null ? records : 0L;
+        } finally {
+            deleteQuietly(shipment);
+        }
+    }
+
+    @Nonnull
+    private static Class<?>[] resolveTables(@Nonnull String replica, @Nonnull Map<String, Object> config) {
+        Object tables = config.get("tables");
+        List<Class<?>> types = new ArrayList<>();
+        if (tables instanceof Collection) {
+            for (Object table : (Collection<?>) tables) {
+                types.add(toClass(table));
+            }
+        } else if (tables != null) {
+            types.add(toClass(tables));
+        }
+        if (types.isEmpty()) {
+            throw new IllegalArgumentException("DataSource '" + replica + "' must list its 'tables' to be replicated");
+        }
+        return types.toArray(new Class<?>[0]);
+    }
+
+    private static void clear(@Nonnull Table<?> table) {
+        long[] ids = table.ids();
+        if (ids != null) {
+            for (long id : ids) {
+                table.delete(id);
+            }
+        }
+    }
+}
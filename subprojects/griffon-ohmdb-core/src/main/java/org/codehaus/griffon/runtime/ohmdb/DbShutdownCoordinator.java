@@ -0,0 +1,250 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb;
+
+import griffon.annotations.core.Nonnull;
+import griffon.core.Configuration;
+import griffon.plugins.ohmdb.DbExecutorProvider;
+import griffon.plugins.ohmdb.DbFactory;
+import griffon.plugins.ohmdb.DbHandler;
+import griffon.plugins.ohmdb.DbQueryExecutor;
+import griffon.plugins.ohmdb.events.OhmdbDisconnectEndEvent;
+import org.codehaus.griffon.runtime.ohmdb.monitor.DataSourceMetrics;
+import org.codehaus.griffon.runtime.ohmdb.monitor.DbMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static griffon.util.ConfigUtils.getConfigValue;
+import static griffon.util.ConfigUtils.getConfigValueAsLong;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Shuts down asynchronous executors and query pools, then closes dataSources in parallel. DataSources are grouped
+ * in waves following the optional {@code close_after} setting; every dataSource in a wave refuses new callbacks and
+ * is closed concurrently once its in-flight callbacks have drained. Each close is bounded by the dataSource's
+ * {@code shutdown_timeout}, and the whole process, executors included, by the top level {@code shutdown_timeout}.
+ * DataSources that fail or time out are reported with an unclean {@code OhmdbDisconnectEndEvent}, which takes the
+ * place of the regular one; a dataSource whose callbacks did not drain in time is left open.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+final class DbShutdownCoordinator {
+    private static final Logger LOG = LoggerFactory.getLogger(DbShutdownCoordinator.class);
+    private static final long DEFAULT_DATASOURCE_TIMEOUT = 10_000L;
+    private static final long DEFAULT_GLOBAL_TIMEOUT = 30_000L;
+    private static final long DRAIN_POLL_INTERVAL = 10L;
+
+    private final DbHandler dbHandler;
+    private final DbFactory dbFactory;
+    private final DbExecutorProvider dbExecutorProvider;
+    private final DbQueryExecutor dbQueryExecutor;
+    private final DbMetrics dbMetrics;
+    private final Configuration configuration;
+    private final DbEvents events;
+
+    DbShutdownCoordinator(@Nonnull DbHandler dbHandler, @Nonnull DbFactory dbFactory, @Nonnull DbExecutorProvider dbExecutorProvider,
+                          @Nonnull DbQueryExecutor dbQueryExecutor, @Nonnull DbMetrics dbMetrics, @Nonnull Configuration configuration,
+                          @Nonnull DbEvents events) {
+        this.dbHandler = requireNonNull(dbHandler, "Argument 'dbHandler' must not be null");
+        this.dbFactory = requireNonNull(dbFactory, "Argument 'dbFactory' must not be null");
+        this.dbExecutorProvider = requireNonNull(dbExecutorProvider, "Argument 'dbExecutorProvider' must not be null");
+        this.dbQueryExecutor = requireNonNull(dbQueryExecutor, "Argument 'dbQueryExecutor' must not be null");
+        this.dbMetrics = requireNonNull(dbMetrics, "Argument 'dbMetrics' must not be null");
+        this.configuration = requireNonNull(configuration, "Argument 'configuration' must not be null");
+        this.events = requireNonNull(events, "Argument 'events' must not be null");
+    }
+
+    void shutdown(@Nonnull Collection<String> dataSourceNames) {
+        long globalDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(configuration.getAsLong("shutdown_timeout", DEFAULT_GLOBAL_TIMEOUT));
+        stopExecutors(globalDeadline);
+        closeAll(dataSourceNames, globalDeadline);
+    }
+
+    /**
+     * Lets asynchronous callbacks and queries finish, sharing the global budget with the dataSources.
+     */
+    private void stopExecutors(long globalDeadline) {
+        if (dbExecutorProvider instanceof DefaultDbExecutorProvider) {
+            ((DefaultDbExecutorProvider) dbExecutorProvider).shutdown(remainingMillis(globalDeadline));
+        } else {
+            dbExecutorProvider.shutdown();
+        }
+        if (dbQueryExecutor instanceof DefaultDbQueryExecutor) {
+            ((DefaultDbQueryExecutor) dbQueryExecutor).shutdown(remainingMillis(globalDeadline));
+        } else {
+            dbQueryExecutor.shutdown();
+        }
+    }
+
+    void closeAll(@Nonnull Collection<String> dataSourceNames, long globalDeadline) {
+        if (dataSourceNames.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executor = Executors.newCachedThreadPool(new ShutdownThreadFactory());
+        try {
+            for (List<String> wave : resolveWaves(dataSourceNames)) {
+                closeWave(wave, executor, globalDeadline);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void closeWave(@Nonnull List<String> wave, @Nonnull ExecutorService executor, long globalDeadline) {
+        Map<String, Future<?>> closes = new LinkedHashMap<>();
+        Map<String, Long> deadlines = new LinkedHashMap<>();
+        Map<String, AtomicBoolean> outcomes = new LinkedHashMap<>();
+        for (final String dataSourceName : wave) {
+            final long deadline = Math.min(globalDeadline, System.nanoTime() +
+                TimeUnit.MILLISECONDS.toNanos(getConfigValueAsLong(dbFactory.getConfigurationFor(dataSourceName), "shutdown_timeout", DEFAULT_DATASOURCE_TIMEOUT)));
+            final AtomicBoolean endReported = new AtomicBoolean();
+            deadlines.put(dataSourceName, deadline);
+            outcomes.put(dataSourceName, endReported);
+            closes.put(dataSourceName, executor.submit(() -> {
+                close(dataSourceName, deadline, endReported);
+                return null;
+            }));
+        }
+
+        for (Map.Entry<String, Future<?>> e : closes.entrySet()) {
+            String dataSourceName = e.getKey();
+            AtomicBoolean endReported = outcomes.get(dataSourceName);
+            try {
+                e.getValue().get(Math.max(0L, deadlines.get(dataSourceName) - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException te) {
+                LOG.warn("DataSource '{}' did not close in time", dataSourceName);
+                e.getValue().cancel(true);
+                reportUnclean(dataSourceName, te, endReported);
+            } catch (ExecutionException ee) {
+                LOG.warn("DataSource '{}' did not close cleanly", dataSourceName, ee.getCause());
+                reportUnclean(dataSourceName, ee.getCause(), endReported);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                reportUnclean(dataSourceName, ie, endReported);
+            }
+        }
+    }
+
+    private void close(@Nonnull String dataSourceName, long deadline, @Nonnull AtomicBoolean endReported) throws InterruptedException {
+        if (dbHandler instanceof DefaultDbHandler) {
+            ((DefaultDbHandler) dbHandler).shutdownOhmdb(dataSourceName, deadline, endReported);
+            return;
+        }
+        awaitDrain(dataSourceName, deadline);
+        dbHandler.closeOhmdb(dataSourceName);
+    }
+
+    /**
+     * Fallback for custom handlers, which offer no way to refuse new callbacks.
+     */
+    private void awaitDrain(@Nonnull String dataSourceName, long deadline) throws InterruptedException {
+        DataSourceMetrics metrics = dbMetrics.forDataSource(dataSourceName);
+        while (metrics.getInFlight() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(DRAIN_POLL_INTERVAL);
+        }
+        if (metrics.getInFlight() > 0) {
+            LOG.warn("Closing dataSource '{}' with {} callbacks still in flight", dataSourceName, metrics.getInFlight());
+        }
+    }
+
+    private void reportUnclean(@Nonnull String dataSourceName, @Nonnull Throwable failure, @Nonnull AtomicBoolean endReported) {
+        // a close that completed meanwhile has been reported already
+        if (endReported.compareAndSet(false, true)) {
+            events.publish(OhmdbDisconnectEndEvent.class, () -> OhmdbDisconnectEndEvent.of(dataSourceName, dbFactory.getConfigurationFor(dataSourceName), failure));
+        }
+    }
+
+    private static long remainingMillis(long deadline) {
+        return Math.max(0L, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+    }
+
+    /**
+     * Groups dataSources so that each one is closed after all dataSources listed in its {@code close_after} setting.
+     * Unknown names are ignored; dependency cycles are broken by closing the remaining dataSources together.
+     */
+    @Nonnull
+    List<List<String>> resolveWaves(@Nonnull Collection<String> dataSourceNames) {
+        Map<String, Set<String>> pending = new LinkedHashMap<>();
+        for (String dataSourceName : dataSourceNames) {
+            Set<String> dependencies = new LinkedHashSet<>();
+            Object value = getConfigValue(dbFactory.getConfigurationFor(dataSourceName), "close_after", null);
+            if (value instanceof Collection) {
+                for (Object o : (Collection<?>) value) {
+                    dependencies.add(String.valueOf(o));
+                }
+            } else if (value != null) {
+                dependencies.add(String.valueOf(value));
+            }
+            dependencies.retainAll(dataSourceNames);
+            dependencies.remove(dataSourceName);
+            pending.put(dataSourceName, dependencies);
+        }
+
+        List<List<String>> waves = new ArrayList<>();
+        while (!pending.isEmpty()) {
+            List<String> wave = new ArrayList<>();
+            for (Map.Entry<String, Set<String>> e : pending.entrySet()) {
+                if (e.getValue().isEmpty()) {
+                    wave.add(e.getKey());
+                }
+            }
+            if (wave.isEmpty()) {
+                LOG.warn("Cyclic 'close_after' settings detected among {}", pending.keySet());
+                wave.addAll(pending.keySet());
+            }
+            for (String dataSourceName : wave) {
+                pending.remove(dataSourceName);
+            }
+            for (Set<String> dependencies : pending.values()) {
+                dependencies.removeAll(wave);
+            }
+            waves.add(wave);
+        }
+        return waves;
+    }
+
+    private static class ShutdownThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@Nonnull Runnable r) {
+            Thread thread = new Thread(r, "ohmdb-shutdown-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
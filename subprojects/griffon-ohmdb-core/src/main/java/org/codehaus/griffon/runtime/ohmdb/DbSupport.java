@@ -0,0 +1,87 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb;
+
+import griffon.annotations.core.Nonnull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * File and type helpers shared by snapshots, replication and indexes.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public final class DbSupport {
+    private static final Logger LOG = LoggerFactory.getLogger(DbSupport.class);
+
+    private DbSupport() {
+        // prevent instantiation
+    }
+
+    /**
+     * Moves {@code source} over {@code target}, atomically when the file system supports it.
+     */
+    public static void move(@Nonnull Path source, @Nonnull Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public static void deleteQuietly(@Nonnull Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOG.warn("Could not delete {}", path, e);
+        }
+    }
+
+    /**
+     * Loads a class with the context class loader of the current thread, falling back to the plugin's own.
+     */
+    @Nonnull
+    public static Class<?> loadClass(@Nonnull String className) throws ClassNotFoundException {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        return Class.forName(className.trim(), true, classLoader != null ? classLoader : DbSupport.class.getClassLoader());
+    }
+
+    /**
+     * Resolves a table type given in configuration, either as a {@code Class} or as a class name.
+     *
+     * @throws IllegalArgumentException if the type can not be loaded
+     */
+    @Nonnull
+    public static Class<?> toClass(@Nonnull Object type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        }
+        try {
+            return loadClass(String.valueOf(type));
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Unknown table type " + type, e);
+        }
+    }
+}
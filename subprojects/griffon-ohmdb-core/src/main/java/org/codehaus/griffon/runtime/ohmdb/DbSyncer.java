@@ -0,0 +1,173 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb;
+
+import griffon.annotations.core.Nonnull;
+import griffon.exceptions.GriffonException;
+import griffon.plugins.ohmdb.Durability;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Forces the file of a dataSource to disk according to its {@link Durability}. Ohmdb offers no hook to force its own
+ * descriptor, hence the file is opened through a separate, writable channel (some platforms refuse to flush a file
+ * opened for reading only). Forcing it flushes what the operating system holds for the file, data and metadata such
+ * as its length, regardless of which descriptor wrote it; writes Ohmdb still buffers in process are not covered.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+abstract class DbSyncer implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(DbSyncer.class);
+
+    static final DbSyncer NONE = new DbSyncer() {
+        @Override
+        void sync() {
+            // nothing to do
+        }
+
+        @Override
+        public void close() {
+            // nothing to do
+        }
+    };
+
+    /**
+     * Returns once the file has been forced, covering every write handed to the operating system before this call.
+     */
+    abstract void sync();
+
+    @Override
+    public abstract void close();
+
+    @Nonnull
+    static DbSyncer create(@Nonnull Durability durability, @Nonnull File file, long groupCommitWindow) {
+        switch (durability) {
+            case SYNC:
+                return new Immediate(file);
+            case GROUP_COMMIT:
+                return new GroupCommit(file, TimeUnit.MILLISECONDS.toNanos(Math.max(0L, groupCommitWindow)));
+            default:
+                return NONE;
+        }
+    }
+
+    private static class Immediate extends DbSyncer {
+        private final File file;
+        private final FileChannel channel;
+
+        private Immediate(@Nonnull File file) {
+            this.file = requireNonNull(file, "Argument 'file' must not be null");
+            try {
+                this.channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+            } catch (IOException e) {
+                throw new GriffonException("Could not open " + file, e);
+            }
+        }
+
+        @Override
+        void sync() {
+            force();
+        }
+
+        void force() {
+            try {
+                // appends change the file length, which must reach the disk too
+                channel.force(true);
+            } catch (ClosedChannelException e) {
+                // the dataSource was closed meanwhile, shutting it down flushed the file
+            } catch (IOException e) {
+                throw new GriffonException("Could not force " + file + " to disk", e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOG.warn("Could not close {}", file, e);
+            }
+        }
+    }
+
+    /**
+     * The first writer to request a sync becomes the leader: it waits for the window to let other writers join,
+     * then forces the file once for all requests made up to that point. Requests made while a force is in progress
+     * are served by the next leader.
+     */
+    private static final class GroupCommit extends Immediate {
+        private final long window;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition synced = lock.newCondition();
+        private long requested;
+        private long completed;
+        private boolean leading;
+
+        private GroupCommit(@Nonnull File file, long window) {
+            super(file);
+            this.window = window;
+        }
+
+        @Override
+        void sync() {
+            lock.lock();
+            try {
+                long ticket = ++requested;
+                while (completed < ticket) {
+                    if (leading) {
+                        synced.awaitUninterruptibly();
+                        continue;
+                    }
+
+                    leading = true;
+                    long upTo;
+                    lock.unlock();
+                    try {
+                        if (window > 0) {
+                            LockSupport.parkNanos(window);
+                        }
+                        lock.lock();
+                        upTo = requested;
+                        lock.unlock();
+                        force();
+                    } finally {
+                        lock.lock();
+                        leading = false;
+                        synced.signalAll();
+                    }
+                    completed = Math.max(completed, upTo);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,456 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb;
+
+import com.ohmdb.api.Db;
+import com.ohmdb.api.Table;
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+import griffon.plugins.ohmdb.DbBatchWriter;
+import griffon.plugins.ohmdb.DbCacheManager;
+import griffon.plugins.ohmdb.DbChange;
+import griffon.plugins.ohmdb.DbChangeCapture;
+import griffon.plugins.ohmdb.DbHandler;
+import griffon.plugins.ohmdb.DbIndexManager;
+import org.codehaus.griffon.runtime.ohmdb.index.DefaultDbIndexManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static griffon.util.ConfigUtils.getConfigValueAsInt;
+import static griffon.util.ConfigUtils.getConfigValueAsLong;
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@code DbBatchWriter} backed by a bounded queue and a single flusher thread. Producers block
+ * when the queue is full, which provides back-pressure under bursty ingest.
+ * <p>
+ * Producers enqueue while holding a shared lock and {@link #close()} takes it exclusively, thus every operation
+ * accepted before closing is queued ahead of the close marker and gets written.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DefaultDbBatchWriter<T> implements DbBatchWriter<T> {
+    private static final Logger LOG = LoggerFactory.getLogger(DefaultDbBatchWriter.class);
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final long DEFAULT_BATCH_WINDOW = 5L;
+    private static final long CLOSE_POLL_INTERVAL = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final DbHandler dbHandler;
+    private final DbChangeCapture changeCapture;
+    private final DbCacheManager cacheManager;
+    private final DefaultDbIndexManager indexManager;
+    private final String dataSourceName;
+    private final Class<T> type;
+    private final int batchSize;
+    private final long batchWindow;
+    private final BlockingQueue<Operation<T, ?>> queue;
+    private final Thread flusher;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile boolean closed;
+
+    private DefaultDbBatchWriter(@Nonnull DbHandler dbHandler, @Nonnull String dataSourceName, @Nonnull Class<T> type, @Nonnull Map<String, Object> config, @Nullable DbChangeCapture changeCapture, @Nullable DbCacheManager cacheManager, @Nullable DbIndexManager indexManager) {
+        this.dbHandler = requireNonNull(dbHandler, "Argument 'dbHandler' must not be null");
+        this.changeCapture = changeCapture;
+        this.cacheManager = cacheManager;
+        this.indexManager = indexManager instanceof DefaultDbIndexManager ? (DefaultDbIndexManager) indexManager : null;
+        this.dataSourceName = requireNonBlank(dataSourceName, "Argument 'dataSourceName' must not be blank");
+        this.type = requireNonNull(type, "Argument 'type' must not be null");
+        requireNonNull(config, "Argument 'config' must not be null");
+
+        this.batchSize = Math.max(1, getConfigValueAsInt(config, "batch_size", DEFAULT_BATCH_SIZE));
+        this.batchWindow = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, getConfigValueAsLong(config, "batch_window", DEFAULT_BATCH_WINDOW)));
+        int queueSize = getConfigValueAsInt(config, "batch_queue_size", batchSize * 8);
+        this.queue = new LinkedBlockingQueue<>(Math.max(batchSize, queueSize));
+
+        this.flusher = new Thread(this::flushLoop, "ohmdb-batch-" + dataSourceName + "-" + type.getSimpleName());
+        this.flusher.setDaemon(true);
+    }
+
+    /**
+     * Operations written successfully are published to {@code changeCapture} and applied to the indexes of
+     * {@code indexManager} when given. Records touched by each batch are invalidated in {@code cacheManager} when given.
+     */
+    @Nonnull
+    public static <T> DefaultDbBatchWriter<T> create(@Nonnull DbHandler dbHandler, @Nonnull String dataSourceName, @Nonnull Class<T> type, @Nonnull Map<String, Object> config, @Nullable DbChangeCapture changeCapture, @Nullable DbCacheManager cacheManager, @Nullable DbIndexManager indexManager) {
+        DefaultDbBatchWriter<T> writer = new DefaultDbBatchWriter<>(dbHandler, dataSourceName, type, config, changeCapture, cacheManager, indexManager);
+        writer.flusher.start();
+        return writer;
+    }
+
+    @Nonnull
+    @Override
+    public String getDataSourceName() {
+        return dataSourceName;
+    }
+
+    @Nonnull
+    @Override
+    public Class<T> getType() {
+        return type;
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Long> insert(@Nonnull final T record) {
+        requireNonNull(record, "Argument 'record' must not be null");
+        return enqueue(new Operation<T, Long>() {
+            private long id;
+
+            @Override
+            protected Long execute(@Nonnull Table<T> table) {
+                id = table.insert(record);
+                return id;
+            }
+
+            @Override
+            protected void publish(@Nonnull DbChangeCapture changeCapture) {
+                changeCapture.publish(dataSourceName, DbChange.Operation.INSERT, type, id, record);
+            }
+
+            @Override
+            protected void invalidate(@Nonnull DbCacheManager cacheManager) {
+                cacheManager.invalidate(dataSourceName, type, id);
+            }
+
+            @Override
+            protected void index(@Nonnull DefaultDbIndexManager indexManager) {
+                indexManager.indexed(dataSourceName, type, id, record);
+            }
+        });
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Void> update(@Nonnull final T record) {
+        requireNonNull(record, "Argument 'record' must not be null");
+        return enqueue(new Operation<T, Void>() {
+            @Override
+            protected Void execute(@Nonnull Table<T> table) {
+                table.update(record);
+                return null;
+            }
+
+            @Override
+            protected void publish(@Nonnull DbChangeCapture changeCapture) {
+                changeCapture.publish(dataSourceName, DbChange.Operation.UPDATE, type, EntityIds.idOf(record), record);
+            }
+
+            @Override
+            protected void invalidate(@Nonnull DbCacheManager cacheManager) {
+                cacheManager.invalidate(dataSourceName, type, EntityIds.idOf(record));
+            }
+
+            @Override
+            protected void index(@Nonnull DefaultDbIndexManager indexManager) {
+                indexManager.indexed(dataSourceName, type, EntityIds.idOf(record), record);
+            }
+        });
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Void> delete(final long id) {
+        return enqueue(new Operation<T, Void>() {
+            @Override
+            protected Void execute(@Nonnull Table<T> table) {
+                table.delete(id);
+                return null;
+            }
+
+            @Override
+            protected void publish(@Nonnull DbChangeCapture changeCapture) {
+                changeCapture.publish(dataSourceName, DbChange.Operation.DELETE, type, id, null);
+            }
+
+            @Override
+            protected void invalidate(@Nonnull DbCacheManager cacheManager) {
+                cacheManager.invalidate(dataSourceName, type, id);
+            }
+
+            @Override
+            protected void index(@Nonnull DefaultDbIndexManager indexManager) {
+                indexManager.unindexed(dataSourceName, type, id);
+            }
+        });
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Void> flush() {
+        return enqueue(new Marker<T>(true));
+    }
+
+    /**
+     * Whether every operation handed to this writer has been written.
+     */
+    public boolean isIdle() {
+        return pending.get() == 0;
+    }
+
+    /**
+     * Writes all pending operations then stops the flusher thread. Operations queued afterwards fail.
+     */
+    public void close() {
+        Lock exclusive = lock.writeLock();
+        exclusive.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            // no producer is enqueueing at this point, the marker goes after everything accepted so far
+            Marker<T> marker = new Marker<>(false);
+            while (!queue.offer(marker, CLOSE_POLL_INTERVAL, TimeUnit.NANOSECONDS)) {
+                if (!flusher.isAlive()) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exclusive.unlock();
+        }
+
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failPending();
+    }
+
+    @Nonnull
+    private <V> CompletableFuture<V> enqueue(@Nonnull Operation<T, V> operation) {
+        Lock shared = lock.readLock();
+        shared.lock();
+        try {
+            if (closed) {
+                operation.fail(closedException());
+                return operation.future;
+            }
+            pending.incrementAndGet();
+            queue.put(operation);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.decrementAndGet();
+            operation.fail(e);
+        } finally {
+            shared.unlock();
+        }
+        return operation.future;
+    }
+
+    private void flushLoop() {
+        List<Operation<T, ?>> batch = new ArrayList<>(batchSize);
+        boolean running = true;
+        while (running) {
+            try {
+                Operation<T, ?> operation = queue.take();
+                long deadline = System.nanoTime() + batchWindow;
+                while (operation != null) {
+                    if (operation instanceof Marker && !((Marker<T>) operation).flush) {
+                        running = false;
+                        break;
+                    }
+                    batch.add(operation);
+                    if (operation instanceof Marker || batch.size() >= batchSize) {
+                        break;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    operation = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            }
+
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+
+        if (!closed) {
+            abandon();
+        }
+    }
+
+    /**
+     * The flusher was interrupted before {@link #close()} was called. Producers are shut out and whatever they
+     * manage to enqueue meanwhile is failed, so that none of them waits forever on a full queue.
+     */
+    private void abandon() {
+        LOG.warn("Batch writer for {} in dataSource '{}' stopped unexpectedly", type.getName(), dataSourceName);
+        closed = true;
+        Lock exclusive = lock.writeLock();
+        while (!exclusive.tryLock()) {
+            failPending();
+            LockSupport.parkNanos(CLOSE_POLL_INTERVAL);
+        }
+        try {
+            failPending();
+        } finally {
+            exclusive.unlock();
+        }
+    }
+
+    private void failPending() {
+        Operation<T, ?> operation;
+        while ((operation = queue.poll()) != null) {
+            if (operation instanceof Marker && !((Marker<T>) operation).flush) {
+                // queued by close(), not by a producer
+                continue;
+            }
+            operation.fail(closedException());
+            pending.decrementAndGet();
+        }
+    }
+
+    private void write(@Nonnull final List<Operation<T, ?>> batch) {
+        LOG.trace("Writing {} operations on {} in dataSource '{}'", batch.size(), type.getName(), dataSourceName);
+        RuntimeException failure = null;
+        try {
+            dbHandler.withOhmdbWrite(dataSourceName, (String name, Db db) -> {
+                Table<T> table = db.table(type);
+                for (Operation<T, ?> operation : batch) {
+                    operation.apply(table);
+                    // under the write lock, so that no reader sees the table disagree with its cache, indexes or changes
+                    if (cacheManager != null) {
+                        operation.invalidate(cacheManager);
+                    }
+                    if (operation.error == null) {
+                        if (indexManager != null) {
+                            operation.index(indexManager);
+                        }
+                        if (changeCapture != null) {
+                            operation.publish(changeCapture);
+                        }
+                    }
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+
+        if (failure != null) {
+            for (Operation<T, ?> operation : batch) {
+                // operations applied before the failure keep their outcome
+                if (!operation.applied) {
+                    operation.setError(failure);
+                }
+            }
+        }
+
+        for (Operation<T, ?> operation : batch) {
+            operation.complete();
+            pending.decrementAndGet();
+        }
+    }
+
+    @Nonnull
+    private IllegalStateException closedException() {
+        return new IllegalStateException("Batch writer for " + type.getName() + " in dataSource '" + dataSourceName + "' has been closed");
+    }
+
+    private abstract static class Operation<T, V> {
+        private final CompletableFuture<V> future = new CompletableFuture<>();
+        private V result;
+        private Throwable error;
+        private boolean applied;
+
+        protected abstract V execute(@Nonnull Table<T> table);
+
+        /**
+         * Publishes the change made by this operation, once written.
+         */
+        protected void publish(@Nonnull DbChangeCapture changeCapture) {
+            // nothing changed
+        }
+
+        /**
+         * Drops the record touched by this operation from the cache, once applied.
+         */
+        protected void invalidate(@Nonnull DbCacheManager cacheManager) {
+            // nothing changed
+        }
+
+        /**
+         * Applies the change made by this operation to the indexes of its table, once written.
+         */
+        protected void index(@Nonnull DefaultDbIndexManager indexManager) {
+            // nothing changed
+        }
+
+        private void apply(@Nonnull Table<T> table) {
+            try {
+                result = execute(table);
+            } catch (RuntimeException e) {
+                error = e;
+            }
+            applied = true;
+        }
+
+        private void setError(@Nonnull Throwable t) {
+            if (error == null) {
+                error = t;
+            }
+        }
+
+        private void fail(@Nonnull Throwable t) {
+            setError(t);
+            complete();
+        }
+
+        private void complete() {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+
+    private static final class Marker<T> extends Operation<T, Void> {
+        private final boolean flush;
+
+        private Marker(boolean flush) {
+            this.flush = flush;
+        }
+
+        @Override
+        protected Void execute(@Nonnull Table<T> table) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb;
+
+import griffon.annotations.core.Nonnull;
+import griffon.plugins.ohmdb.DbExecutorProvider;
+import griffon.plugins.ohmdb.DbFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static griffon.util.ConfigUtils.getConfigValueAsBoolean;
+import static griffon.util.ConfigUtils.getConfigValueAsInt;
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Creates a bounded thread pool per dataSource, sized by the {@code async_pool_size} and
+ * {@code async_queue_size} settings. Setting {@code async_virtual_threads} runs callbacks
+ * on virtual threads instead when the JVM supports them (JDK 21+).
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DefaultDbExecutorProvider implements DbExecutorProvider {
+    private static final Logger LOG = LoggerFactory.getLogger(DefaultDbExecutorProvider.class);
+    private static final String ERROR_DATASOURCE_NAME_BLANK = "Argument 'dataSourceName' must not be blank";
+    private static final long SHUTDOWN_TIMEOUT = 30;
+
+    private final DbFactory dbFactory;
+    private final ConcurrentMap<String, ExecutorService> executors = new ConcurrentHashMap<>();
+
+    @Inject
+    public DefaultDbExecutorProvider(@Nonnull DbFactory dbFactory) {
+        this.dbFactory = requireNonNull(dbFactory, "Argument 'dbFactory' must not be null");
+    }
+
+    @Nonnull
+    @Override
+    public ExecutorService getExecutor(@Nonnull String dataSourceName) {
+        requireNonBlank(dataSourceName, ERROR_DATASOURCE_NAME_BLANK);
+        ExecutorService executor = executors.get(dataSourceName);
+        if (executor == null) {
+            executor = executors.computeIfAbsent(dataSourceName, this::createExecutor);
+        }
+        return executor;
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown(TimeUnit.SECONDS.toMillis(SHUTDOWN_TIMEOUT));
+    }
+
+    /**
+     * Shuts down every executor, waiting at most {@code timeout} milliseconds in total for work in progress.
+     */
+    public void shutdown(long timeout) {
+        for (ExecutorService executor : executors.values()) {
+            executor.shutdown();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0L, timeout));
+        for (Map.Entry<String, ExecutorService> e : executors.entrySet()) {
+            try {
+                if (!e.getValue().awaitTermination(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    LOG.warn("Asynchronous callbacks on dataSource '{}' did not finish in time", e.getKey());
+                    e.getValue().shutdownNow();
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                e.getValue().shutdownNow();
+            }
+        }
+        executors.clear();
+    }
+
+    @Nonnull
+    protected ExecutorService createExecutor(@Nonnull String dataSourceName) {
+        Map<String, Object> config = dbFactory.getConfigurationFor(dataSourceName);
+
+        if (getConfigValueAsBoolean(config, "async_virtual_threads", false)) {
+            ExecutorService executor = createVirtualThreadExecutor();
+            if (executor != null) {
+                LOG.debug("Using virtual threads for asynchronous callbacks on dataSource '{}'", dataSourceName);
+                return executor;
+            }
+            LOG.warn("Virtual threads are not supported by this JVM. Falling back to a thread pool for dataSource '{}'", dataSourceName);
+        }
+
+        int poolSize = Math.max(1, getConfigValueAsInt(config, "async_pool_size", Runtime.getRuntime().availableProcessors()));
+        int queueSize = getConfigValueAsInt(config, "async_queue_size", 1024);
+        BlockingQueue<Runnable> queue = queueSize > 0 ? new ArrayBlockingQueue<>(queueSize) : new LinkedBlockingQueue<>();
+
+        LOG.debug("Using a pool of {} threads (queue size {}) for asynchronous callbacks on dataSource '{}'", poolSize, queueSize, dataSourceName);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS, queue, new DbThreadFactory(dataSourceName));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            Method factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static class DbThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        private DbThreadFactory(@Nonnull String dataSourceName) {
+            this.prefix = "ohmdb-" + dataSourceName + "-";
+        }
+
+        @Override
+        public Thread newThread(@Nonnull Runnable r) {
+            Thread thread = new Thread(r, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
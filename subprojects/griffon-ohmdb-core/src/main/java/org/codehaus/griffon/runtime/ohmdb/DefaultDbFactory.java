@@ -25,6 +25,7 @@ import griffon.core.GriffonApplication;
 import griffon.core.injection.Injector;
 import griffon.exceptions.GriffonException;
 import griffon.plugins.ohmdb.DbFactory;
+import griffon.plugins.ohmdb.Durability;
 import griffon.plugins.ohmdb.OhmdbBootstrap;
 import griffon.plugins.ohmdb.events.OhmdbConfigurationSetupEvent;
 import griffon.plugins.ohmdb.events.OhmdbConnectEndEvent;
@@ -37,11 +38,17 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import java.io.File;
 import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static griffon.util.ConfigUtils.getConfigValueAsBoolean;
+import static griffon.util.ConfigUtils.getConfigValueAsInt;
+import static griffon.util.ConfigUtils.getConfigValueAsLong;
 import static griffon.util.ConfigUtils.getConfigValueAsString;
 import static griffon.util.GriffonNameUtils.requireNonBlank;
 import static java.util.Objects.requireNonNull;
@@ -52,22 +59,69 @@ import static java.util.Objects.requireNonNull;
 public class DefaultDbFactory extends AbstractObjectFactory<Db> implements DbFactory {
     private static final String ERROR_DATASOURCE_BLANK = "Argument 'dataSourceName' must not be blank";
 
+    private static final long DEFAULT_GROUP_COMMIT_WINDOW = 2L;
+
+    private static final char SHARD_SEPARATOR = '#';
+    private static final String STORAGE_FILE = "file";
+    private static final String STORAGE_MEMORY = "memory";
+
     private final Set<String> dataSourceNames = new LinkedHashSet<>();
+    private final ConcurrentMap<String, DbSyncer> syncers = new ConcurrentHashMap<>();
 
     @Inject
     private Injector injector;
 
+    @Inject
+    private DbEvents events;
+
     @Inject
     public DefaultDbFactory(@Nonnull @Named("ohmdb") Configuration configuration, @Nonnull GriffonApplication application) {
         super(configuration, application);
-        dataSourceNames.add(KEY_DEFAULT);
+        Set<String> names = new LinkedHashSet<>();
+        names.add(KEY_DEFAULT);
 
         if (configuration.containsKey(getPluralKey())) {
             Map<String, Object> ohmdbs = configuration.get(getPluralKey());
-            dataSourceNames.addAll(ohmdbs.keySet());
+            names.addAll(ohmdbs.keySet());
+        }
+
+        // sharded dataSources are replaced by their shards
+        for (String name : names) {
+            int shards = getShardCount(name);
+            if (shards > 0) {
+                for (int i = 0; i < shards; i++) {
+                    dataSourceNames.add(shardName(name, i));
+                }
+            } else {
+                dataSourceNames.add(name);
+            }
         }
     }
 
+    /**
+     * Returns the name of a shard of the given dataSource.
+     *
+     * @since 3.0.0
+     */
+    @Nonnull
+    public static String shardName(@Nonnull String dataSourceName, int index) {
+        requireNonBlank(dataSourceName, ERROR_DATASOURCE_BLANK);
+        return dataSourceName + SHARD_SEPARATOR + index;
+    }
+
+    /**
+     * Returns the number of shards of the given dataSource, {@code 0} if it is not sharded.
+     *
+     * @since 3.0.0
+     */
+    public int getShardCount(@Nonnull String dataSourceName) {
+        requireNonBlank(dataSourceName, ERROR_DATASOURCE_BLANK);
+        if (dataSourceName.indexOf(SHARD_SEPARATOR) >= 0) {
+            return 0;
+        }
+        return Math.max(0, getConfigValueAsInt(narrowConfig(dataSourceName), "shards", 0));
+    }
+
     @Nonnull
     @Override
     public Set<String> getDataSourceNames() {
@@ -78,7 +132,7 @@ public class DefaultDbFactory extends AbstractObjectFactory<Db> implements DbFac
     @Override
     public Map<String, Object> getConfigurationFor(@Nonnull String dataSourceName) {
         requireNonBlank(dataSourceName, ERROR_DATASOURCE_BLANK);
-        return narrowConfig(dataSourceName);
+        return resolveConfig(dataSourceName);
     }
 
     @Nonnull
@@ -97,13 +151,17 @@ public class DefaultDbFactory extends AbstractObjectFactory<Db> implements DbFac
     @Override
     public Db create(@Nonnull String name) {
         requireNonBlank(name, ERROR_DATASOURCE_BLANK);
-        Map<String, Object> config = narrowConfig(name);
+        int shards = getShardCount(name);
+        if (shards > 0) {
+            throw new IllegalArgumentException("DataSource '" + name + "' is split in " + shards + " shards. Use withOhmdbShard() or withOhmdbShards() instead.");
+        }
+        Map<String, Object> config = resolveConfig(name);
 
         if (config.isEmpty()) {
             throw new IllegalArgumentException("DataSource '" + config + "' is not configured.");
         }
 
-        event(OhmdbConnectStartEvent.of(name, config));
+        events.publish(OhmdbConnectStartEvent.class, () -> OhmdbConnectStartEvent.of(name, config));
 
         Db db = createDb(config, name);
 
@@ -111,39 +169,111 @@ public class DefaultDbFactory extends AbstractObjectFactory<Db> implements DbFac
             ((OhmdbBootstrap) o).init(name, db);
         }
 
-        event(OhmdbConnectEndEvent.of(name, config, db));
+        events.publish(OhmdbConnectEndEvent.class, () -> OhmdbConnectEndEvent.of(name, config, db));
 
         return db;
     }
 
     @Override
     public void destroy(@Nonnull String name, @Nonnull Db instance) {
+        destroy(name, instance, new AtomicBoolean());
+    }
+
+    /**
+     * Closes the given dataSource. The closing {@code OhmdbDisconnectEndEvent} is only published if this call is the
+     * first to claim {@code endReported}, so that a close that was already reported as unclean is not reported again.
+     */
+    void destroy(@Nonnull String name, @Nonnull Db instance, @Nonnull AtomicBoolean endReported) {
         requireNonBlank(name, ERROR_DATASOURCE_BLANK);
         requireNonNull(instance, "Argument 'instance' must not be null");
-        Map<String, Object> config = narrowConfig(name);
+        Map<String, Object> config = resolveConfig(name);
 
         if (config.isEmpty()) {
             throw new IllegalArgumentException("DataSource '" + config + "' is not configured.");
         }
 
-        event(OhmdbDisconnectStartEvent.of(name, config, instance));
+        events.publish(OhmdbDisconnectStartEvent.class, () -> OhmdbDisconnectStartEvent.of(name, config, instance));
 
         for (Object o : injector.getInstances(OhmdbBootstrap.class)) {
             ((OhmdbBootstrap) o).destroy(name, instance);
         }
 
+        DbSyncer syncer = syncers.remove(name);
+        if (syncer != null) {
+            syncer.close();
+        }
         destroyDb(config, instance);
 
-        event(OhmdbDisconnectEndEvent.of(name, config));
+        if (endReported.compareAndSet(false, true)) {
+            events.publish(OhmdbDisconnectEndEvent.class, () -> OhmdbDisconnectEndEvent.of(name, config));
+        }
+    }
+
+    /**
+     * Whether the given dataSource is configured with {@code storage = "memory"}, thus not backed by a file.
+     *
+     * @since 3.0.0
+     */
+    public boolean isInMemory(@Nonnull String dataSourceName) {
+        requireNonBlank(dataSourceName, ERROR_DATASOURCE_BLANK);
+        return isInMemory(resolveConfig(dataSourceName));
+    }
+
+    /**
+     * Resolves the file that backs the given dataSource.
+     *
+     * @throws IllegalStateException if the dataSource is kept in memory
+     * @since 3.0.0
+     */
+    @Nonnull
+    public File resolveDbFile(@Nonnull String dataSourceName) {
+        requireNonBlank(dataSourceName, ERROR_DATASOURCE_BLANK);
+        Map<String, Object> config = resolveConfig(dataSourceName);
+        if (config.isEmpty()) {
+            throw new IllegalArgumentException("DataSource '" + dataSourceName + "' is not configured.");
+        }
+        if (isInMemory(config)) {
+            throw new IllegalStateException("DataSource '" + dataSourceName + "' is kept in memory and has no file.");
+        }
+        return resolveDBFile(config);
+    }
+
+    /**
+     * Returns the syncer that enforces the {@code durability} of an open dataSource.
+     */
+    @Nonnull
+    DbSyncer getSyncer(@Nonnull String dataSourceName) {
+        DbSyncer syncer = syncers.get(dataSourceName);
+        return syncer != null ? syncer : DbSyncer.NONE;
     }
 
     @Nonnull
     private Db createDb(@Nonnull Map<String, Object> config, @Nonnull String name) {
+        if (isInMemory(config)) {
+            // nothing to preload nor sync, nothing left behind on shutdown
+            Db db = Ohm.db();
+            events.publish(OhmdbConfigurationSetupEvent.class, () -> OhmdbConfigurationSetupEvent.of(name, config, db));
+            return db;
+        }
+
         File dbfile = resolveDBFile(config);
-        Db db = null;
+        Durability durability = Durability.of(getConfigValueAsString(config, "durability", "async"));
+        DbFilePreloader.preload(dbfile, getConfigValueAsString(config, "preload", DbFilePreloader.PRELOAD_NONE));
         try {
-            db = Ohm.db(dbfile.getCanonicalPath());
-            event(OhmdbConfigurationSetupEvent.of(name, config, db));
+            Db db = Ohm.db(dbfile.getCanonicalPath());
+            long groupCommitWindow = getConfigValueAsLong(config, "group_commit_window", DEFAULT_GROUP_COMMIT_WINDOW);
+            DbSyncer syncer;
+            try {
+                syncer = DbSyncer.create(durability, dbfile, groupCommitWindow);
+            } catch (RuntimeException e) {
+                db.shutdown();
+                throw e;
+            }
+            DbSyncer previous = syncers.put(name, syncer);
+            if (previous != null) {
+                previous.close();
+            }
+            events.publish(OhmdbConfigurationSetupEvent.class, () -> OhmdbConfigurationSetupEvent.of(name, config, db));
             return db;
         } catch (IOException ioe) {
             throw new GriffonException(ioe);
@@ -155,12 +285,63 @@ public class DefaultDbFactory extends AbstractObjectFactory<Db> implements DbFac
 
         boolean delete = getConfigValueAsBoolean(config, "delete", false);
 
-        if (delete) {
+        if (delete && !isInMemory(config)) {
             File dbfile = resolveDBFile(config);
             dbfile.deleteOnExit();
         }
     }
 
+    /**
+     * Shards inherit the settings of their dataSource, each one with its own file: {@code people-1.bin} for
+     * shard {@code 1} of a dataSource whose {@code name} is {@code people.bin}.
+     *
+     * @throws IllegalArgumentException if the name contains {@code #} but does not refer to an existing shard
+     */
+    @Nonnull
+    private Map<String, Object> resolveConfig(@Nonnull String name) {
+        int separator = name.lastIndexOf(SHARD_SEPARATOR);
+        if (separator < 0) {
+            return narrowConfig(name);
+        }
+
+        String dataSourceName = name.substring(0, separator);
+        int shards = getShardCount(dataSourceName);
+        if (shards == 0) {
+            throw new IllegalArgumentException("DataSource '" + name + "' is not a shard, '" + dataSourceName + "' is not split in shards.");
+        }
+        int index;
+        try {
+            index = Integer.parseInt(name.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("DataSource '" + name + "' is not a shard, shards of '" + dataSourceName + "' are numbered from 0 to " + (shards - 1) + ".", e);
+        }
+        if (index < 0 || index >= shards) {
+            throw new IllegalArgumentException("DataSource '" + name + "' is not a shard, shards of '" + dataSourceName + "' are numbered from 0 to " + (shards - 1) + ".");
+        }
+
+        Map<String, Object> config = new LinkedHashMap<>(narrowConfig(dataSourceName));
+        String fileName = getConfigValueAsString(config, "name", "db.bin");
+        int extension = fileName.lastIndexOf('.');
+        if (extension > Math.max(fileName.lastIndexOf('/'), fileName.lastIndexOf(File.separatorChar))) {
+            fileName = fileName.substring(0, extension) + "-" + index + fileName.substring(extension);
+        } else {
+            fileName = fileName + "-" + index;
+        }
+        config.put("name", fileName);
+        config.remove("shards");
+        return config;
+    }
+
+    private static boolean isInMemory(@Nonnull Map<String, Object> config) {
+        String storage = getConfigValueAsString(config, "storage", STORAGE_FILE);
+        if (STORAGE_MEMORY.equalsIgnoreCase(storage)) {
+            return true;
+        } else if (STORAGE_FILE.equalsIgnoreCase(storage)) {
+            return false;
+        }
+        throw new IllegalArgumentException("Unknown storage '" + storage + "'. Valid values are: " + STORAGE_FILE + ", " + STORAGE_MEMORY);
+    }
+
     @Nonnull
     private File resolveDBFile(@Nonnull Map<String, Object> config) {
         String dbfileName = getConfigValueAsString(config, "name", "db.bin");
@@ -20,15 +20,47 @@ package org.codehaus.griffon.runtime.ohmdb;
 import com.ohmdb.api.Db;
 import griffon.annotations.core.Nonnull;
 import griffon.annotations.core.Nullable;
+import griffon.exceptions.GriffonException;
+import griffon.plugins.ohmdb.DbBatchWriter;
 import griffon.plugins.ohmdb.DbCallback;
+import griffon.plugins.ohmdb.DbCacheManager;
+import griffon.plugins.ohmdb.DbChangeCapture;
+import griffon.plugins.ohmdb.DbExecutorProvider;
 import griffon.plugins.ohmdb.DbFactory;
 import griffon.plugins.ohmdb.DbHandler;
+import griffon.plugins.ohmdb.DbIndexManager;
 import griffon.plugins.ohmdb.DbStorage;
+import griffon.plugins.ohmdb.ImportFormat;
+import org.codehaus.griffon.runtime.ohmdb.imports.DbImporter;
+import org.codehaus.griffon.runtime.ohmdb.monitor.DataSourceMetrics;
+import org.codehaus.griffon.runtime.ohmdb.monitor.DbMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.StampedLock;
 
+import static griffon.util.ConfigUtils.getConfigValueAsBoolean;
+import static griffon.util.ConfigUtils.getConfigValueAsLong;
 import static griffon.util.GriffonNameUtils.requireNonBlank;
 import static java.util.Objects.requireNonNull;
 
@@ -40,14 +72,47 @@ public class DefaultDbHandler implements DbHandler {
     private static final String ERROR_DATASOURCE_NAME_BLANK = "Argument 'dataSourceName' must not be blank";
     private static final String ERROR_DB_NULL = "Argument 'db' must not be null";
     private static final String ERROR_CALLBACK_NULL = "Argument 'callback' must not be null";
+    private static final String ERROR_TYPE_NULL = "Argument 'type' must not be null";
+    private static final int LEASE_RETIRED = -1;
+    private static final long LEASE_BACKOFF = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long DEFAULT_LEASE_TIMEOUT = 30000L;
 
     private final DbFactory dbFactory;
     private final DbStorage dbStorage;
+    private final DbExecutorProvider dbExecutorProvider;
+    private final DbMetrics dbMetrics;
+    private final DbLocks dbLocks;
+    private final DbEvictionPolicy evictionPolicy;
+    private final DbReplicas dbReplicas;
+    private final DbChangeCapture dbChangeCapture;
+    private final DbCacheManager dbCacheManager;
+    private final DbIndexManager dbIndexManager;
+    private final DbImporter dbImporter;
+    private final ConcurrentMap<String, FutureTask<Db>> pendingDbs = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, DefaultDbBatchWriter<?>> batchWriters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicInteger> leases = new ConcurrentHashMap<>();
+    private final Set<String> draining = ConcurrentHashMap.newKeySet();
+    private final Set<String> closing = ConcurrentHashMap.newKeySet();
+    private final ConcurrentMap<String, Thread> exclusiveOwners = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Boolean> exclusiveCallbacks = new ConcurrentHashMap<>();
+    // dataSources the current thread runs a callback of, with the access that callback holds
+    private final ThreadLocal<Map<String, Access>> heldLocks = ThreadLocal.withInitial(HashMap::new);
+    // set while the current thread runs a callback submitted with withOhmdbAsync
+    private final ThreadLocal<Boolean> runningAsync = ThreadLocal.withInitial(() -> Boolean.FALSE);
 
     @Inject
-    public DefaultDbHandler(@Nonnull DbFactory dbFactory, @Nonnull DbStorage dbStorage) {
+    public DefaultDbHandler(@Nonnull DbFactory dbFactory, @Nonnull DbStorage dbStorage, @Nonnull DbExecutorProvider dbExecutorProvider, @Nonnull DbMetrics dbMetrics, @Nonnull DbLocks dbLocks, @Nonnull DbEvictionPolicy evictionPolicy, @Nonnull DbReplicas dbReplicas, @Nonnull DbChangeCapture dbChangeCapture, @Nonnull DbCacheManager dbCacheManager, @Nonnull DbIndexManager dbIndexManager, @Nonnull DbEvents events) {
         this.dbFactory = requireNonNull(dbFactory, "Argument 'dbFactory' must not be null");
         this.dbStorage = requireNonNull(dbStorage, "Argument 'dbStorage' must not be null");
+        this.dbExecutorProvider = requireNonNull(dbExecutorProvider, "Argument 'dbExecutorProvider' must not be null");
+        this.dbMetrics = requireNonNull(dbMetrics, "Argument 'dbMetrics' must not be null");
+        this.dbLocks = requireNonNull(dbLocks, "Argument 'dbLocks' must not be null");
+        this.evictionPolicy = requireNonNull(evictionPolicy, "Argument 'evictionPolicy' must not be null");
+        this.dbReplicas = requireNonNull(dbReplicas, "Argument 'dbReplicas' must not be null");
+        this.dbChangeCapture = requireNonNull(dbChangeCapture, "Argument 'dbChangeCapture' must not be null");
+        this.dbCacheManager = requireNonNull(dbCacheManager, "Argument 'dbCacheManager' must not be null");
+        this.dbIndexManager = requireNonNull(dbIndexManager, "Argument 'dbIndexManager' must not be null");
+        this.dbImporter = new DbImporter(this, dbChangeCapture, dbCacheManager, dbIndexManager, events);
     }
 
     @Nullable
@@ -56,14 +121,306 @@ public class DefaultDbHandler implements DbHandler {
         return withOhmdb(DefaultDbFactory.KEY_DEFAULT, callback);
     }
 
+    /**
+     * Callbacks may write, hence they follow the {@code durability} of the dataSource. They do not take its lock
+     * unless {@code exclusive_callbacks} is set, in which case they hold the write lock like {@code withOhmdbWrite}.
+     *
+     * @throws IllegalStateException if called from inside a read callback of the same dataSource
+     */
     @Nullable
     @Override
     public <R> R withOhmdb(@Nonnull String dataSourceName, @Nonnull DbCallback<R> callback) {
         requireNonBlank(dataSourceName, ERROR_DATASOURCE_NAME_BLANK);
         requireNonNull(callback, ERROR_CALLBACK_NULL);
 
-        Db db = getDb(dataSourceName);
-        return doWithDb(dataSourceName, db, callback);
+        Access held = heldLocks.get().get(dataSourceName);
+        if (held != null && held.isRead()) {
+            throw new IllegalStateException("DataSource '" + dataSourceName + "' can not be written to from inside a read callback");
+        }
+
+        boolean outermost = held == null;
+        Access access = isExclusiveCallbacks(dataSourceName) ? Access.WRITE : Access.UNLOCKED;
+        R result;
+        try {
+            result = execute(dataSourceName, callback, dbMetrics.forDataSource(dataSourceName), access);
+        } finally {
+            dbReplicas.written(dataSourceName);
+        }
+        if (outermost) {
+            sync(dataSourceName);
+        }
+        return result;
+    }
+
+    @Nullable
+    @Override
+    public <R> R withOhmdbRead(@Nonnull DbCallback<R> callback) {
+        return withOhmdbRead(DefaultDbFactory.KEY_DEFAULT, callback);
+    }
+
+    /**
+     * Runs the callback without locking first and validates that no write happened meanwhile. If one did, or if the
+     * callback failed while a write was in progress, the callback is run again holding the read lock, thus read
+     * callbacks must be free of side effects.
+     */
+    @Nullable
+    @Override
+    public <R> R withOhmdbRead(@Nonnull String dataSourceName, @Nonnull DbCallback<R> callback) {
+        requireNonBlank(dataSourceName, ERROR_DATASOURCE_NAME_BLANK);
+        requireNonNull(callback, ERROR_CALLBACK_NULL);
+
+        return execute(dataSourceName, callback, dbMetrics.forDataSource(dataSourceName), Access.OPTIMISTIC_READ);
+    }
+
+    @Nullable
+    @Override
+    public <R> R withOhmdbReplica(@Nonnull DbCallback<R> callback) {
+        return withOhmdbReplica(DefaultDbFactory.KEY_DEFAULT, callback);
+    }
+
+    /**
+     * Runs a read callback on one of the replicas of the given dataSource, round-robin, or on the dataSource itself
+     * while none has received a shipment yet. Callbacks receive the name of the dataSource serving them. Replicas lag
+     * behind their primary and their ids do not match those of the primary.
+     */
+    @Nullable
+    @Override
+    public <R> R withOhmdbReplica(@Nonnull String dataSourceName, @Nonnull DbCallback<R> callback) {
+        requireNonBlank(dataSourceName, ERROR_DATASOURCE_NAME_BLANK);
+        requireNonNull(callback, ERROR_CALLBACK_NULL);
+
+        String replica = dbReplicas.route(dataSourceName);
+        return execute(replica, callback, dbMetrics.forDataSource(replica), Access.OPTIMISTIC_READ);
+    }
+
+    @Nullable
+    @Override
+    public <R> R withOhmdbWrite(@Nonnull DbCallback<R> callback) {
+        return withOhmdbWrite(DefaultDbFactory.KEY_DEFAULT, callback);
+    }
+
+    @Nullable
+    @Override
+    public <R> R withOhmdbWrite(@Nonnull String dataSourceName, @Nonnull DbCallback<R> callback) {
+        requireNonBlank(dataSourceName, ERROR_DATASOURCE_NAME_BLANK);
+        requireNonNull(callback, ERROR_CALLBACK_NULL);
+        if (dbReplicas.isReplica(dataSourceName)) {
+            throw new IllegalStateException("DataSource '" + dataSourceName + "' is a replica of '" + dbReplicas.getPrimary(dataSourceName) + "' and can not be written to");
+        }
+
+        Access held = heldLocks.get().get(dataSourceName);
+        if (held != null && held.isRead()) {
+            throw new IllegalStateException("DataSource '" + dataSourceName + "' can not be written to from inside a read callback");
+        }
+
+        boolean outermost = held == null;
+        R result;
+        try {
+            result = execute(dataSourceName, callback, dbMetrics.forDataSource(dataSourceName), Access.WRITE);
+        } finally {
+            dbReplicas.written(dataSourceName);
+        }
+        if (outermost) {
+            sync(dataSourceName);
+        }
+        return result;
+    }
+
+    private boolean isExclusiveCallbacks(@Nonnull String dataSourceName) {
+        Boolean exclusive = exclusiveCallbacks.get(dataSourceName);
+        if (exclusive == null) {
+            Map<String, Object> config = dbFactory.getConfigurationFor(dataSourceName);
+            exclusive = getConfigValueAsBoolean(config, "exclusive_callbacks", false);
+            if (!config.isEmpty()) {
+                exclusiveCallbacks.put(dataSourceName, exclusive);
+            }
+        }
+        return exclusive;
+    }
+
+    /**
+     * Called once the outermost write callback released the lock, so that concurrent writers may share a group
+     * commit.
+     */
+    private void sync(@Nonnull String dataSourceName) {
+        if (dbFactory instanceof DefaultDbFactory) {
+            ((DefaultDbFactory) dbFactory).getSyncer(dataSourceName).sync();
+        }
+    }
+
+    @Nonnull
+    @Override
+    public <R> CompletableFuture<R> withOhmdbAsync(@Nonnull DbCallback<R> callback) {
+        return withOhmdbAsync(DefaultDbFactory.KEY_DEFAULT, callback);
+    }
+
+    @Nonnull
+    @Override
+    public <R> CompletableFuture<R> withOhmdbAsync(@Nonnull final String dataSourceName, @Nonnull final DbCallback<R> callback) {
+        requireNonBlank(dataSourceName, ERROR_DATASOURCE_NAME_BLANK);
+        requireNonNull(callback, ERROR_CALLBACK_NULL);
+
+        try {
+            return CompletableFuture.supplyAsync(() -> runAsync(dataSourceName, callback), dbExecutorProvider.getExecutor(dataSourceName));
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<R> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    @Nullable
+    private <R> R runAsync(@Nonnull String dataSourceName, @Nonnull DbCallback<R> callback) {
+        Boolean previous = runningAsync.get();
+        runningAsync.set(Boolean.TRUE);
+        try {
+            return withOhmdb(dataSourceName, callback);
+        } finally {
+            runningAsync.set(previous);
+        }
+    }
+
+    @Nullable
+    @Override
+    public <R> R withOhmdbShard(@Nonnull Object key, @Nonnull DbCallback<R> callback) {
+        return withOhmdbShard(DefaultDbFactory.KEY_DEFAULT, key, callback);
+    }
+
+    /**
+     * Runs the callback on the shard that owns the given key, chosen by the key's hash code. Callbacks receive the
+     * name of the shard, for example {@code people#2}. Unsharded dataSources run the callback directly.
+     */
+    @Nullable
+    @Override
+    public <R> R withOhmdbShard(@Nonnull String dataSourceName, @Nonnull Object key, @Nonnull DbCallback<R> callback) {
+        requireNonBlank(dataSourceName, ERROR_DATASOURCE_NAME_BLANK);
+        requireNonNull(key, "Argument 'key' must not be null");
+        requireNonNull(callback, ERROR_CALLBACK_NULL);
+
+        int shards = getShardCount(dataSourceName);
+        if (shards == 0) {
+            return withOhmdb(dataSourceName, callback);
+        }
+        int hash = key.hashCode();
+        int index = Math.floorMod(hash ^ (hash >>> 16), shards);
+        return withOhmdb(DefaultDbFactory.shardName(dataSourceName, index), callback);
+    }
+
+    @Nonnull
+    @Override
+    public <R> List<R> withOhmdbShards(@Nonnull DbCallback<R> callback) {
+        return withOhmdbShards(DefaultDbFactory.KEY_DEFAULT, callback);
+    }
+
+    /**
+     * Runs the callback on every shard concurrently, using the asynchronous executor of each shard, and returns
+     * the results in shard order. Failures are rethrown once every shard has completed.
+     * <p>
+     * When called from inside another callback, or from an asynchronous executor, the shards are visited one after
+     * the other on the calling thread instead: waiting for the executors could otherwise wait for the calling thread
+     * itself, either for its executor slot or for a lock it holds.
+     */
+    @Nonnull
+    @Override
+    public <R> List<R> withOhmdbShards(@Nonnull String dataSourceName, @Nonnull DbCallback<R> callback) {
+        requireNonBlank(dataSourceName, ERROR_DATASOURCE_NAME_BLANK);
+        requireNonNull(callback, ERROR_CALLBACK_NULL);
+
+        int shards = getShardCount(dataSourceName);
+        if (shards == 0) {
+            return Collections.singletonList(withOhmdb(dataSourceName, callback));
+        }
+
+        if (runningAsync.get() || !heldLocks.get().isEmpty()) {
+            return withOhmdbShardsSequentially(dataSourceName, shards, callback);
+        }
+
+        List<CompletableFuture<R>> futures = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            futures.add(withOhmdbAsync(DefaultDbFactory.shardName(dataSourceName, i), callback));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new GriffonException("Could not run callback on the shards of dataSource '" + dataSourceName + "'", cause);
+        }
+
+        List<R> results = new ArrayList<>(shards);
+        for (CompletableFuture<R> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
+
+    @Nonnull
+    private <R> List<R> withOhmdbShardsSequentially(@Nonnull String dataSourceName, int shards, @Nonnull DbCallback<R> callback) {
+        List<R> results = new ArrayList<>(shards);
+        RuntimeException failure = null;
+        for (int i = 0; i < shards; i++) {
+            try {
+                results.add(withOhmdb(DefaultDbFactory.shardName(dataSourceName, i), callback));
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    @Nonnull
+    @Override
+    public <T> DbBatchWriter<T> withOhmdbBatch(@Nonnull Class<T> type) {
+        return withOhmdbBatch(DefaultDbFactory.KEY_DEFAULT, type);
+    }
+
+    @Nonnull
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> DbBatchWriter<T> withOhmdbBatch(@Nonnull final String dataSourceName, @Nonnull final Class<T> type) {
+        requireNonBlank(dataSourceName, ERROR_DATASOURCE_NAME_BLANK);
+        requireNonNull(type, ERROR_TYPE_NULL);
+
+        String key = dataSourceName + ":" + type.getName();
+        DefaultDbBatchWriter<?> writer = batchWriters.get(key);
+        if (writer == null) {
+            final Map<String, Object> config = dbFactory.getConfigurationFor(dataSourceName);
+            if (config.isEmpty()) {
+                throw new IllegalArgumentException("DataSource '" + dataSourceName + "' is not configured.");
+            }
+            writer = batchWriters.computeIfAbsent(key, k -> DefaultDbBatchWriter.create(this, dataSourceName, type, config, dbChangeCapture, dbCacheManager, dbIndexManager));
+        }
+        return (DbBatchWriter<T>) writer;
+    }
+
+    @Override
+    public <T> long importInto(@Nonnull Class<T> type, @Nonnull InputStream input, @Nonnull ImportFormat format) {
+        return importInto(DefaultDbFactory.KEY_DEFAULT, type, input, format);
+    }
+
+    @Override
+    public <T> long importInto(@Nonnull String dataSourceName, @Nonnull Class<T> type, @Nonnull InputStream input, @Nonnull ImportFormat format) {
+        requireNonBlank(dataSourceName, ERROR_DATASOURCE_NAME_BLANK);
+        requireNonNull(type, ERROR_TYPE_NULL);
+        requireNonNull(input, "Argument 'input' must not be null");
+        requireNonNull(format, "Argument 'format' must not be null");
+
+        Map<String, Object> config = dbFactory.getConfigurationFor(dataSourceName);
+        if (config.isEmpty()) {
+            throw new IllegalArgumentException("DataSource '" + dataSourceName + "' is not configured.");
+        }
+        return dbImporter.importInto(dataSourceName, type, input, format, config);
     }
 
     @Override
@@ -73,6 +430,369 @@ public class DefaultDbHandler implements DbHandler {
 
     @Override
     public void closeOhmdb(@Nonnull String dataSourceName) {
+        closeBatchWriters(dataSourceName);
+        destroyDb(dataSourceName);
+    }
+
+    /**
+     * Closes the given dataSource if no callback is using it. The dataSource is reopened on next use.
+     * Batch writers of the dataSource with nothing left to write are closed as well; writers obtained
+     * before must be replaced by calling {@code withOhmdbBatch} again. In-memory dataSources are never
+     * evicted, their contents would be lost.
+     *
+     * @return {@code true} if the dataSource was closed
+     */
+    public boolean evict(@Nonnull String dataSourceName) {
+        requireNonBlank(dataSourceName, ERROR_DATASOURCE_NAME_BLANK);
+        if (isInMemory(dataSourceName) || !closeIdleBatchWriters(dataSourceName)) {
+            return false;
+        }
+
+        AtomicInteger lease = leases.get(dataSourceName);
+        if (lease == null || !lease.compareAndSet(0, LEASE_RETIRED)) {
+            return false;
+        }
+        try {
+            if (dbStorage.get(dataSourceName) == null) {
+                return false;
+            }
+            LOG.debug("Evicting dataSource '{}'", dataSourceName);
+            // batch writers created meanwhile are left alone, their writes reopen the dataSource
+            destroyDb(dataSourceName);
+            return true;
+        } finally {
+            lease.set(0);
+        }
+    }
+
+    /**
+     * Closes the given dataSource for good, as done at shutdown. Pending batch writes are flushed first; from then
+     * on new callbacks are refused with an {@code IllegalStateException} while callbacks in progress are given until
+     * {@code deadline} to finish.
+     *
+     * @param deadline     a {@code System.nanoTime()} value
+     * @param endReported  see {@link DefaultDbFactory#destroy(String, Db, AtomicBoolean)}
+     * @throws IllegalStateException if callbacks are still in progress at the deadline, the dataSource is left open
+     */
+    void shutdownOhmdb(@Nonnull String dataSourceName, long deadline, @Nonnull AtomicBoolean endReported) {
+        requireNonBlank(dataSourceName, ERROR_DATASOURCE_NAME_BLANK);
+        closeBatchWriters(dataSourceName);
+        closing.add(dataSourceName);
+
+        AtomicInteger lease = leases.get(dataSourceName);
+        while (lease != null && !lease.compareAndSet(0, LEASE_RETIRED)) {
+            if (System.nanoTime() - deadline > 0) {
+                throw new IllegalStateException("Timed out waiting for " + Math.max(0, lease.get()) + " callbacks on dataSource '" + dataSourceName + "' to finish");
+            }
+            LockSupport.parkNanos(LEASE_BACKOFF);
+        }
+
+        Db db = dbStorage.get(dataSourceName);
+        if (db != null) {
+            if (dbFactory instanceof DefaultDbFactory) {
+                ((DefaultDbFactory) dbFactory).destroy(dataSourceName, db, endReported);
+            } else {
+                dbFactory.destroy(dataSourceName, db);
+            }
+            dbStorage.remove(dataSourceName);
+        }
+    }
+
+    /**
+     * Runs a read callback holding the read lock of the dataSource from the start, skipping the optimistic attempt
+     * of {@code withOhmdbRead}. Writes wait until the callback returns while other reads proceed, which suits long
+     * reads that need a consistent view such as snapshots.
+     */
+    @Nullable
+    public <R> R withReadLock(@Nonnull String dataSourceName, @Nonnull DbCallback<R> callback) {
+        requireNonBlank(dataSourceName, ERROR_DATASOURCE_NAME_BLANK);
+        requireNonNull(callback, ERROR_CALLBACK_NULL);
+
+        return execute(dataSourceName, callback, dbMetrics.forDataSource(dataSourceName), Access.LOCKED_READ);
+    }
+
+    /**
+     * Runs the callback while no other callback uses the dataSource. Callbacks in progress are allowed to finish
+     * first; callbacks started meanwhile wait until this one completes, then proceed, reopening the dataSource if
+     * the callback closed it. Pending batch writes are flushed beforehand.
+     *
+     * @param timeout milliseconds to wait for callbacks in progress
+     * @throws IllegalStateException if callbacks in progress did not finish in time, or if called from inside a
+     *                               callback of the same dataSource
+     */
+    @Nullable
+    public <R> R withExclusiveAccess(@Nonnull String dataSourceName, long timeout, @Nonnull DbCallback<R> callback) {
+        requireNonBlank(dataSourceName, ERROR_DATASOURCE_NAME_BLANK);
+        requireNonNull(callback, ERROR_CALLBACK_NULL);
+        if (!dbFactory.getDataSourceNames().contains(dataSourceName)) {
+            throw new IllegalArgumentException("DataSource '" + dataSourceName + "' is not configured.");
+        }
+        if (heldLocks.get().containsKey(dataSourceName)) {
+            // the lease of the enclosing callback would never be released
+            throw new IllegalStateException("Exclusive access to dataSource '" + dataSourceName + "' can not be requested from inside one of its callbacks");
+        }
+
+        for (DefaultDbBatchWriter<?> writer : batchWriters.values()) {
+            if (dataSourceName.equals(writer.getDataSourceName())) {
+                writer.flush().join();
+            }
+        }
+
+        AtomicInteger lease = leases.computeIfAbsent(dataSourceName, k -> new AtomicInteger());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        while (!draining.add(dataSourceName)) {
+            // another exclusive callback is running
+            awaitDeadline(dataSourceName, deadline);
+        }
+        try {
+            while (!lease.compareAndSet(0, LEASE_RETIRED)) {
+                awaitDeadline(dataSourceName, deadline);
+            }
+            exclusiveOwners.put(dataSourceName, Thread.currentThread());
+            try {
+                // no callback holds a lease, hence none holds the lock either
+                return executeWriting(dataSourceName, getDb(dataSourceName), callback, dbMetrics.forDataSource(dataSourceName));
+            } finally {
+                exclusiveOwners.remove(dataSourceName);
+                lease.set(0);
+            }
+        } finally {
+            draining.remove(dataSourceName);
+        }
+    }
+
+    private static void awaitDeadline(@Nonnull String dataSourceName, long deadline) {
+        if (System.nanoTime() - deadline > 0) {
+            throw new IllegalStateException("Timed out waiting for callbacks on dataSource '" + dataSourceName + "' to finish");
+        }
+        LockSupport.parkNanos(LEASE_BACKOFF);
+    }
+
+    /**
+     * Closes every dataSource that has been idle for longer than its {@code idle_timeout}.
+     */
+    public void evictIdle() {
+        for (String dataSourceName : dbStorage.getKeysByLeastRecentUse()) {
+            long idleTimeout = evictionPolicy.getIdleTimeout(dataSourceName);
+            if (idleTimeout > 0 && dbStorage.getIdleTime(dataSourceName) >= idleTimeout) {
+                evict(dataSourceName);
+            }
+        }
+    }
+
+    private void enforceMaxOpen(@Nonnull String dataSourceName) {
+        int maxOpen = evictionPolicy.getMaxOpen();
+        if (maxOpen <= 0) {
+            return;
+        }
+        for (String candidate : dbStorage.getKeysByLeastRecentUse()) {
+            if (dbStorage.getKeys().size() < maxOpen) {
+                break;
+            }
+            if (!candidate.equals(dataSourceName)) {
+                evict(candidate);
+            }
+        }
+    }
+
+    /**
+     * Runs the callback holding a lease on the dataSource and then, unless {@code access} is {@code UNLOCKED}, its
+     * lock. Callbacks nested in another callback of the same dataSource run under the lock already held by the outer
+     * one; an unlocked outer callback holds none, so the nested one takes the lock it needs. Callers must not ask for
+     * write or unlocked access from inside a read callback.
+     */
+    @Nullable
+    private <R> R execute(@Nonnull String dataSourceName, @Nonnull DbCallback<R> callback, @Nonnull DataSourceMetrics metrics, @Nonnull Access access) {
+        AtomicInteger lease = acquireLease(dataSourceName);
+        try {
+            Db db = getDb(dataSourceName);
+            Access held = heldLocks.get().get(dataSourceName);
+            if (held != null && (held != Access.UNLOCKED || access == Access.UNLOCKED)) {
+                return doWithDb(dataSourceName, db, callback, metrics);
+            }
+            switch (access) {
+                case WRITE:
+                    return executeWriting(dataSourceName, db, callback, metrics);
+                case UNLOCKED:
+                    return executeUnlocked(dataSourceName, db, callback, metrics);
+                default:
+                    return executeReading(dataSourceName, db, callback, metrics, access == Access.OPTIMISTIC_READ);
+            }
+        } finally {
+            if (lease != null) {
+                lease.decrementAndGet();
+            }
+        }
+    }
+
+    @Nullable
+    private <R> R executeUnlocked(@Nonnull String dataSourceName, @Nonnull Db db, @Nonnull DbCallback<R> callback, @Nonnull DataSourceMetrics metrics) {
+        Map<String, Access> held = heldLocks.get();
+        held.put(dataSourceName, Access.UNLOCKED);
+        try {
+            return doWithDb(dataSourceName, db, callback, metrics);
+        } finally {
+            held.remove(dataSourceName);
+        }
+    }
+
+    @Nullable
+    private <R> R executeWriting(@Nonnull String dataSourceName, @Nonnull Db db, @Nonnull DbCallback<R> callback, @Nonnull DataSourceMetrics metrics) {
+        StampedLock lock = dbLocks.lockFor(dataSourceName);
+        long stamp = lock.writeLock();
+        Map<String, Access> held = heldLocks.get();
+        Access previous = held.put(dataSourceName, Access.WRITE);
+        try {
+            return doWithDb(dataSourceName, db, callback, metrics);
+        } finally {
+            restore(held, dataSourceName, previous);
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Runs the callback optimistically first, if allowed, then under the read lock if a write overlapped. Both
+     * attempts are recorded as a single call.
+     */
+    @Nullable
+    private <R> R executeReading(@Nonnull String dataSourceName, @Nonnull Db db, @Nonnull DbCallback<R> callback, @Nonnull DataSourceMetrics metrics, boolean optimistic) {
+        StampedLock lock = dbLocks.lockFor(dataSourceName);
+        Map<String, Access> held = heldLocks.get();
+        Access previous = held.put(dataSourceName, optimistic ? Access.OPTIMISTIC_READ : Access.LOCKED_READ);
+        LOG.debug("Executing statements on db '{}'", dataSourceName);
+        long start = metrics.callStarted();
+        boolean success = false;
+        try {
+            long stamp = optimistic ? lock.tryOptimisticRead() : 0L;
+            if (stamp != 0L) {
+                try {
+                    R result = callback.handle(dataSourceName, db);
+                    if (lock.validate(stamp)) {
+                        success = true;
+                        return result;
+                    }
+                } catch (RuntimeException e) {
+                    if (lock.validate(stamp)) {
+                        throw e;
+                    }
+                    // the callback may have seen a write in progress
+                    LOG.trace("Optimistic read on dataSource '{}' failed during a write, retrying", dataSourceName, e);
+                }
+            }
+
+            stamp = lock.readLock();
+            try {
+                R result = callback.handle(dataSourceName, db);
+                success = true;
+                return result;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        } finally {
+            restore(held, dataSourceName, previous);
+            metrics.callEnded(start, success);
+        }
+    }
+
+    private static void restore(@Nonnull Map<String, Access> held, @Nonnull String dataSourceName, @Nullable Access previous) {
+        if (previous == null) {
+            held.remove(dataSourceName);
+        } else {
+            held.put(dataSourceName, previous);
+        }
+    }
+
+    /**
+     * Registers a callback as a user of the dataSource so that it is not evicted while the callback runs.
+     * Waits up to the {@code lease_timeout} of the dataSource if it is being evicted or used exclusively at the
+     * moment. Callbacks nested in another callback of the same dataSource do not wait for exclusive access, which
+     * in turn waits for the enclosing callback.
+     *
+     * @throws IllegalStateException if the dataSource is shutting down, if the wait timed out, or if the current
+     *                               thread holds exclusive access to the dataSource
+     */
+    @Nullable
+    private AtomicInteger acquireLease(@Nonnull String dataSourceName) {
+        AtomicInteger lease = leases.get(dataSourceName);
+        if (lease == null) {
+            if (!dbFactory.getDataSourceNames().contains(dataSourceName)) {
+                // unknown dataSource, getDb() will report it
+                return null;
+            }
+            lease = leases.computeIfAbsent(dataSourceName, k -> new AtomicInteger());
+        }
+        if (exclusiveOwners.get(dataSourceName) == Thread.currentThread()) {
+            throw new IllegalStateException("Callbacks on dataSource '" + dataSourceName + "' can not be nested inside an exclusive callback");
+        }
+
+        boolean nested = heldLocks.get().containsKey(dataSourceName);
+        long deadline = 0L;
+        for (; ; ) {
+            if (closing.contains(dataSourceName)) {
+                throw new IllegalStateException("DataSource '" + dataSourceName + "' is shutting down");
+            }
+            int count = lease.get();
+            if (count == LEASE_RETIRED || (!nested && draining.contains(dataSourceName))) {
+                if (deadline == 0L) {
+                    deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(getLeaseTimeout(dataSourceName));
+                } else if (System.nanoTime() - deadline > 0) {
+                    throw new IllegalStateException("Timed out waiting for exclusive access to dataSource '" + dataSourceName + "' to end");
+                }
+                LockSupport.parkNanos(LEASE_BACKOFF);
+            } else if (lease.compareAndSet(count, count + 1)) {
+                return lease;
+            }
+        }
+    }
+
+    private long getLeaseTimeout(@Nonnull String dataSourceName) {
+        return Math.max(0L, getConfigValueAsLong(dbFactory.getConfigurationFor(dataSourceName), "lease_timeout", DEFAULT_LEASE_TIMEOUT));
+    }
+
+    private boolean isInMemory(@Nonnull String dataSourceName) {
+        return dbFactory instanceof DefaultDbFactory && ((DefaultDbFactory) dbFactory).isInMemory(dataSourceName);
+    }
+
+    private int getShardCount(@Nonnull String dataSourceName) {
+        if (dbFactory instanceof DefaultDbFactory) {
+            return ((DefaultDbFactory) dbFactory).getShardCount(dataSourceName);
+        }
+        return 0;
+    }
+
+    /**
+     * Closes the batch writers of the given dataSource, provided none of them has writes pending.
+     *
+     * @return {@code false} if a batch writer is busy
+     */
+    private boolean closeIdleBatchWriters(@Nonnull String dataSourceName) {
+        List<DefaultDbBatchWriter<?>> idle = new ArrayList<>();
+        for (DefaultDbBatchWriter<?> writer : batchWriters.values()) {
+            if (dataSourceName.equals(writer.getDataSourceName())) {
+                if (!writer.isIdle()) {
+                    return false;
+                }
+                idle.add(writer);
+            }
+        }
+        for (DefaultDbBatchWriter<?> writer : idle) {
+            batchWriters.values().remove(writer);
+            writer.close();
+        }
+        return true;
+    }
+
+    private void closeBatchWriters(@Nonnull String dataSourceName) {
+        for (Iterator<DefaultDbBatchWriter<?>> it = batchWriters.values().iterator(); it.hasNext(); ) {
+            DefaultDbBatchWriter<?> writer = it.next();
+            if (dataSourceName.equals(writer.getDataSourceName())) {
+                it.remove();
+                writer.close();
+            }
+        }
+    }
+
+    private void destroyDb(@Nonnull String dataSourceName) {
         Db db = dbStorage.get(dataSourceName);
         if (db != null) {
             dbFactory.destroy(dataSourceName, db);
@@ -82,22 +802,89 @@ public class DefaultDbHandler implements DbHandler {
 
     @Nonnull
     private Db getDb(@Nonnull String dataSourceName) {
+        // fast path: lock-free read of an already opened db
         Db db = dbStorage.get(dataSourceName);
-        if (db == null) {
-            db = dbFactory.create(dataSourceName);
-            dbStorage.set(dataSourceName, db);
+        if (db != null) {
+            return db;
+        }
+        return openDb(dataSourceName);
+    }
+
+    /**
+     * Opens the given dataSource exactly once. The first caller runs the factory, concurrent
+     * callers block on the same task until the db becomes available (or creation fails).
+     */
+    @Nonnull
+    private Db openDb(@Nonnull final String dataSourceName) {
+        FutureTask<Db> task = new FutureTask<>(() -> {
+            // re-check as another task may have completed between the fast path and registration
+            Db db = dbStorage.get(dataSourceName);
+            if (db == null) {
+                enforceMaxOpen(dataSourceName);
+                db = dbFactory.create(dataSourceName);
+                dbStorage.set(dataSourceName, db);
+            }
+            return db;
+        });
+
+        FutureTask<Db> pending = pendingDbs.putIfAbsent(dataSourceName, task);
+        if (pending == null) {
+            pending = task;
+            try {
+                task.run();
+            } finally {
+                pendingDbs.remove(dataSourceName, task);
+            }
+        }
+
+        return awaitDb(dataSourceName, pending);
+    }
+
+    @Nonnull
+    private static Db awaitDb(@Nonnull String dataSourceName, @Nonnull FutureTask<Db> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GriffonException("Interrupted while waiting for dataSource '" + dataSourceName + "'", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new GriffonException("Could not open dataSource '" + dataSourceName + "'", cause);
         }
-        return db;
     }
 
     @Nullable
     @SuppressWarnings("ThrowFromFinallyBlock")
-    static <R> R doWithDb(@Nonnull String dataSourceName, @Nonnull Db db, @Nonnull DbCallback<R> callback) {
+    static <R> R doWithDb(@Nonnull String dataSourceName, @Nonnull Db db, @Nonnull DbCallback<R> callback, @Nonnull DataSourceMetrics metrics) {
         requireNonBlank(dataSourceName, ERROR_DATASOURCE_NAME_BLANK);
         requireNonNull(db, ERROR_DB_NULL);
         requireNonNull(callback, ERROR_CALLBACK_NULL);
 
         LOG.debug("Executing statements on db '{}'", dataSourceName);
-        return callback.handle(dataSourceName, db);
+        long start = metrics.callStarted();
+        boolean success = false;
+        try {
+            R result = callback.handle(dataSourceName, db);
+            success = true;
+            return result;
+        } finally {
+            metrics.callEnded(start, success);
+        }
+    }
+
+    private enum Access {
+        UNLOCKED,
+        WRITE,
+        OPTIMISTIC_READ,
+        LOCKED_READ;
+
+        boolean isRead() {
+            return this == OPTIMISTIC_READ || this == LOCKED_READ;
+        }
     }
 }
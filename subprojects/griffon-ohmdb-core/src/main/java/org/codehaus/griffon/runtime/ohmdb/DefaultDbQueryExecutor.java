@@ -0,0 +1,229 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb;
+
+import com.ohmdb.api.Db;
+import com.ohmdb.api.Table;
+import griffon.annotations.core.Nonnull;
+import griffon.plugins.ohmdb.DbFactory;
+import griffon.plugins.ohmdb.DbQueryExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Predicate;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+import static griffon.util.ConfigUtils.getConfigValueAsInt;
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Runs queries on a {@code ForkJoinPool} per dataSource, sized by the {@code query_parallelism} setting. Id ranges of
+ * at most {@code query_chunk_size} ids are evaluated sequentially; a {@code query_parallelism} of {@code 1}, the
+ * default, evaluates the whole table on the calling thread. Parallel evaluation is opt-in as its benefit depends on
+ * the table size, the cost of the filter and the hardware; measure it with {@code ParallelQueryBenchmark} first.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DefaultDbQueryExecutor implements DbQueryExecutor {
+    private static final Logger LOG = LoggerFactory.getLogger(DefaultDbQueryExecutor.class);
+    private static final String ERROR_DATASOURCE_NAME_BLANK = "Argument 'dataSourceName' must not be blank";
+    private static final Predicate<Object> ALL = record -> true;
+    private static final int DEFAULT_CHUNK_SIZE = 1024;
+    private static final int DEFAULT_PARALLELISM = 1;
+    private static final long SHUTDOWN_TIMEOUT = 30;
+
+    private final DbFactory dbFactory;
+    private final ConcurrentMap<String, ForkJoinPool> pools = new ConcurrentHashMap<>();
+
+    @Inject
+    public DefaultDbQueryExecutor(@Nonnull DbFactory dbFactory) {
+        this.dbFactory = requireNonNull(dbFactory, "Argument 'dbFactory' must not be null");
+    }
+
+    @Override
+    public <T, A, R> R collect(@Nonnull String dataSourceName, @Nonnull Db db, @Nonnull Class<T> type, @Nonnull Collector<? super T, A, R> collector) {
+        return collect(dataSourceName, db, type, ALL, collector);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T, A, R> R collect(@Nonnull String dataSourceName, @Nonnull Db db, @Nonnull Class<T> type, @Nonnull Predicate<? super T> filter, @Nonnull Collector<? super T, A, R> collector) {
+        requireNonBlank(dataSourceName, ERROR_DATASOURCE_NAME_BLANK);
+        requireNonNull(db, "Argument 'db' must not be null");
+        requireNonNull(type, "Argument 'type' must not be null");
+        requireNonNull(filter, "Argument 'filter' must not be null");
+        requireNonNull(collector, "Argument 'collector' must not be null");
+
+        Map<String, Object> config = dbFactory.getConfigurationFor(dataSourceName);
+        int parallelism = resolveParallelism(config);
+        int chunkSize = Math.max(1, getConfigValueAsInt(config, "query_chunk_size", DEFAULT_CHUNK_SIZE));
+
+        Table<T> table = db.table(type);
+        long[] ids = table.ids();
+        if (ids == null) {
+            ids = new long[0];
+        }
+
+        QueryTask<T, A> task = new QueryTask<>(table, ids, 0, ids.length, chunkSize, filter, collector);
+        A container;
+        if (parallelism <= 1 || ids.length <= chunkSize) {
+            container = task.compute();
+        } else {
+            container = getPool(dataSourceName, parallelism).invoke(task);
+        }
+
+        if (collector.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH)) {
+            return (R) container;
+        }
+        return collector.finisher().apply(container);
+    }
+
+    @Override
+    public <T> long count(@Nonnull String dataSourceName, @Nonnull Db db, @Nonnull Class<T> type, @Nonnull Predicate<? super T> filter) {
+        return collect(dataSourceName, db, type, filter, Collectors.counting());
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown(TimeUnit.SECONDS.toMillis(SHUTDOWN_TIMEOUT));
+    }
+
+    /**
+     * Shuts down every query pool, waiting at most {@code timeout} milliseconds in total for work in progress.
+     */
+    public void shutdown(long timeout) {
+        for (ForkJoinPool pool : pools.values()) {
+            pool.shutdown();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0L, timeout));
+        for (Map.Entry<String, ForkJoinPool> e : pools.entrySet()) {
+            try {
+                if (!e.getValue().awaitTermination(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    LOG.warn("Queries on dataSource '{}' did not finish in time", e.getKey());
+                    e.getValue().shutdownNow();
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                e.getValue().shutdownNow();
+            }
+        }
+        pools.clear();
+    }
+
+    @Nonnull
+    private ForkJoinPool getPool(@Nonnull String dataSourceName, int parallelism) {
+        ForkJoinPool pool = pools.get(dataSourceName);
+        if (pool == null) {
+            pool = pools.computeIfAbsent(dataSourceName, name -> {
+                LOG.debug("Using a fork-join pool of {} threads for queries on dataSource '{}'", parallelism, name);
+                return new ForkJoinPool(parallelism, new QueryThreadFactory(name), null, false);
+            });
+        }
+        return pool;
+    }
+
+    private static int resolveParallelism(@Nonnull Map<String, Object> config) {
+        return Math.max(1, getConfigValueAsInt(config, "query_parallelism", DEFAULT_PARALLELISM));
+    }
+
+    private static final class QueryTask<T, A> extends RecursiveTask<A> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Table<T> table;
+        private final long[] ids;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+        private final transient Predicate<? super T> filter;
+        private final transient Collector<? super T, A, ?> collector;
+
+        private QueryTask(@Nonnull Table<T> table, @Nonnull long[] ids, int from, int to, int chunkSize,
+                          @Nonnull Predicate<? super T> filter, @Nonnull Collector<? super T, A, ?> collector) {
+            this.table = table;
+            this.ids = ids;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+            this.filter = filter;
+            this.collector = collector;
+        }
+
+        @Override
+        protected A compute() {
+            if (to - from > chunkSize) {
+                int middle = (from + to) >>> 1;
+                QueryTask<T, A> left = new QueryTask<>(table, ids, from, middle, chunkSize, filter, collector);
+                QueryTask<T, A> right = new QueryTask<>(table, ids, middle, to, chunkSize, filter, collector);
+                left.fork();
+                A rightResult = right.compute();
+                A leftResult = left.join();
+                BinaryOperator<A> combiner = collector.combiner();
+                return combiner.apply(leftResult, rightResult);
+            }
+
+            A container = collector.supplier().get();
+            BiConsumer<A, ? super T> accumulator = collector.accumulator();
+            for (int offset = from; offset < to; offset += chunkSize) {
+                List<T> records = table.getAll(Arrays.copyOfRange(ids, offset, Math.min(to, offset + chunkSize)));
+                if (records == null) {
+                    continue;
+                }
+                for (T record : records) {
+                    // deleted since the ids were read
+                    if (record != null && filter.test(record)) {
+                        accumulator.accept(container, record);
+                    }
+                }
+            }
+            return container;
+        }
+    }
+
+    private static final class QueryThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        private QueryThreadFactory(@Nonnull String dataSourceName) {
+            this.prefix = "ohmdb-query-" + dataSourceName + "-";
+        }
+
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName(prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
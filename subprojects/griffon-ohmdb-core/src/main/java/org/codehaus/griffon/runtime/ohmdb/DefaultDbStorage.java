@@ -18,11 +18,82 @@
 package org.codehaus.griffon.runtime.ohmdb;
 
 import com.ohmdb.api.Db;
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
 import griffon.plugins.ohmdb.DbStorage;
 import org.codehaus.griffon.runtime.core.storage.DefaultObjectStorage;
 
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * @author Andres Almiray
  */
 public class DefaultDbStorage extends DefaultObjectStorage<Db> implements DbStorage {
+    private final ConcurrentMap<String, AtomicLong> lastAccess = new ConcurrentHashMap<>();
+
+    @Nullable
+    @Override
+    public Db get(@Nonnull String name) {
+        Db db = super.get(name);
+        if (db != null) {
+            AtomicLong timestamp = lastAccess.get(name);
+            if (timestamp != null) {
+                timestamp.lazySet(System.nanoTime());
+            }
+        }
+        return db;
+    }
+
+    @Override
+    public void set(@Nonnull String name, @Nullable Db instance) {
+        super.set(name, instance);
+        if (instance != null) {
+            lastAccess.put(name, new AtomicLong(System.nanoTime()));
+        } else {
+            lastAccess.remove(name);
+        }
+    }
+
+    @Nullable
+    @Override
+    public Db remove(@Nonnull String name) {
+        lastAccess.remove(name);
+        return super.remove(name);
+    }
+
+    @Override
+    public void clear() {
+        lastAccess.clear();
+        super.clear();
+    }
+
+    @Override
+    public long getIdleTime(@Nonnull String name) {
+        AtomicLong timestamp = lastAccess.get(name);
+        return timestamp != null ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - timestamp.get()) : -1L;
+    }
+
+    @Nonnull
+    @Override
+    public List<String> getKeysByLeastRecentUse() {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>();
+        for (Map.Entry<String, AtomicLong> e : lastAccess.entrySet()) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(e.getKey(), e.getValue().get()));
+        }
+        // nanoTime values must be compared by difference
+        entries.sort((a, b) -> Long.signum(a.getValue() - b.getValue()));
+        List<String> keys = new ArrayList<>(entries.size());
+        for (Map.Entry<String, Long> e : entries) {
+            keys.add(e.getKey());
+        }
+        return Collections.unmodifiableList(keys);
+    }
 }
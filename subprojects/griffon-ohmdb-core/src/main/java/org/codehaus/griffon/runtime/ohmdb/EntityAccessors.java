@@ -0,0 +1,99 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+import griffon.plugins.ohmdb.EntityAccessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Registry of generated {@code EntityAccessor} instances. Accessors are discovered with {@code ServiceLoader}, once
+ * per class loader; {@code OhmdbAddon} loads those visible to the application when it is initialized and
+ * {@link #find(Class)} loads those visible to the entity class on demand.
+ * <p>
+ * Accessors serve the plugin's own reflective paths only (entity ids, index keys, cache copies and imports); Ohmdb keeps mapping
+ * records with its own reflection.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public final class EntityAccessors {
+    private static final Logger LOG = LoggerFactory.getLogger(EntityAccessors.class);
+    private static final ConcurrentMap<Class<?>, EntityAccessor<?>> ACCESSORS = new ConcurrentHashMap<>();
+    private static final Set<ClassLoader> LOADED = Collections.newSetFromMap(new WeakHashMap<>());
+
+    private EntityAccessors() {
+        // prevent instantiation
+    }
+
+    public static void register(@Nonnull EntityAccessor<?> accessor) {
+        requireNonNull(accessor, "Argument 'accessor' must not be null");
+        ACCESSORS.put(accessor.getType(), accessor);
+    }
+
+    public static void load(@Nullable ClassLoader classLoader) {
+        if (classLoader == null) {
+            return;
+        }
+        synchronized (LOADED) {
+            if (!LOADED.add(classLoader)) {
+                return;
+            }
+        }
+
+        @SuppressWarnings("rawtypes")
+        Iterator<EntityAccessor> accessors = ServiceLoader.load(EntityAccessor.class, classLoader).iterator();
+        while (true) {
+            try {
+                if (!accessors.hasNext()) {
+                    break;
+                }
+                EntityAccessor<?> accessor = accessors.next();
+                LOG.debug("Registering generated accessor for {}", accessor.getType().getName());
+                register(accessor);
+            } catch (ServiceConfigurationError e) {
+                LOG.warn("Could not load a generated entity accessor", e);
+            }
+        }
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public static <T> EntityAccessor<T> find(@Nonnull Class<T> type) {
+        requireNonNull(type, "Argument 'type' must not be null");
+        EntityAccessor<T> accessor = (EntityAccessor<T>) ACCESSORS.get(type);
+        if (accessor == null) {
+            load(type.getClassLoader());
+            accessor = (EntityAccessor<T>) ACCESSORS.get(type);
+        }
+        return accessor;
+    }
+}
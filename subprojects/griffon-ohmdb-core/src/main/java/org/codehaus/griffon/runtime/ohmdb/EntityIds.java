@@ -0,0 +1,95 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb;
+
+import griffon.annotations.core.Nonnull;
+import griffon.exceptions.GriffonException;
+import griffon.plugins.ohmdb.EntityAccessor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.function.ToLongFunction;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Resolves the id of an entity, either through its generated {@code EntityAccessor}, a {@code getId()} method or an
+ * {@code id} field. Accessors are resolved once per class.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public final class EntityIds {
+    private static final ClassValue<ToLongFunction<Object>> ACCESSORS = new ClassValue<ToLongFunction<Object>>() {
+        @Override
+        @SuppressWarnings("unchecked")
+        protected ToLongFunction<Object> computeValue(Class<?> type) {
+            EntityAccessor<Object> accessor = (EntityAccessor<Object>) EntityAccessors.find(type);
+            if (accessor != null) {
+                return accessor::getId;
+            }
+            MethodHandle handle = resolveAccessor(type);
+            return entity -> invoke(handle, entity);
+        }
+    };
+
+    private EntityIds() {
+        // prevent instantiation
+    }
+
+    public static long idOf(@Nonnull Object entity) {
+        requireNonNull(entity, "Argument 'entity' must not be null");
+        return ACCESSORS.get(entity.getClass()).applyAsLong(entity);
+    }
+
+    private static long invoke(@Nonnull MethodHandle handle, @Nonnull Object entity) {
+        try {
+            return (long) handle.invoke(entity);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new GriffonException("Could not read id of " + entity, t);
+        }
+    }
+
+    @Nonnull
+    private static MethodHandle resolveAccessor(@Nonnull Class<?> type) {
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        MethodType asLong = MethodType.methodType(long.class, Object.class);
+        try {
+            return lookup.findVirtual(type, "getId", MethodType.methodType(long.class)).asType(asLong);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            // try a field instead
+        }
+
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            try {
+                Field field = c.getDeclaredField("id");
+                if (field.getType() == long.class) {
+                    field.setAccessible(true);
+                    return MethodHandles.lookup().unreflectGetter(field).asType(asLong);
+                }
+            } catch (NoSuchFieldException | IllegalAccessException e) {
+                // keep looking
+            }
+        }
+        throw new IllegalArgumentException("Type " + type.getName() + " does not define a 'long id' property");
+    }
+}
@@ -19,21 +19,48 @@ package org.codehaus.griffon.runtime.ohmdb;
 
 import com.ohmdb.api.Db;
 import griffon.annotations.core.Nonnull;
+import griffon.core.Configuration;
 import griffon.core.GriffonApplication;
 import griffon.core.env.Metadata;
 import griffon.core.events.StartupStartEvent;
 import griffon.plugins.monitor.MBeanManager;
+import griffon.plugins.ohmdb.DbCacheManager;
 import griffon.plugins.ohmdb.DbCallback;
+import griffon.plugins.ohmdb.DbChangeCapture;
+import griffon.plugins.ohmdb.DbExecutorProvider;
 import griffon.plugins.ohmdb.DbFactory;
 import griffon.plugins.ohmdb.DbHandler;
+import griffon.plugins.ohmdb.DbQueryExecutor;
 import griffon.plugins.ohmdb.DbStorage;
+import griffon.plugins.ohmdb.events.OhmdbStartupConnectEndEvent;
 import org.codehaus.griffon.runtime.core.addon.AbstractGriffonAddon;
+import org.codehaus.griffon.runtime.ohmdb.cache.DefaultDbCacheManager;
+import org.codehaus.griffon.runtime.ohmdb.monitor.DbCacheMonitor;
+import org.codehaus.griffon.runtime.ohmdb.monitor.DbCallbackMonitor;
+import org.codehaus.griffon.runtime.ohmdb.monitor.DbMetrics;
 import org.codehaus.griffon.runtime.ohmdb.monitor.DbStorageMonitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.application.event.EventHandler;
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static griffon.util.ConfigUtils.getConfigValueAsBoolean;
 
@@ -42,6 +69,18 @@ import static griffon.util.ConfigUtils.getConfigValueAsBoolean;
  */
 @Named("ohmdb")
 public class OhmdbAddon extends AbstractGriffonAddon {
+    private static final Logger LOG = LoggerFactory.getLogger(OhmdbAddon.class);
+    private static final DbCallback<Object> NOOP = new DbCallback<Object>() {
+        @Override
+        public Object handle(@Nonnull String dataSourceName, @Nonnull Db db) {
+            return null;
+        }
+    };
+
+    @Inject
+    @Named("ohmdb")
+    private Configuration configuration;
+
     @Inject
     private DbHandler dbHandler;
 
@@ -51,36 +90,167 @@ public class OhmdbAddon extends AbstractGriffonAddon {
     @Inject
     private DbStorage dbStorage;
 
+    @Inject
+    private DbExecutorProvider dbExecutorProvider;
+
+    @Inject
+    private DbQueryExecutor dbQueryExecutor;
+
+    @Inject
+    private DbMetrics dbMetrics;
+
+    @Inject
+    private DbEvents events;
+
+    @Inject
+    private DbCacheManager dbCacheManager;
+
+    @Inject
+    private DbEvictionPolicy evictionPolicy;
+
+    @Inject
+    private DbReplicator dbReplicator;
+
+    @Inject
+    private DbChangeCapture dbChangeCapture;
+
     @Inject
     private MBeanManager mbeanManager;
 
     @Inject
     private Metadata metadata;
 
+    private ScheduledExecutorService maintenance;
+
+    private volatile CompletableFuture<Set<String>> startupConnection = CompletableFuture.completedFuture(Collections.<String>emptySet());
+
     @Override
     public void init(@Nonnull GriffonApplication application) {
+        // once per application rather than whenever a dataSource is opened
+        EntityAccessors.load(application.getApplicationClassLoader().get());
         mbeanManager.registerMBean(new DbStorageMonitor(metadata, dbStorage));
+        mbeanManager.registerMBean(new DbCallbackMonitor(metadata, dbMetrics));
+        if (dbCacheManager instanceof DefaultDbCacheManager) {
+            mbeanManager.registerMBean(new DbCacheMonitor(metadata, (DefaultDbCacheManager) dbCacheManager));
+        }
+        if (evictionPolicy.hasIdleTimeouts() && dbHandler instanceof DefaultDbHandler) {
+            final DefaultDbHandler handler = (DefaultDbHandler) dbHandler;
+            schedule("evict idle dataSources", handler::evictIdle, evictionPolicy.getCheckInterval());
+        }
+        dbReplicator.start();
+    }
+
+    private synchronized void schedule(@Nonnull final String description, @Nonnull final Runnable task, long interval) {
+        if (maintenance == null) {
+            maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "ohmdb-maintenance");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        long delay = Math.max(1L, interval);
+        maintenance.scheduleWithFixedDelay(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LOG.warn("Could not {}", description, e);
+            }
+        }, delay, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Completes with the names of all dataSources opened at startup, or exceptionally if any of them failed to open.
+     */
+    @Nonnull
+    public CompletableFuture<Set<String>> getStartupConnection() {
+        return startupConnection;
     }
 
     @EventHandler
     public void handleStartupStartEvent(@Nonnull StartupStartEvent event) {
+        final Set<String> dataSourceNames = new LinkedHashSet<>();
         for (String dataSourceName : dbFactory.getDataSourceNames()) {
             Map<String, Object> config = dbFactory.getConfigurationFor(dataSourceName);
             if (getConfigValueAsBoolean(config, "connect_on_startup", false)) {
-                dbHandler.withOhmdb(new DbCallback<Object>() {
-                    @Override
-                    public Object handle(@Nonnull String dataSourceName, @Nonnull Db db) {
-                        return null;
-                    }
-                });
+                dataSourceNames.add(dataSourceName);
             }
         }
+        if (dataSourceNames.isEmpty()) {
+            return;
+        }
+
+        connect(dataSourceNames, configuration.getAsInt("startup_parallelism", Runtime.getRuntime().availableProcessors()),
+            configuration.getAsBoolean("startup_async", false));
+    }
+
+    /**
+     * Opens the given dataSources using up to {@code parallelism} threads. Waits for all of them unless
+     * {@code async} is set, rethrowing the first failure.
+     *
+     * @return the connection also returned by {@link #getStartupConnection()}
+     */
+    @Nonnull
+    CompletableFuture<Set<String>> connect(@Nonnull final Set<String> dataSourceNames, int parallelism, boolean async) {
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(dataSourceNames.size(), parallelism)), new StartupThreadFactory());
+
+        final Map<String, Throwable> failures = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> connections = new ArrayList<>();
+        for (final String dataSourceName : dataSourceNames) {
+            connections.add(CompletableFuture.runAsync(() -> {
+                try {
+                    dbHandler.withOhmdb(dataSourceName, NOOP);
+                } catch (RuntimeException e) {
+                    failures.put(dataSourceName, e);
+                    throw e;
+                }
+            }, executor));
+        }
+
+        final CompletableFuture<Set<String>> connection = CompletableFuture.allOf(connections.toArray(new CompletableFuture[0]))
+            .handle((Void v, Throwable t) -> {
+                executor.shutdown();
+                events.publish(OhmdbStartupConnectEndEvent.class, () -> OhmdbStartupConnectEndEvent.of(
+                    Collections.unmodifiableSet(dataSourceNames), Collections.unmodifiableMap(new LinkedHashMap<>(failures))));
+                if (t != null) {
+                    throw t instanceof CompletionException ? (CompletionException) t : new CompletionException(t);
+                }
+                return Collections.unmodifiableSet(dataSourceNames);
+            });
+        startupConnection = connection;
+
+        if (!async) {
+            try {
+                connection.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof RuntimeException ? (RuntimeException) cause : e;
+            }
+        }
+        return connection;
     }
 
     @Override
     public void onShutdown(@Nonnull GriffonApplication application) {
-        for (String dataSourceName : dbFactory.getDataSourceNames()) {
-            dbHandler.closeOhmdb(dataSourceName);
+        synchronized (this) {
+            if (maintenance != null) {
+                maintenance.shutdownNow();
+            }
+        }
+        dbReplicator.shutdown();
+        new DbShutdownCoordinator(dbHandler, dbFactory, dbExecutorProvider, dbQueryExecutor, dbMetrics, configuration, events)
+            .shutdown(dbFactory.getDataSourceNames());
+        // batch writers flushed while closing may still publish changes
+        dbChangeCapture.shutdown();
+    }
+
+    private static class StartupThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@Nonnull Runnable r) {
+            Thread thread = new Thread(r, "ohmdb-startup-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
         }
     }
-}
+}
\ No newline at end of file
@@ -20,10 +20,23 @@ package org.codehaus.griffon.runtime.ohmdb;
 import griffon.core.Configuration;
 import griffon.core.addon.GriffonAddon;
 import griffon.core.injection.Module;
+import griffon.plugins.ohmdb.DbCacheManager;
+import griffon.plugins.ohmdb.DbChangeCapture;
+import griffon.plugins.ohmdb.DbExecutorProvider;
 import griffon.plugins.ohmdb.DbFactory;
 import griffon.plugins.ohmdb.DbHandler;
+import griffon.plugins.ohmdb.DbIndexManager;
+import griffon.plugins.ohmdb.DbQueryExecutor;
+import griffon.plugins.ohmdb.DbSnapshotManager;
 import griffon.plugins.ohmdb.DbStorage;
+import griffon.plugins.ohmdb.OhmdbBootstrap;
 import org.codehaus.griffon.runtime.core.injection.AbstractModule;
+import org.codehaus.griffon.runtime.ohmdb.cache.DefaultDbCacheManager;
+import org.codehaus.griffon.runtime.ohmdb.cdc.DefaultDbChangeCapture;
+import org.codehaus.griffon.runtime.ohmdb.index.DbIndexBootstrap;
+import org.codehaus.griffon.runtime.ohmdb.index.DefaultDbIndexManager;
+import org.codehaus.griffon.runtime.ohmdb.monitor.DbMetrics;
+import org.codehaus.griffon.runtime.ohmdb.snapshot.DefaultDbSnapshotManager;
 import org.codehaus.griffon.runtime.util.ResourceBundleProvider;
 import org.kordamp.jipsy.annotations.ServiceProviderFor;
 
@@ -59,10 +72,57 @@ public class OhmdbModule extends AbstractModule {
             .to(DefaultDbFactory.class)
             .asSingleton();
 
+        bind(DbMetrics.class)
+            .asSingleton();
+
+        bind(DbEvents.class)
+            .asSingleton();
+
+        bind(DbLocks.class)
+            .asSingleton();
+
+        bind(DbEvictionPolicy.class)
+            .asSingleton();
+
+        bind(DbReplicas.class)
+            .asSingleton();
+
+        bind(DbExecutorProvider.class)
+            .to(DefaultDbExecutorProvider.class)
+            .asSingleton();
+
+        bind(DbQueryExecutor.class)
+            .to(DefaultDbQueryExecutor.class)
+            .asSingleton();
+
+        bind(DbChangeCapture.class)
+            .to(DefaultDbChangeCapture.class)
+            .asSingleton();
+
         bind(DbHandler.class)
             .to(DefaultDbHandler.class)
             .asSingleton();
 
+        bind(DbCacheManager.class)
+            .to(DefaultDbCacheManager.class)
+            .asSingleton();
+
+        bind(DbIndexManager.class)
+            .to(DefaultDbIndexManager.class)
+            .asSingleton();
+
+        bind(OhmdbBootstrap.class)
+            .withClassifier(named("ohmdb-indexes"))
+            .to(DbIndexBootstrap.class)
+            .asSingleton();
+
+        bind(DbSnapshotManager.class)
+            .to(DefaultDbSnapshotManager.class)
+            .asSingleton();
+
+        bind(DbReplicator.class)
+            .asSingleton();
+
         bind(GriffonAddon.class)
             .to(OhmdbAddon.class)
             .asSingleton();
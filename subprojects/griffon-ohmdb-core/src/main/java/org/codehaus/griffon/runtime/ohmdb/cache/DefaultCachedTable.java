@@ -0,0 +1,180 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb.cache;
+
+import com.ohmdb.api.Table;
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+import griffon.plugins.ohmdb.CachedTable;
+import griffon.plugins.ohmdb.DbChange;
+import griffon.plugins.ohmdb.DbChangeCapture;
+import org.codehaus.griffon.runtime.ohmdb.EntityIds;
+import org.codehaus.griffon.runtime.ohmdb.index.DefaultDbIndexManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DefaultCachedTable<T> implements CachedTable<T> {
+    private final Table<T> table;
+    private final TableCache<T> cache;
+    private final String dataSourceName;
+    private final Class<T> type;
+    private final DbChangeCapture changeCapture;
+    private final DefaultDbIndexManager indexManager;
+
+    /**
+     * Writes are published to {@code changeCapture} and applied to the indexes of {@code indexManager} when given.
+     */
+    public DefaultCachedTable(@Nonnull Table<T> table, @Nullable TableCache<T> cache, @Nullable String dataSourceName, @Nullable Class<T> type, @Nullable DbChangeCapture changeCapture, @Nullable DefaultDbIndexManager indexManager) {
+        this.table = requireNonNull(table, "Argument 'table' must not be null");
+        this.cache = cache;
+        this.dataSourceName = dataSourceName;
+        this.type = type;
+        this.changeCapture = dataSourceName != null && type != null ? changeCapture : null;
+        this.indexManager = dataSourceName != null && type != null ? indexManager : null;
+    }
+
+    @Nonnull
+    @Override
+    public Table<T> getTable() {
+        return table;
+    }
+
+    @Nullable
+    @Override
+    public T get(long id) {
+        if (cache == null) {
+            return table.get(id);
+        }
+
+        T record = cache.get(id);
+        if (record == null) {
+            long version = cache.version(id);
+            record = table.get(id);
+            if (record != null) {
+                cache.load(id, record, version);
+            }
+        }
+        return record;
+    }
+
+    @Nonnull
+    @Override
+    public List<T> getAll(@Nonnull long... ids) {
+        requireNonNull(ids, "Argument 'ids' must not be null");
+        if (cache == null) {
+            return new ArrayList<>(table.getAll(ids));
+        }
+
+        List<T> records = new ArrayList<>(ids.length);
+        long[] missing = new long[ids.length];
+        long[] versions = new long[ids.length];
+        int[] positions = new int[ids.length];
+        int misses = 0;
+        for (int i = 0; i < ids.length; i++) {
+            T record = cache.get(ids[i]);
+            records.add(record);
+            if (record == null) {
+                missing[misses] = ids[i];
+                versions[misses] = cache.version(ids[i]);
+                positions[misses++] = i;
+            }
+        }
+
+        if (misses > 0) {
+            List<T> loaded = table.getAll(misses == ids.length ? missing : Arrays.copyOf(missing, misses));
+            for (int i = 0; i < misses; i++) {
+                T record = loaded.get(i);
+                records.set(positions[i], record);
+                if (record != null) {
+                    cache.load(missing[i], record, versions[i]);
+                }
+            }
+        }
+        return records;
+    }
+
+    @Override
+    public long insert(@Nonnull T record) {
+        requireNonNull(record, "Argument 'record' must not be null");
+        long id = table.insert(record);
+        if (cache != null) {
+            cache.put(id, record);
+        }
+        if (indexManager != null) {
+            indexManager.indexed(dataSourceName, type, id, record);
+        }
+        if (changeCapture != null) {
+            changeCapture.publish(dataSourceName, DbChange.Operation.INSERT, type, id, record);
+        }
+        return id;
+    }
+
+    @Override
+    public void update(@Nonnull T record) {
+        requireNonNull(record, "Argument 'record' must not be null");
+        table.update(record);
+        if (cache != null || indexManager != null || changeCapture != null) {
+            long id = EntityIds.idOf(record);
+            if (cache != null) {
+                cache.put(id, record);
+            }
+            if (indexManager != null) {
+                indexManager.indexed(dataSourceName, type, id, record);
+            }
+            if (changeCapture != null) {
+                changeCapture.publish(dataSourceName, DbChange.Operation.UPDATE, type, id, record);
+            }
+        }
+    }
+
+    @Override
+    public void delete(long id) {
+        table.delete(id);
+        if (cache != null) {
+            cache.invalidate(id);
+        }
+        if (indexManager != null) {
+            indexManager.unindexed(dataSourceName, type, id);
+        }
+        if (changeCapture != null) {
+            changeCapture.publish(dataSourceName, DbChange.Operation.DELETE, type, id, null);
+        }
+    }
+
+    @Override
+    public void invalidate(long id) {
+        if (cache != null) {
+            cache.invalidate(id);
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb.cache;
+
+import com.ohmdb.api.Db;
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+import griffon.core.injection.Injector;
+import griffon.plugins.ohmdb.CachedTable;
+import griffon.plugins.ohmdb.DbCacheManager;
+import griffon.plugins.ohmdb.DbChangeCapture;
+import griffon.plugins.ohmdb.DbFactory;
+import griffon.plugins.ohmdb.DbIndexManager;
+import org.codehaus.griffon.runtime.ohmdb.index.DefaultDbIndexManager;
+
+import javax.inject.Inject;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static griffon.util.ConfigUtils.getConfigValueAsInt;
+import static griffon.util.ConfigUtils.getConfigValueAsLong;
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DefaultDbCacheManager implements DbCacheManager {
+    private static final String ERROR_DATASOURCE_NAME_BLANK = "Argument 'dataSourceName' must not be blank";
+
+    private final DbFactory dbFactory;
+    private final DbChangeCapture dbChangeCapture;
+    private final ConcurrentMap<String, TableCache<?>> caches = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Boolean> disabled = new ConcurrentHashMap<>();
+    private volatile DbIndexManager indexManager;
+
+    @Inject
+    private Injector injector;
+
+    @Inject
+    public DefaultDbCacheManager(@Nonnull DbFactory dbFactory, @Nonnull DbChangeCapture dbChangeCapture) {
+        this.dbFactory = requireNonNull(dbFactory, "Argument 'dbFactory' must not be null");
+        this.dbChangeCapture = requireNonNull(dbChangeCapture, "Argument 'dbChangeCapture' must not be null");
+    }
+
+    @Nonnull
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> CachedTable<T> table(@Nonnull String dataSourceName, @Nonnull Db db, @Nonnull Class<T> type) {
+        requireNonBlank(dataSourceName, ERROR_DATASOURCE_NAME_BLANK);
+        requireNonNull(db, "Argument 'db' must not be null");
+        requireNonNull(type, "Argument 'type' must not be null");
+
+        TableCache<T> cache = null;
+        if (!disabled.containsKey(dataSourceName)) {
+            String key = dataSourceName + ":" + type.getName();
+            cache = (TableCache<T>) caches.get(key);
+            if (cache == null) {
+                Map<String, Object> config = dbFactory.getConfigurationFor(dataSourceName);
+                int size = getConfigValueAsInt(config, "cache_size", 0);
+                if (size <= 0) {
+                    disabled.put(dataSourceName, Boolean.TRUE);
+                } else {
+                    long ttl = getConfigValueAsLong(config, "cache_ttl", 0L);
+                    cache = (TableCache<T>) caches.computeIfAbsent(key, k -> new TableCache<>(dataSourceName, type, size, ttl));
+                }
+            }
+            if (cache != null) {
+                cache.bind(db);
+            }
+        }
+
+        return new DefaultCachedTable<>(db.table(type), cache, dataSourceName, type, dbChangeCapture, indexManager());
+    }
+
+    @Nullable
+    private DefaultDbIndexManager indexManager() {
+        DbIndexManager manager = indexManager;
+        if (manager == null) {
+            // resolved on first use, the index manager depends on this cache manager
+            manager = indexManager = injector.getInstance(DbIndexManager.class);
+        }
+        return manager instanceof DefaultDbIndexManager ? (DefaultDbIndexManager) manager : null;
+    }
+
+    @Override
+    public void invalidate(@Nonnull String dataSourceName) {
+        requireNonBlank(dataSourceName, ERROR_DATASOURCE_NAME_BLANK);
+        for (TableCache<?> cache : caches.values()) {
+            if (dataSourceName.equals(cache.getDataSourceName())) {
+                cache.invalidateAll();
+            }
+        }
+    }
+
+    @Override
+    public void invalidate(@Nonnull String dataSourceName, @Nonnull Class<?> type, long id) {
+        requireNonBlank(dataSourceName, ERROR_DATASOURCE_NAME_BLANK);
+        requireNonNull(type, "Argument 'type' must not be null");
+        TableCache<?> cache = caches.get(dataSourceName + ":" + type.getName());
+        if (cache != null) {
+            cache.invalidate(id);
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        for (TableCache<?> cache : caches.values()) {
+            cache.invalidateAll();
+        }
+    }
+
+    @Nonnull
+    public Collection<TableCache<?>> getCaches() {
+        return Collections.unmodifiableCollection(caches.values());
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb.cache;
+
+import griffon.annotations.core.Nonnull;
+import griffon.exceptions.GriffonException;
+import griffon.plugins.ohmdb.EntityAccessor;
+import org.codehaus.griffon.runtime.ohmdb.EntityAccessors;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Shallow copies of cached records, so callers never share an instance with the cache or with each other.
+ * Types with a generated {@code EntityAccessor} are copied through it, property by property (every getter/setter
+ * pair); other types have every instance field copied reflectively. Values themselves (collections, nested beans)
+ * are shared.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+final class RecordCopier<T> {
+    private static final ClassValue<RecordCopier<?>> COPIERS = new ClassValue<RecordCopier<?>>() {
+        @Override
+        protected RecordCopier<?> computeValue(Class<?> type) {
+            return new RecordCopier<>(type);
+        }
+    };
+
+    private final Class<T> type;
+    private final EntityAccessor<T> accessor;
+    private final List<Function<T, Object>> getters = new ArrayList<>();
+    private final List<BiConsumer<T, Object>> setters = new ArrayList<>();
+    private final Constructor<T> constructor;
+    private final Field[] fields;
+
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    static <T> RecordCopier<T> of(@Nonnull Class<T> type) {
+        return (RecordCopier<T>) COPIERS.get(type);
+    }
+
+    private RecordCopier(@Nonnull Class<T> type) {
+        this.type = type;
+        this.accessor = EntityAccessors.find(type);
+        if (accessor != null) {
+            for (String property : accessor.getProperties()) {
+                Function<T, Object> getter = accessor.getter(property);
+                BiConsumer<T, Object> setter = accessor.setter(property);
+                if (getter != null && setter != null) {
+                    getters.add(getter);
+                    setters.add(setter);
+                }
+            }
+            this.constructor = null;
+            this.fields = null;
+            return;
+        }
+
+        try {
+            this.constructor = type.getDeclaredConstructor();
+            this.constructor.setAccessible(true);
+        } catch (NoSuchMethodException | RuntimeException e) {
+            throw new IllegalArgumentException("Type " + type.getName() + " must define a no-args constructor to be cached", e);
+        }
+
+        List<Field> declared = new ArrayList<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    field.setAccessible(true);
+                    declared.add(field);
+                }
+            }
+        }
+        this.fields = declared.toArray(new Field[0]);
+    }
+
+    @Nonnull
+    T copy(@Nonnull T record) {
+        if (record.getClass() != type) {
+            // a subclass stored through a table of its supertype
+            return of(type(record)).copy(record);
+        }
+        if (accessor != null) {
+            T copy = accessor.newInstance();
+            for (int i = 0; i < getters.size(); i++) {
+                setters.get(i).accept(copy, getters.get(i).apply(record));
+            }
+            return copy;
+        }
+        try {
+            T copy = constructor.newInstance();
+            for (Field field : fields) {
+                field.set(copy, field.get(record));
+            }
+            return copy;
+        } catch (ReflectiveOperationException e) {
+            throw new GriffonException("Could not copy " + record, e);
+        }
+    }
+
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    private static <T> Class<T> type(@Nonnull T record) {
+        return (Class<T>) record.getClass();
+    }
+}
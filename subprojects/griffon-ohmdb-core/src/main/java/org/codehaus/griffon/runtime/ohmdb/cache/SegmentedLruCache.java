@@ -0,0 +1,234 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb.cache;
+
+import griffon.annotations.core.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size bounded cache keyed by record id using a segmented LRU policy: new entries land in a probation
+ * segment and are promoted to a protected segment on their second hit, so a scan of one-off lookups
+ * cannot flush the frequently used entries. Keys are striped over independently locked segments.
+ * <p>
+ * Every stripe counts the writes it receives. A value loaded from the table is only stored with
+ * {@link #putIfUnchanged(long, Object, long)} when no write reached its stripe since the load started, so a slow
+ * load cannot replace a newer value.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+final class SegmentedLruCache<V> {
+    private static final int MAX_STRIPES = 16;
+
+    private final Stripe<V>[] stripes;
+    private final int mask;
+    private final long ttl;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    SegmentedLruCache(int capacity, long ttlMillis) {
+        int stripeCount = 1;
+        while (stripeCount < MAX_STRIPES && stripeCount * 2 * 16 <= capacity) {
+            stripeCount <<= 1;
+        }
+        this.stripes = new Stripe[stripeCount];
+        this.mask = stripeCount - 1;
+        int stripeCapacity = Math.max(1, (capacity + stripeCount - 1) / stripeCount);
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe<>(stripeCapacity, evictions);
+        }
+        this.ttl = ttlMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(ttlMillis) : 0L;
+    }
+
+    @Nullable
+    V get(long key) {
+        V value = stripeFor(key).get(key, System.nanoTime());
+        if (value != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Token to pass to {@link #putIfUnchanged(long, Object, long)}, taken before loading the value of {@code key}.
+     */
+    long version(long key) {
+        return stripeFor(key).version();
+    }
+
+    void put(long key, V value) {
+        stripeFor(key).put(key, value, expiresAt(), -1L);
+    }
+
+    /**
+     * Stores a loaded value unless a write reached the stripe of {@code key} after {@code version} was taken.
+     */
+    void putIfUnchanged(long key, V value, long version) {
+        stripeFor(key).put(key, value, expiresAt(), version);
+    }
+
+    void invalidate(long key) {
+        stripeFor(key).remove(key);
+    }
+
+    void clear() {
+        for (Stripe<V> stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    long size() {
+        long size = 0;
+        for (Stripe<V> stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    long getEvictions() {
+        return evictions.sum();
+    }
+
+    private long expiresAt() {
+        return ttl > 0 ? System.nanoTime() + ttl : Long.MAX_VALUE;
+    }
+
+    private Stripe<V> stripeFor(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return stripes[(int) (h >>> 32) & mask];
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class Stripe<V> {
+        private final LinkedHashMap<Long, Entry<V>> probation = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<Long, Entry<V>> protectedEntries = new LinkedHashMap<>(16, 0.75f, true);
+        private final int probationCapacity;
+        private final int protectedCapacity;
+        private final LongAdder evictions;
+        private long version;
+
+        private Stripe(int capacity, LongAdder evictions) {
+            this.probationCapacity = Math.max(1, capacity / 5);
+            this.protectedCapacity = Math.max(0, capacity - probationCapacity);
+            this.evictions = evictions;
+        }
+
+        private synchronized V get(long key, long now) {
+            Entry<V> entry = protectedEntries.get(key);
+            if (entry == null) {
+                entry = probation.remove(key);
+                if (entry == null) {
+                    return null;
+                }
+                if (entry.expiresAt > now) {
+                    protectedEntries.put(key, entry);
+                    demoteOverflow();
+                }
+            }
+            if (entry.expiresAt <= now) {
+                protectedEntries.remove(key);
+                return null;
+            }
+            return entry.value;
+        }
+
+        private synchronized long version() {
+            return version;
+        }
+
+        /**
+         * Stores the entry if {@code expectedVersion} is negative or still current; the former counts as a write.
+         */
+        private synchronized void put(long key, V value, long expiresAt, long expectedVersion) {
+            if (expectedVersion < 0) {
+                version++;
+            } else if (expectedVersion != version) {
+                return;
+            }
+            Entry<V> entry = new Entry<>(value, expiresAt);
+            if (protectedEntries.containsKey(key)) {
+                protectedEntries.put(key, entry);
+            } else {
+                probation.put(key, entry);
+                evictOverflow();
+            }
+        }
+
+        private synchronized void remove(long key) {
+            version++;
+            if (protectedEntries.remove(key) == null) {
+                probation.remove(key);
+            }
+        }
+
+        private synchronized void clear() {
+            version++;
+            probation.clear();
+            protectedEntries.clear();
+        }
+
+        private synchronized int size() {
+            return probation.size() + protectedEntries.size();
+        }
+
+        private void demoteOverflow() {
+            while (protectedEntries.size() > protectedCapacity) {
+                Iterator<Map.Entry<Long, Entry<V>>> it = protectedEntries.entrySet().iterator();
+                Map.Entry<Long, Entry<V>> eldest = it.next();
+                it.remove();
+                probation.put(eldest.getKey(), eldest.getValue());
+            }
+            evictOverflow();
+        }
+
+        private void evictOverflow() {
+            while (probation.size() > probationCapacity) {
+                Iterator<Map.Entry<Long, Entry<V>>> it = probation.entrySet().iterator();
+                it.next();
+                it.remove();
+                evictions.increment();
+            }
+        }
+    }
+}
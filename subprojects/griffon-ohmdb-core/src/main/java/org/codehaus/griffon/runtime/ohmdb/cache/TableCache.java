@@ -0,0 +1,120 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb.cache;
+
+import com.ohmdb.api.Db;
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Cache of a single table in a dataSource. The cache is bound to the {@code Db} it was last used with and
+ * starts over whenever the dataSource is reopened. Records are copied on their way in and out, callers may modify
+ * the instances they get without affecting the cache.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public final class TableCache<T> {
+    private final String dataSourceName;
+    private final Class<T> type;
+    private final SegmentedLruCache<T> cache;
+    private final RecordCopier<T> copier;
+    private volatile Db db;
+
+    TableCache(@Nonnull String dataSourceName, @Nonnull Class<T> type, int capacity, long ttlMillis) {
+        this.dataSourceName = requireNonBlank(dataSourceName, "Argument 'dataSourceName' must not be blank");
+        this.type = requireNonNull(type, "Argument 'type' must not be null");
+        this.cache = new SegmentedLruCache<>(capacity, ttlMillis);
+        this.copier = RecordCopier.of(type);
+    }
+
+    @Nonnull
+    public String getDataSourceName() {
+        return dataSourceName;
+    }
+
+    @Nonnull
+    public Class<T> getType() {
+        return type;
+    }
+
+    public long getSize() {
+        return cache.size();
+    }
+
+    public long getHits() {
+        return cache.getHits();
+    }
+
+    public long getMisses() {
+        return cache.getMisses();
+    }
+
+    public long getEvictions() {
+        return cache.getEvictions();
+    }
+
+    void bind(@Nonnull Db db) {
+        if (this.db != db) {
+            synchronized (this) {
+                if (this.db != db) {
+                    cache.clear();
+                    this.db = db;
+                }
+            }
+        }
+    }
+
+    @Nullable
+    T get(long id) {
+        T record = cache.get(id);
+        return record != null ? copier.copy(record) : null;
+    }
+
+    /**
+     * Token to pass to {@link #load(long, Object, long)}, taken before reading the record from the table.
+     */
+    long version(long id) {
+        return cache.version(id);
+    }
+
+    /**
+     * Caches a record read from the table, unless it was written or invalidated since {@code version} was taken.
+     */
+    void load(long id, @Nonnull T record, long version) {
+        cache.putIfUnchanged(id, copier.copy(record), version);
+    }
+
+    /**
+     * Caches a record just written to the table.
+     */
+    void put(long id, @Nonnull T record) {
+        cache.put(id, copier.copy(record));
+    }
+
+    void invalidate(long id) {
+        cache.invalidate(id);
+    }
+
+    public void invalidateAll() {
+        cache.clear();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb.cdc;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+import griffon.plugins.ohmdb.DbChange;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Multi-producer ring buffer of changes. Producers claim a sequence and store the change in its slot without ever
+ * waiting; a slot is reused once the buffer wraps around, regardless of readers. Changes carry their sequence,
+ * which lets readers tell a slot that has not been written yet from one that has been overwritten.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+final class ChangeRingBuffer {
+    private final AtomicReferenceArray<DbChange> slots;
+    private final int mask;
+    private final AtomicLong cursor = new AtomicLong();
+
+    ChangeRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * The sequence the next change will receive.
+     */
+    long getCursor() {
+        return cursor.get();
+    }
+
+    @Nonnull
+    DbChange publish(@Nonnull String dataSourceName, @Nonnull DbChange.Operation operation, @Nonnull Class<?> type, long id, @Nullable Object record) {
+        long sequence = cursor.getAndIncrement();
+        DbChange change = new DbChange(sequence, dataSourceName, type, operation, id, record);
+        slots.set(index(sequence), change);
+        return change;
+    }
+
+    /**
+     * Returns the change stored in the slot of the given sequence. Its own sequence is lower if the change has not
+     * been published yet, higher if it has been overwritten already.
+     */
+    @Nullable
+    DbChange get(long sequence) {
+        return slots.get(index(sequence));
+    }
+
+    boolean isAvailable(long sequence) {
+        DbChange change = get(sequence);
+        return change != null && change.getSequence() >= sequence;
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence & mask);
+    }
+}
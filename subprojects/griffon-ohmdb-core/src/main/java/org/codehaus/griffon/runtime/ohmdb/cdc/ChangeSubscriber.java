@@ -0,0 +1,171 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb.cdc;
+
+import griffon.annotations.core.Nonnull;
+import griffon.plugins.ohmdb.DbChange;
+import griffon.plugins.ohmdb.DbChangeListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reads a {@code ChangeRingBuffer} on a thread of its own and hands batches of changes to a listener.
+ * The thread parks while there is nothing to read; producers wake it up only when it is parked.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+final class ChangeSubscriber implements Runnable {
+    private static final Logger LOG = LoggerFactory.getLogger(ChangeSubscriber.class);
+    private static final long MAX_PARK = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final String dataSourceName;
+    private final ChangeRingBuffer buffer;
+    private final DbChangeListener listener;
+    private final int batchSize;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile boolean waiting;
+    private long next;
+
+    ChangeSubscriber(@Nonnull String dataSourceName, @Nonnull ChangeRingBuffer buffer, @Nonnull DbChangeListener listener, int batchSize, @Nonnull String threadName) {
+        this.dataSourceName = dataSourceName;
+        this.buffer = requireNonNull(buffer, "Argument 'buffer' must not be null");
+        this.listener = requireNonNull(listener, "Argument 'listener' must not be null");
+        this.batchSize = Math.max(1, batchSize);
+        this.next = buffer.getCursor();
+        this.thread = new Thread(this, threadName);
+        this.thread.setDaemon(true);
+    }
+
+    @Nonnull
+    DbChangeListener getListener() {
+        return listener;
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Called by producers after publishing a change.
+     */
+    void signal() {
+        if (waiting) {
+            waiting = false;
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Stops reading once the changes published so far have been delivered.
+     */
+    void stop(long timeout) {
+        running = false;
+        LockSupport.unpark(thread);
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join(timeout);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        List<DbChange> batch = new ArrayList<>(batchSize);
+        while (true) {
+            long lost = read(batch);
+            if (lost > 0) {
+                deliverLoss(lost);
+            }
+            if (!batch.isEmpty()) {
+                deliver(batch);
+                batch = new ArrayList<>(batchSize);
+                continue;
+            }
+            if (lost > 0) {
+                continue;
+            }
+            if (!running) {
+                return;
+            }
+
+            waiting = true;
+            // re-check after announcing ourselves, a producer may have published in between
+            if (!buffer.isAvailable(next) && running) {
+                LockSupport.parkNanos(this, MAX_PARK);
+            }
+            waiting = false;
+        }
+    }
+
+    /**
+     * Fills the batch with available changes.
+     *
+     * @return the number of changes overwritten before they could be read
+     */
+    private long read(@Nonnull List<DbChange> batch) {
+        while (batch.size() < batchSize) {
+            DbChange change = buffer.get(next);
+            if (change == null || change.getSequence() < next) {
+                // not published yet
+                return 0;
+            }
+            if (change.getSequence() > next) {
+                if (!batch.isEmpty()) {
+                    // deliver what was read before reporting the gap
+                    return 0;
+                }
+                long resume = Math.max(next + 1, buffer.getCursor() - buffer.getCapacity());
+                long lost = resume - next;
+                next = resume;
+                return lost;
+            }
+            batch.add(change);
+            next++;
+        }
+        return 0;
+    }
+
+    private void deliver(@Nonnull List<DbChange> batch) {
+        try {
+            listener.onChanges(dataSourceName, Collections.unmodifiableList(batch));
+        } catch (RuntimeException e) {
+            LOG.warn("Listener {} failed to handle {} changes of dataSource '{}'", listener, batch.size(), dataSourceName, e);
+        }
+    }
+
+    private void deliverLoss(long lost) {
+        LOG.debug("Listener {} lost {} changes of dataSource '{}'", listener, lost, dataSourceName);
+        try {
+            listener.onChangesLost(dataSourceName, lost);
+        } catch (RuntimeException e) {
+            LOG.warn("Listener {} failed to handle lost changes of dataSource '{}'", listener, dataSourceName, e);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb.cdc;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+import griffon.plugins.ohmdb.DbChange;
+import griffon.plugins.ohmdb.DbChangeCapture;
+import griffon.plugins.ohmdb.DbChangeListener;
+import griffon.plugins.ohmdb.DbFactory;
+import griffon.plugins.ohmdb.events.OhmdbChangesEvent;
+import org.codehaus.griffon.runtime.ohmdb.DbEvents;
+
+import javax.inject.Inject;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static griffon.util.ConfigUtils.getConfigValueAsBoolean;
+import static griffon.util.ConfigUtils.getConfigValueAsInt;
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Keeps a {@code ChangeRingBuffer} per dataSource, created on first use. Publishing to a dataSource without
+ * listeners returns right away.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DefaultDbChangeCapture implements DbChangeCapture {
+    private static final String ERROR_DATASOURCE_NAME_BLANK = "Argument 'dataSourceName' must not be blank";
+    private static final int DEFAULT_BUFFER_SIZE = 1024;
+    private static final int DEFAULT_BATCH_SIZE = 128;
+    private static final long STOP_TIMEOUT = 5000L;
+
+    private final DbFactory dbFactory;
+    private final DbEvents events;
+    private final ConcurrentMap<String, Channel> channels = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Boolean> bridged = new ConcurrentHashMap<>();
+    private final AtomicInteger threads = new AtomicInteger();
+
+    @Inject
+    public DefaultDbChangeCapture(@Nonnull DbFactory dbFactory, @Nonnull DbEvents events) {
+        this.dbFactory = requireNonNull(dbFactory, "Argument 'dbFactory' must not be null");
+        this.events = requireNonNull(events, "Argument 'events' must not be null");
+    }
+
+    @Override
+    public void subscribe(@Nonnull String dataSourceName, @Nonnull DbChangeListener listener) {
+        requireNonBlank(dataSourceName, ERROR_DATASOURCE_NAME_BLANK);
+        requireNonNull(listener, "Argument 'listener' must not be null");
+        Channel channel = channelFor(dataSourceName);
+        if (channel == null) {
+            throw new IllegalArgumentException("DataSource '" + dataSourceName + "' is not configured.");
+        }
+        channel.subscribe(listener);
+    }
+
+    @Override
+    public void unsubscribe(@Nonnull String dataSourceName, @Nonnull DbChangeListener listener) {
+        requireNonBlank(dataSourceName, ERROR_DATASOURCE_NAME_BLANK);
+        requireNonNull(listener, "Argument 'listener' must not be null");
+        Channel channel = channels.get(dataSourceName);
+        if (channel != null) {
+            channel.unsubscribe(listener);
+        }
+    }
+
+    @Override
+    public void publish(@Nonnull String dataSourceName, @Nonnull DbChange.Operation operation, @Nonnull Class<?> type, long id, @Nullable Object record) {
+        Channel channel = channels.get(dataSourceName);
+        if (channel == null) {
+            if (!bridged.computeIfAbsent(dataSourceName, this::isBridged)) {
+                // nobody listening
+                return;
+            }
+            channel = channelFor(dataSourceName);
+        }
+        if (channel != null) {
+            channel.publish(operation, type, id, record);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        for (Channel channel : channels.values()) {
+            channel.stop();
+        }
+        channels.clear();
+    }
+
+    @Nullable
+    private Channel channelFor(@Nonnull final String dataSourceName) {
+        Channel channel = channels.get(dataSourceName);
+        if (channel != null) {
+            return channel;
+        }
+        final Map<String, Object> config = dbFactory.getConfigurationFor(dataSourceName);
+        if (config.isEmpty()) {
+            return null;
+        }
+        return channels.computeIfAbsent(dataSourceName, k -> {
+            Channel c = new Channel(dataSourceName, config);
+            if (isBridged(dataSourceName)) {
+                c.subscribe(new EventRouterBridge());
+            }
+            return c;
+        });
+    }
+
+    private boolean isBridged(@Nonnull String dataSourceName) {
+        return getConfigValueAsBoolean(dbFactory.getConfigurationFor(dataSourceName), "cdc_events", false);
+    }
+
+    private final class Channel {
+        private final String dataSourceName;
+        private final ChangeRingBuffer buffer;
+        private final int batchSize;
+        private final List<ChangeSubscriber> subscribers = new CopyOnWriteArrayList<>();
+
+        private Channel(@Nonnull String dataSourceName, @Nonnull Map<String, Object> config) {
+            this.dataSourceName = dataSourceName;
+            this.buffer = new ChangeRingBuffer(getConfigValueAsInt(config, "cdc_buffer_size", DEFAULT_BUFFER_SIZE));
+            this.batchSize = getConfigValueAsInt(config, "cdc_batch_size", DEFAULT_BATCH_SIZE);
+        }
+
+        private synchronized void subscribe(@Nonnull DbChangeListener listener) {
+            ChangeSubscriber subscriber = new ChangeSubscriber(dataSourceName, buffer, listener, batchSize,
+                "ohmdb-cdc-" + dataSourceName + "-" + threads.incrementAndGet());
+            subscribers.add(subscriber);
+            subscriber.start();
+        }
+
+        private synchronized void unsubscribe(@Nonnull DbChangeListener listener) {
+            for (ChangeSubscriber subscriber : subscribers) {
+                if (subscriber.getListener() == listener) {
+                    subscribers.remove(subscriber);
+                    subscriber.stop(STOP_TIMEOUT);
+                }
+            }
+        }
+
+        private void publish(@Nonnull DbChange.Operation operation, @Nonnull Class<?> type, long id, @Nullable Object record) {
+            if (subscribers.isEmpty()) {
+                return;
+            }
+            buffer.publish(dataSourceName, operation, type, id, record);
+            for (ChangeSubscriber subscriber : subscribers) {
+                subscriber.signal();
+            }
+        }
+
+        private synchronized void stop() {
+            for (ChangeSubscriber subscriber : subscribers) {
+                subscriber.stop(STOP_TIMEOUT);
+            }
+            subscribers.clear();
+        }
+    }
+
+    private final class EventRouterBridge implements DbChangeListener {
+        @Override
+        public void onChanges(@Nonnull String dataSourceName, @Nonnull List<DbChange> changes) {
+            events.publish(OhmdbChangesEvent.class, () -> OhmdbChangesEvent.of(dataSourceName, changes));
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb.imports;
+
+import griffon.annotations.core.Nonnull;
+import griffon.exceptions.GriffonException;
+import griffon.plugins.ohmdb.EntityAccessor;
+import org.codehaus.griffon.runtime.ohmdb.EntityAccessors;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static griffon.util.GriffonNameUtils.uncapitalize;
+
+/**
+ * Creates beans from raw records. Constructors and property setters are resolved once per type and
+ * invoked through the generated {@code EntityAccessor} of the type when available, method handles otherwise;
+ * values are converted to the type of each property.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+final class BeanMapper<T> {
+    private static final ClassValue<BeanMapper<?>> MAPPERS = new ClassValue<BeanMapper<?>>() {
+        @Override
+        protected BeanMapper<?> computeValue(Class<?> type) {
+            return new BeanMapper<>(type);
+        }
+    };
+
+    private final Class<T> type;
+    private final Supplier<Object> constructor;
+    private final Map<String, Property> properties = new HashMap<>();
+
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    static <T> BeanMapper<T> of(@Nonnull Class<T> type) {
+        return (BeanMapper<T>) MAPPERS.get(type);
+    }
+
+    @SuppressWarnings("unchecked")
+    private BeanMapper(@Nonnull Class<T> type) {
+        this.type = type;
+        EntityAccessor<Object> accessor = (EntityAccessor<Object>) EntityAccessors.find(type);
+        if (accessor != null) {
+            this.constructor = accessor::newInstance;
+            for (String name : accessor.getProperties()) {
+                BiConsumer<Object, Object> setter = accessor.setter(name);
+                Class<?> propertyType = accessor.getPropertyType(name);
+                if (setter != null && propertyType != null) {
+                    properties.put(name, new Property(setter, propertyType));
+                }
+            }
+            return;
+        }
+
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle handle;
+        try {
+            handle = lookup.findConstructor(type, MethodType.methodType(void.class))
+                .asType(MethodType.methodType(Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("Type " + type.getName() + " must define a public no-args constructor", e);
+        }
+        this.constructor = () -> {
+            try {
+                return handle.invokeExact();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new GriffonException("Could not create an instance of " + type.getName(), t);
+            }
+        };
+
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers) || field.isSynthetic() || properties.containsKey(field.getName())) {
+                    continue;
+                }
+                try {
+                    field.setAccessible(true);
+                    properties.put(field.getName(), new Property(field.getName(), lookup.unreflectSetter(field), field.getType()));
+                } catch (IllegalAccessException | RuntimeException e) {
+                    // not accessible, a setter may still be available
+                }
+            }
+        }
+
+        // setters take precedence over fields
+        for (Method method : type.getMethods()) {
+            String name = method.getName();
+            if (name.length() > 3 && name.startsWith("set") && method.getParameterCount() == 1 && !Modifier.isStatic(method.getModifiers())) {
+                try {
+                    String property = uncapitalize(name.substring(3));
+                    properties.put(property, new Property(property, lookup.unreflect(method), method.getParameterTypes()[0]));
+                } catch (IllegalAccessException e) {
+                    // skip
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a new bean with the values of the given record. Unknown properties are ignored.
+     */
+    @Nonnull
+    T map(@Nonnull Map<String, Object> record) {
+        Object bean = constructor.get();
+
+        for (Map.Entry<String, Object> entry : record.entrySet()) {
+            Property property = properties.get(entry.getKey());
+            if (property != null) {
+                property.set(bean, entry.getKey(), entry.getValue());
+            }
+        }
+        return type.cast(bean);
+    }
+
+    private static final class Property {
+        private final BiConsumer<Object, Object> setter;
+        private final Function<Object, Object> converter;
+
+        private Property(@Nonnull String name, @Nonnull MethodHandle setter, @Nonnull Class<?> propertyType) {
+            MethodHandle handle = setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+            this.setter = (bean, value) -> {
+                try {
+                    handle.invokeExact(bean, value);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw new GriffonException("Could not set property '" + name + "'", t);
+                }
+            };
+            this.converter = converterFor(propertyType);
+        }
+
+        private Property(@Nonnull BiConsumer<Object, Object> setter, @Nonnull Class<?> propertyType) {
+            this.setter = setter;
+            this.converter = converterFor(propertyType);
+        }
+
+        private void set(@Nonnull Object bean, @Nonnull String name, @Nonnull Object value) {
+            Object converted;
+            try {
+                converted = converter.apply(value);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid value '" + value + "' for property '" + name + "'", e);
+            }
+            setter.accept(bean, converted);
+        }
+    }
+
+    @Nonnull
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Function<Object, Object> converterFor(@Nonnull Class<?> type) {
+        if (type == String.class || type == Object.class) {
+            return String::valueOf;
+        } else if (type == long.class || type == Long.class) {
+            return v -> v instanceof Number ? ((Number) v).longValue() : Long.parseLong(v.toString().trim());
+        } else if (type == int.class || type == Integer.class) {
+            return v -> v instanceof Number ? ((Number) v).intValue() : Integer.parseInt(v.toString().trim());
+        } else if (type == short.class || type == Short.class) {
+            return v -> v instanceof Number ? ((Number) v).shortValue() : Short.parseShort(v.toString().trim());
+        } else if (type == byte.class || type == Byte.class) {
+            return v -> v instanceof Number ? ((Number) v).byteValue() : Byte.parseByte(v.toString().trim());
+        } else if (type == double.class || type == Double.class) {
+            return v -> v instanceof Number ? ((Number) v).doubleValue() : Double.parseDouble(v.toString().trim());
+        } else if (type == float.class || type == Float.class) {
+            return v -> v instanceof Number ? ((Number) v).floatValue() : Float.parseFloat(v.toString().trim());
+        } else if (type == boolean.class || type == Boolean.class) {
+            return v -> v instanceof Boolean ? v : Boolean.parseBoolean(v.toString().trim());
+        } else if (type == char.class || type == Character.class) {
+            return v -> {
+                String s = v.toString();
+                if (s.length() != 1) {
+                    throw new IllegalArgumentException("Expected a single character");
+                }
+                return s.charAt(0);
+            };
+        } else if (type == BigDecimal.class) {
+            return v -> v instanceof BigDecimal ? v : new BigDecimal(v.toString().trim());
+        } else if (type == BigInteger.class) {
+            return v -> v instanceof BigDecimal ? ((BigDecimal) v).toBigIntegerExact() : new BigInteger(v.toString().trim());
+        } else if (type.isEnum()) {
+            final Class<? extends Enum> enumType = (Class<? extends Enum>) type;
+            return v -> Enum.valueOf(enumType, v.toString().trim());
+        }
+        return v -> {
+            if (type.isInstance(v)) {
+                return v;
+            }
+            throw new IllegalArgumentException("Cannot convert to " + type.getName());
+        };
+    }
+}
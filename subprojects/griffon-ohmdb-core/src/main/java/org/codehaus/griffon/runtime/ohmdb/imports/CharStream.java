@@ -0,0 +1,118 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb.imports;
+
+import griffon.annotations.core.Nonnull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Decodes UTF-8 text from a channel one buffer at a time, so memory use does not depend on the size of the input.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+final class CharStream {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char BOM = '\uFEFF';
+
+    private final ReadableByteChannel channel;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPORT)
+        .onUnmappableCharacter(CodingErrorAction.REPORT);
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+    private boolean eof;
+    private boolean flushed;
+    private boolean started;
+    private long line = 1;
+
+    CharStream(@Nonnull InputStream input) {
+        this.channel = Channels.newChannel(requireNonNull(input, "Argument 'input' must not be null"));
+        chars.flip();
+    }
+
+    /**
+     * Line number of the next character, starting at 1.
+     */
+    long getLine() {
+        return line;
+    }
+
+    /**
+     * @return the next character, or {@code -1} at the end of the input
+     */
+    int read() throws IOException {
+        if (!chars.hasRemaining() && !fill()) {
+            return -1;
+        }
+        char c = chars.get();
+        if (c == '\n') {
+            line++;
+        }
+        return c;
+    }
+
+    /**
+     * @return the next character without consuming it, or {@code -1} at the end of the input
+     */
+    int peek() throws IOException {
+        if (!chars.hasRemaining() && !fill()) {
+            return -1;
+        }
+        return chars.get(chars.position());
+    }
+
+    private boolean fill() throws IOException {
+        chars.clear();
+        while (chars.position() == 0 && !flushed) {
+            if (!eof && channel.read(bytes) < 0) {
+                eof = true;
+            }
+            bytes.flip();
+            CoderResult result = decoder.decode(bytes, chars, eof);
+            bytes.compact();
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (eof && bytes.position() == 0) {
+                decoder.flush(chars);
+                flushed = true;
+            }
+        }
+        chars.flip();
+        if (!started) {
+            started = true;
+            if (chars.hasRemaining() && chars.get(chars.position()) == BOM) {
+                chars.get();
+            }
+        }
+        return chars.hasRemaining();
+    }
+}
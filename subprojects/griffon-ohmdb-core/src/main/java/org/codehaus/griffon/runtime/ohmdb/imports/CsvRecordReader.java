@@ -0,0 +1,145 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb.imports;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reads RFC 4180 comma separated values. The first record holds the property names; empty unquoted
+ * values are skipped so that the property keeps its default value.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+final class CsvRecordReader implements RecordReader {
+    private static final char SEPARATOR = ',';
+    private static final char QUOTE = '"';
+
+    private final CharStream input;
+    private final StringBuilder field = new StringBuilder();
+    private String[] header;
+    private long line;
+
+    CsvRecordReader(@Nonnull CharStream input) {
+        this.input = requireNonNull(input, "Argument 'input' must not be null");
+    }
+
+    @Override
+    public long getLine() {
+        return line;
+    }
+
+    @Nullable
+    @Override
+    public Map<String, Object> next() throws IOException {
+        if (header == null) {
+            List<String> names = readRecord();
+            if (names == null) {
+                return null;
+            }
+            header = new String[names.size()];
+            for (int i = 0; i < header.length; i++) {
+                header[i] = names.get(i) == null ? "" : names.get(i).trim();
+            }
+        }
+
+        List<String> values = readRecord();
+        if (values == null) {
+            return null;
+        }
+        if (values.size() > header.length) {
+            throw new IOException("Malformed CSV at line " + line + ": expected " + header.length + " values but found " + values.size());
+        }
+
+        Map<String, Object> record = new LinkedHashMap<>(header.length * 2);
+        for (int i = 0; i < values.size(); i++) {
+            if (values.get(i) != null) {
+                record.put(header[i], values.get(i));
+            }
+        }
+        return record;
+    }
+
+    @Nullable
+    private List<String> readRecord() throws IOException {
+        // skip blank lines between records
+        int c = input.peek();
+        while (c == '\r' || c == '\n') {
+            input.read();
+            c = input.peek();
+        }
+        if (c < 0) {
+            return null;
+        }
+
+        line = input.getLine();
+        List<String> values = new ArrayList<>(header != null ? header.length : 16);
+        for (; ; ) {
+            values.add(readField());
+            c = input.read();
+            if (c == SEPARATOR) {
+                continue;
+            }
+            if (c == '\r' && input.peek() == '\n') {
+                input.read();
+            }
+            return values;
+        }
+    }
+
+    @Nullable
+    private String readField() throws IOException {
+        field.setLength(0);
+        if (input.peek() != QUOTE) {
+            for (int c = input.peek(); c >= 0 && c != SEPARATOR && c != '\r' && c != '\n'; c = input.peek()) {
+                field.append((char) input.read());
+            }
+            return field.length() == 0 ? null : field.toString();
+        }
+
+        input.read();
+        for (; ; ) {
+            int c = input.read();
+            if (c < 0) {
+                throw new IOException("Malformed CSV at line " + line + ": unterminated quoted value");
+            }
+            if (c == QUOTE) {
+                if (input.peek() != QUOTE) {
+                    break;
+                }
+                input.read();
+            }
+            field.append((char) c);
+        }
+
+        int c = input.peek();
+        if (c >= 0 && c != SEPARATOR && c != '\r' && c != '\n') {
+            throw new IOException("Malformed CSV at line " + line + ": unexpected character after quoted value");
+        }
+        return field.toString();
+    }
+}
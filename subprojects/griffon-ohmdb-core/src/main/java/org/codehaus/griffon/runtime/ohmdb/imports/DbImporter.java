@@ -0,0 +1,135 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb.imports;
+
+import griffon.annotations.core.Nonnull;
+import griffon.exceptions.GriffonException;
+import griffon.plugins.ohmdb.DbCacheManager;
+import griffon.plugins.ohmdb.DbChangeCapture;
+import griffon.plugins.ohmdb.DbHandler;
+import griffon.plugins.ohmdb.DbIndexManager;
+import griffon.plugins.ohmdb.ImportFormat;
+import griffon.plugins.ohmdb.events.OhmdbImportEndEvent;
+import griffon.plugins.ohmdb.events.OhmdbImportProgressEvent;
+import org.codehaus.griffon.runtime.ohmdb.DbEvents;
+import org.codehaus.griffon.runtime.ohmdb.DefaultDbBatchWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static griffon.util.ConfigUtils.getConfigValueAsInt;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Streams records from an {@code InputStream} into a table. Records are read incrementally and handed to a
+ * dedicated {@code DbBatchWriter}, whose bounded queue blocks the reader whenever writes fall behind; memory
+ * use stays constant regardless of the size of the input.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DbImporter {
+    private static final int DEFAULT_PROGRESS_INTERVAL = 10000;
+
+    private final DbHandler dbHandler;
+    private final DbChangeCapture dbChangeCapture;
+    private final DbCacheManager dbCacheManager;
+    private final DbIndexManager dbIndexManager;
+    private final DbEvents events;
+
+    public DbImporter(@Nonnull DbHandler dbHandler, @Nonnull DbChangeCapture dbChangeCapture, @Nonnull DbCacheManager dbCacheManager, @Nonnull DbIndexManager dbIndexManager, @Nonnull DbEvents events) {
+        this.dbHandler = requireNonNull(dbHandler, "Argument 'dbHandler' must not be null");
+        this.dbChangeCapture = requireNonNull(dbChangeCapture, "Argument 'dbChangeCapture' must not be null");
+        this.dbCacheManager = requireNonNull(dbCacheManager, "Argument 'dbCacheManager' must not be null");
+        this.dbIndexManager = requireNonNull(dbIndexManager, "Argument 'dbIndexManager' must not be null");
+        this.events = requireNonNull(events, "Argument 'events' must not be null");
+    }
+
+    /**
+     * Imports every record of the input. The input is not closed.
+     *
+     * @return the number of records written
+     */
+    public <T> long importInto(@Nonnull String dataSourceName, @Nonnull Class<T> type, @Nonnull InputStream input, @Nonnull ImportFormat format, @Nonnull Map<String, Object> config) {
+        BeanMapper<T> mapper = BeanMapper.of(type);
+        RecordReader reader = createReader(new CharStream(input), format);
+        int progressInterval = getConfigValueAsInt(config, "import_progress_interval", DEFAULT_PROGRESS_INTERVAL);
+
+        final AtomicLong written = new AtomicLong();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        DefaultDbBatchWriter<T> writer = DefaultDbBatchWriter.create(dbHandler, dataSourceName, type, config, dbChangeCapture, dbCacheManager, dbIndexManager);
+        try {
+            long read = 0;
+            for (Map<String, Object> record = reader.next(); record != null && failure.get() == null; record = reader.next()) {
+                T bean;
+                try {
+                    bean = mapper.map(record);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Invalid record at line " + reader.getLine() + ". " + e.getMessage(), e);
+                }
+
+                writer.insert(bean).whenComplete((id, t) -> {
+                    if (t != null) {
+                        failure.compareAndSet(null, t);
+                    } else {
+                        written.incrementAndGet();
+                    }
+                });
+
+                if (progressInterval > 0 && ++read % progressInterval == 0) {
+                    final long progress = read;
+                    events.publish(OhmdbImportProgressEvent.class, () -> OhmdbImportProgressEvent.of(dataSourceName, type, progress));
+                }
+            }
+            writer.flush().join();
+        } catch (IOException e) {
+            failure.compareAndSet(null, e);
+        } catch (CompletionException e) {
+            failure.compareAndSet(null, e.getCause());
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            writer.close();
+        }
+
+        Throwable t = failure.get();
+        events.publish(OhmdbImportEndEvent.class, () -> OhmdbImportEndEvent.of(dataSourceName, type, written.get(), t));
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t != null) {
+            throw new GriffonException("Could not import " + type.getName() + " into dataSource '" + dataSourceName + "'", t);
+        }
+        return written.get();
+    }
+
+    @Nonnull
+    private static RecordReader createReader(@Nonnull CharStream input, @Nonnull ImportFormat format) {
+        switch (format) {
+            case CSV:
+                return new CsvRecordReader(input);
+            case JSON_LINES:
+                return new JsonLinesRecordReader(input);
+            default:
+                throw new IllegalArgumentException("Unsupported format " + format);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb.imports;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reads one flat JSON object per line. Values may be strings, numbers, booleans or {@code null};
+ * nested objects and arrays are rejected.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+final class JsonLinesRecordReader implements RecordReader {
+    private final CharStream input;
+    private final StringBuilder token = new StringBuilder();
+    private long line;
+
+    JsonLinesRecordReader(@Nonnull CharStream input) {
+        this.input = requireNonNull(input, "Argument 'input' must not be null");
+    }
+
+    @Override
+    public long getLine() {
+        return line;
+    }
+
+    @Nullable
+    @Override
+    public Map<String, Object> next() throws IOException {
+        int c = skipWhitespace(true);
+        if (c < 0) {
+            return null;
+        }
+        line = input.getLine();
+        expect('{');
+
+        Map<String, Object> record = new LinkedHashMap<>();
+        c = skipWhitespace(false);
+        if (c == '}') {
+            input.read();
+        } else {
+            for (; ; ) {
+                skipWhitespace(false);
+                String name = readString();
+                skipWhitespace(false);
+                expect(':');
+                skipWhitespace(false);
+                Object value = readValue();
+                if (value != null) {
+                    record.put(name, value);
+                }
+                skipWhitespace(false);
+                c = input.read();
+                if (c == '}') {
+                    break;
+                }
+                if (c != ',') {
+                    throw malformed("expected ',' or '}'");
+                }
+            }
+        }
+
+        c = skipWhitespace(false);
+        if (c >= 0 && c != '\n' && c != '\r') {
+            throw malformed("unexpected content after object");
+        }
+        return record;
+    }
+
+    private int skipWhitespace(boolean newlines) throws IOException {
+        for (int c = input.peek(); ; c = input.peek()) {
+            if (c == ' ' || c == '\t' || (newlines && (c == '\r' || c == '\n'))) {
+                input.read();
+            } else {
+                return c;
+            }
+        }
+    }
+
+    private void expect(char expected) throws IOException {
+        if (input.read() != expected) {
+            throw malformed("expected '" + expected + "'");
+        }
+    }
+
+    @Nullable
+    private Object readValue() throws IOException {
+        int c = input.peek();
+        switch (c) {
+            case '"':
+                return readString();
+            case 't':
+                readLiteral("true");
+                return Boolean.TRUE;
+            case 'f':
+                readLiteral("false");
+                return Boolean.FALSE;
+            case 'n':
+                readLiteral("null");
+                return null;
+            case '{':
+            case '[':
+                throw malformed("nested values are not supported");
+            default:
+                return readNumber();
+        }
+    }
+
+    private void readLiteral(@Nonnull String literal) throws IOException {
+        for (int i = 0; i < literal.length(); i++) {
+            if (input.read() != literal.charAt(i)) {
+                throw malformed("expected '" + literal + "'");
+            }
+        }
+    }
+
+    @Nonnull
+    private Number readNumber() throws IOException {
+        token.setLength(0);
+        boolean integral = true;
+        for (int c = input.peek(); (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E'; c = input.peek()) {
+            if (c == '.' || c == 'e' || c == 'E') {
+                integral = false;
+            }
+            token.append((char) input.read());
+        }
+        if (token.length() == 0) {
+            throw malformed("expected a value");
+        }
+        try {
+            if (integral && token.length() < 19) {
+                return Long.parseLong(token.toString());
+            }
+            return new BigDecimal(token.toString());
+        } catch (NumberFormatException e) {
+            throw malformed("invalid number '" + token + "'");
+        }
+    }
+
+    @Nonnull
+    private String readString() throws IOException {
+        expect('"');
+        token.setLength(0);
+        for (; ; ) {
+            int c = input.read();
+            if (c < 0 || c == '\n') {
+                throw malformed("unterminated string");
+            }
+            if (c == '"') {
+                return token.toString();
+            }
+            if (c != '\\') {
+                token.append((char) c);
+                continue;
+            }
+            c = input.read();
+            switch (c) {
+                case '"':
+                case '\\':
+                case '/':
+                    token.append((char) c);
+                    break;
+                case 'b':
+                    token.append('\b');
+                    break;
+                case 'f':
+                    token.append('\f');
+                    break;
+                case 'n':
+                    token.append('\n');
+                    break;
+                case 'r':
+                    token.append('\r');
+                    break;
+                case 't':
+                    token.append('\t');
+                    break;
+                case 'u':
+                    token.append(readHexChar());
+                    break;
+                default:
+                    throw malformed("invalid escape sequence");
+            }
+        }
+    }
+
+    private char readHexChar() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(input.read(), 16);
+            if (digit < 0) {
+                throw malformed("invalid unicode escape");
+            }
+            value = (value << 4) | digit;
+        }
+        return (char) value;
+    }
+
+    @Nonnull
+    private IOException malformed(@Nonnull String reason) {
+        return new IOException("Malformed JSON at line " + line + ": " + reason);
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb.imports;
+
+import griffon.annotations.core.Nullable;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Reads records one at a time, mapping property names to raw values.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+interface RecordReader {
+    /**
+     * @return the next record, or {@code null} once the input is exhausted
+     */
+    @Nullable
+    Map<String, Object> next() throws IOException;
+
+    /**
+     * Line number where the last record returned by {@link #next()} started.
+     */
+    long getLine();
+}
@@ -0,0 +1,56 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb.index;
+
+import com.ohmdb.api.Db;
+import griffon.annotations.core.Nonnull;
+import griffon.plugins.ohmdb.DbIndexManager;
+import griffon.plugins.ohmdb.OhmdbBootstrap;
+
+import javax.inject.Inject;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Builds declared indexes as soon as a dataSource is opened and drops them once it is closed.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DbIndexBootstrap implements OhmdbBootstrap {
+    private final DbIndexManager dbIndexManager;
+
+    @Inject
+    public DbIndexBootstrap(@Nonnull DbIndexManager dbIndexManager) {
+        this.dbIndexManager = requireNonNull(dbIndexManager, "Argument 'dbIndexManager' must not be null");
+    }
+
+    @Override
+    public void init(@Nonnull String dataSourceName, @Nonnull Db db) {
+        if (dbIndexManager instanceof DefaultDbIndexManager) {
+            ((DefaultDbIndexManager) dbIndexManager).init(dataSourceName, db);
+        }
+    }
+
+    @Override
+    public void destroy(@Nonnull String dataSourceName, @Nonnull Db db) {
+        if (dbIndexManager instanceof DefaultDbIndexManager) {
+            ((DefaultDbIndexManager) dbIndexManager).destroy(dataSourceName, db);
+        }
+    }
+}
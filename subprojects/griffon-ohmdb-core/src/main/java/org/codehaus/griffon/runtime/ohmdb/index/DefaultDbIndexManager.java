@@ -0,0 +1,207 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb.index;
+
+import com.ohmdb.api.Db;
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+import griffon.plugins.ohmdb.DbCacheManager;
+import griffon.plugins.ohmdb.DbFactory;
+import griffon.plugins.ohmdb.DbIndexManager;
+import griffon.plugins.ohmdb.Indexed;
+import griffon.plugins.ohmdb.IndexedTable;
+import org.codehaus.griffon.runtime.ohmdb.cache.DefaultDbCacheManager;
+
+import javax.inject.Inject;
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static griffon.util.GriffonNameUtils.isNotBlank;
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+import static org.codehaus.griffon.runtime.ohmdb.DbSupport.toClass;
+
+/**
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DefaultDbIndexManager implements DbIndexManager {
+    private static final String ERROR_DATASOURCE_NAME_BLANK = "Argument 'dataSourceName' must not be blank";
+    private static final String ERROR_DB_NULL = "Argument 'db' must not be null";
+
+    private final DbFactory dbFactory;
+    private final DbCacheManager dbCacheManager;
+    private final ConcurrentMap<String, TableIndexes<?>> indexes = new ConcurrentHashMap<>();
+
+    @Inject
+    public DefaultDbIndexManager(@Nonnull DbFactory dbFactory, @Nonnull DbCacheManager dbCacheManager) {
+        this.dbFactory = requireNonNull(dbFactory, "Argument 'dbFactory' must not be null");
+        this.dbCacheManager = requireNonNull(dbCacheManager, "Argument 'dbCacheManager' must not be null");
+    }
+
+    @Nonnull
+    @Override
+    public <T> IndexedTable<T> table(@Nonnull String dataSourceName, @Nonnull Db db, @Nonnull Class<T> type) {
+        requireNonBlank(dataSourceName, ERROR_DATASOURCE_NAME_BLANK);
+        requireNonNull(db, ERROR_DB_NULL);
+        requireNonNull(type, "Argument 'type' must not be null");
+
+        TableIndexes<T> tableIndexes = resolve(dataSourceName, type);
+        tableIndexes.bind(db);
+        // tables handed out by the default cache manager keep the indexes current on their own
+        return new DefaultIndexedTable<>(dbCacheManager.table(dataSourceName, db, type), tableIndexes, !(dbCacheManager instanceof DefaultDbCacheManager));
+    }
+
+    @Override
+    public void rebuild(@Nonnull String dataSourceName) {
+        requireNonBlank(dataSourceName, ERROR_DATASOURCE_NAME_BLANK);
+        for (TableIndexes<?> tableIndexes : indexes.values()) {
+            if (dataSourceName.equals(tableIndexes.getDataSourceName())) {
+                tableIndexes.rebuild();
+            }
+        }
+    }
+
+    /**
+     * Builds the indexes of every type declared by the {@code indexes} and {@code tables} settings of the dataSource.
+     */
+    public void init(@Nonnull String dataSourceName, @Nonnull Db db) {
+        requireNonBlank(dataSourceName, ERROR_DATASOURCE_NAME_BLANK);
+        requireNonNull(db, ERROR_DB_NULL);
+
+        Map<String, Object> config = dbFactory.getConfigurationFor(dataSourceName);
+        Set<Class<?>> types = new LinkedHashSet<>();
+        Object declared = config.get("indexes");
+        if (declared instanceof Map) {
+            for (Object type : ((Map<?, ?>) declared).keySet()) {
+                types.add(toClass(type));
+            }
+        }
+        Object tables = config.get("tables");
+        if (tables instanceof Collection) {
+            for (Object type : (Collection<?>) tables) {
+                types.add(toClass(type));
+            }
+        } else if (tables != null) {
+            types.add(toClass(tables));
+        }
+
+        for (Class<?> type : types) {
+            TableIndexes<?> tableIndexes = resolve(dataSourceName, type);
+            if (!tableIndexes.isEmpty()) {
+                tableIndexes.bind(db);
+            }
+        }
+    }
+
+    /**
+     * Updates the indexes of a record inserted or updated outside of an {@code IndexedTable}, such as by a
+     * {@code DbBatchWriter} or a {@code CachedTable}. Types without indexes are ignored; indexes not built yet pick
+     * the record up from the table once they are.
+     */
+    public <T> void indexed(@Nonnull String dataSourceName, @Nonnull Class<T> type, long id, @Nonnull T record) {
+        TableIndexes<T> tableIndexes = find(dataSourceName, type);
+        if (tableIndexes != null) {
+            tableIndexes.put(id, requireNonNull(record, "Argument 'record' must not be null"));
+        }
+    }
+
+    /**
+     * Removes a record deleted outside of an {@code IndexedTable} from the indexes of its type.
+     */
+    public void unindexed(@Nonnull String dataSourceName, @Nonnull Class<?> type, long id) {
+        TableIndexes<?> tableIndexes = find(dataSourceName, type);
+        if (tableIndexes != null) {
+            tableIndexes.remove(id);
+        }
+    }
+
+    /**
+     * Drops the indexes bound to the given {@code Db}.
+     */
+    public void destroy(@Nonnull String dataSourceName, @Nonnull Db db) {
+        requireNonBlank(dataSourceName, ERROR_DATASOURCE_NAME_BLANK);
+        requireNonNull(db, ERROR_DB_NULL);
+        for (TableIndexes<?> tableIndexes : indexes.values()) {
+            if (dataSourceName.equals(tableIndexes.getDataSourceName())) {
+                tableIndexes.unbind(db);
+            }
+        }
+    }
+
+    @Nonnull
+    public Collection<TableIndexes<?>> getIndexes() {
+        return Collections.unmodifiableCollection(indexes.values());
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    private <T> TableIndexes<T> find(@Nonnull String dataSourceName, @Nonnull Class<T> type) {
+        requireNonBlank(dataSourceName, ERROR_DATASOURCE_NAME_BLANK);
+        requireNonNull(type, "Argument 'type' must not be null");
+        return (TableIndexes<T>) indexes.get(dataSourceName + ":" + type.getName());
+    }
+
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    private <T> TableIndexes<T> resolve(@Nonnull String dataSourceName, @Nonnull Class<T> type) {
+        String key = dataSourceName + ":" + type.getName();
+        TableIndexes<T> tableIndexes = (TableIndexes<T>) indexes.get(key);
+        if (tableIndexes == null) {
+            Set<String> properties = resolveProperties(dataSourceName, type);
+            tableIndexes = (TableIndexes<T>) indexes.computeIfAbsent(key, k -> new TableIndexes<>(dataSourceName, type, properties));
+        }
+        return tableIndexes;
+    }
+
+    @Nonnull
+    private Set<String> resolveProperties(@Nonnull String dataSourceName, @Nonnull Class<?> type) {
+        Set<String> properties = new LinkedHashSet<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (field.isAnnotationPresent(Indexed.class)) {
+                    properties.add(field.getName());
+                }
+            }
+        }
+
+        Object declared = dbFactory.getConfigurationFor(dataSourceName).get("indexes");
+        if (declared instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) declared).entrySet()) {
+                if (toClass(entry.getKey()) != type) {
+                    continue;
+                }
+                Object value = entry.getValue();
+                if (value instanceof Collection) {
+                    for (Object property : (Collection<?>) value) {
+                        properties.add(String.valueOf(property).trim());
+                    }
+                } else if (value != null && isNotBlank(String.valueOf(value))) {
+                    properties.add(String.valueOf(value).trim());
+                }
+            }
+        }
+        return properties;
+    }
+}
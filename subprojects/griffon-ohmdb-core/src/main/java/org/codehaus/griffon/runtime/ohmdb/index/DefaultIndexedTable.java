@@ -0,0 +1,134 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb.index;
+
+import com.ohmdb.api.Table;
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+import griffon.plugins.ohmdb.CachedTable;
+import griffon.plugins.ohmdb.IndexedTable;
+import org.codehaus.griffon.runtime.ohmdb.EntityIds;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Writes and fetches go through a {@code CachedTable}, so indexed tables and cached tables stay consistent with
+ * each other. Indexes are updated here only if the {@code CachedTable} does not update them itself.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DefaultIndexedTable<T> implements IndexedTable<T> {
+    private static final String ERROR_PROPERTY_BLANK = "Argument 'property' must not be blank";
+
+    private final CachedTable<T> table;
+    private final TableIndexes<T> indexes;
+    private final boolean maintainIndexes;
+
+    public DefaultIndexedTable(@Nonnull CachedTable<T> table, @Nonnull TableIndexes<T> indexes, boolean maintainIndexes) {
+        this.table = requireNonNull(table, "Argument 'table' must not be null");
+        this.indexes = requireNonNull(indexes, "Argument 'indexes' must not be null");
+        this.maintainIndexes = maintainIndexes;
+    }
+
+    @Nonnull
+    @Override
+    public Table<T> getTable() {
+        return table.getTable();
+    }
+
+    @Nonnull
+    @Override
+    public List<String> getIndexedProperties() {
+        return indexes.getProperties();
+    }
+
+    @Override
+    public long insert(@Nonnull T record) {
+        long id = table.insert(record);
+        if (maintainIndexes) {
+            indexes.put(id, record);
+        }
+        return id;
+    }
+
+    @Override
+    public void update(@Nonnull T record) {
+        table.update(record);
+        if (maintainIndexes) {
+            indexes.put(EntityIds.idOf(record), record);
+        }
+    }
+
+    @Override
+    public void delete(long id) {
+        table.delete(id);
+        if (maintainIndexes) {
+            indexes.remove(id);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public long[] findIds(@Nonnull String property, @Nonnull Object value) {
+        requireNonBlank(property, ERROR_PROPERTY_BLANK);
+        return indexes.index(property).find(value);
+    }
+
+    @Nonnull
+    @Override
+    public long[] findIds(@Nonnull String property, @Nullable Object from, boolean fromInclusive, @Nullable Object to, boolean toInclusive) {
+        requireNonBlank(property, ERROR_PROPERTY_BLANK);
+        return indexes.index(property).find(from, fromInclusive, to, toInclusive);
+    }
+
+    @Nonnull
+    @Override
+    public List<T> findBy(@Nonnull String property, @Nonnull Object value) {
+        return fetch(findIds(property, value));
+    }
+
+    @Nonnull
+    @Override
+    public List<T> findBy(@Nonnull String property, @Nullable Object from, boolean fromInclusive, @Nullable Object to, boolean toInclusive) {
+        return fetch(findIds(property, from, fromInclusive, to, toInclusive));
+    }
+
+    @Override
+    public void rebuild() {
+        indexes.rebuild();
+    }
+
+    @Nonnull
+    private List<T> fetch(@Nonnull long[] ids) {
+        List<T> records = new ArrayList<>(ids.length);
+        if (ids.length > 0) {
+            for (T record : table.getAll(ids)) {
+                // deleted behind the index' back
+                if (record != null) {
+                    records.add(record);
+                }
+            }
+        }
+        return records;
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb.index;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+import griffon.exceptions.GriffonException;
+import griffon.plugins.ohmdb.EntityAccessor;
+import org.codehaus.griffon.runtime.ohmdb.EntityAccessors;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+
+import static griffon.util.GriffonNameUtils.capitalize;
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Ordered index of a single property. Entries are kept as {@code (key, id)} pairs in a skip list, hence equality
+ * and range lookups cost O(log n) plus the size of the result. Lookups never block; writers are serialized per index.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+final class PropertyIndex {
+    private static final long[] NO_IDS = new long[0];
+    private static final Comparator<Entry> ORDER = (a, b) -> {
+        int c = compareKeys(a.key, b.key);
+        return c != 0 ? c : Long.compare(a.id, b.id);
+    };
+
+    private final String property;
+    private final Class<?> keyType;
+    private final Function<Object, Object> accessor;
+    private final ConcurrentSkipListSet<Entry> entries = new ConcurrentSkipListSet<>(ORDER);
+    private final ConcurrentMap<Long, Object> keys = new ConcurrentHashMap<>();
+
+    PropertyIndex(@Nonnull Class<?> type, @Nonnull String property) {
+        this.property = requireNonBlank(property, "Argument 'property' must not be blank");
+        requireNonNull(type, "Argument 'type' must not be null");
+        Class<?>[] resolvedType = new Class<?>[1];
+        this.accessor = resolveAccessor(type, property, resolvedType);
+        this.keyType = box(resolvedType[0]);
+        if (!Comparable.class.isAssignableFrom(keyType)) {
+            throw new IllegalArgumentException("Property " + type.getName() + "." + property + " is not Comparable");
+        }
+    }
+
+    @Nonnull
+    String getProperty() {
+        return property;
+    }
+
+    long size() {
+        return keys.size();
+    }
+
+    synchronized void put(long id, @Nonnull Object record) {
+        Object key = keyOf(record);
+        Object previous = key != null ? keys.put(id, key) : keys.remove(id);
+        if (previous != null) {
+            if (previous.equals(key)) {
+                return;
+            }
+            entries.remove(new Entry(previous, id));
+        }
+        if (key != null) {
+            entries.add(new Entry(key, id));
+        }
+    }
+
+    synchronized void remove(long id) {
+        Object previous = keys.remove(id);
+        if (previous != null) {
+            entries.remove(new Entry(previous, id));
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        keys.clear();
+    }
+
+    @Nonnull
+    long[] find(@Nonnull Object value) {
+        Object key = checkKey(requireNonNull(value, "Argument 'value' must not be null"));
+        return toIds(entries.subSet(new Entry(key, Long.MIN_VALUE), true, new Entry(key, Long.MAX_VALUE), true));
+    }
+
+    @Nonnull
+    long[] find(@Nullable Object from, boolean fromInclusive, @Nullable Object to, boolean toInclusive) {
+        // (key, MIN) sorts before every id of key, (key, MAX) after all of them
+        Entry lower = from != null ? new Entry(checkKey(from), fromInclusive ? Long.MIN_VALUE : Long.MAX_VALUE) : null;
+        Entry upper = to != null ? new Entry(checkKey(to), toInclusive ? Long.MAX_VALUE : Long.MIN_VALUE) : null;
+
+        NavigableSet<Entry> range;
+        if (lower != null && upper != null) {
+            if (ORDER.compare(lower, upper) >= 0) {
+                return NO_IDS;
+            }
+            range = entries.subSet(lower, fromInclusive, upper, toInclusive);
+        } else if (lower != null) {
+            range = entries.tailSet(lower, fromInclusive);
+        } else if (upper != null) {
+            range = entries.headSet(upper, toInclusive);
+        } else {
+            range = entries;
+        }
+        return toIds(range);
+    }
+
+    @Nullable
+    private Object keyOf(@Nonnull Object record) {
+        return accessor.apply(record);
+    }
+
+    @Nonnull
+    private Object checkKey(@Nonnull Object value) {
+        if (!keyType.isInstance(value)) {
+            throw new IllegalArgumentException("Index on '" + property + "' expects values of type " + keyType.getName() + " but got " + value.getClass().getName());
+        }
+        return value;
+    }
+
+    @Nonnull
+    private static long[] toIds(@Nonnull NavigableSet<Entry> range) {
+        long[] ids = new long[16];
+        int size = 0;
+        for (Entry entry : range) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size << 1);
+            }
+            ids[size++] = entry.id;
+        }
+        return size == 0 ? NO_IDS : Arrays.copyOf(ids, size);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compareKeys(@Nonnull Object a, @Nonnull Object b) {
+        return ((Comparable<Object>) a).compareTo(b);
+    }
+
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> resolveAccessor(@Nonnull Class<?> type, @Nonnull String property, @Nonnull Class<?>[] resolvedType) {
+        EntityAccessor<Object> generated = (EntityAccessor<Object>) EntityAccessors.find(type);
+        if (generated != null && generated.getter(property) != null) {
+            resolvedType[0] = generated.getPropertyType(property);
+            return generated.getter(property);
+        }
+
+        MethodHandle handle = resolveHandle(type, property, resolvedType);
+        return record -> {
+            try {
+                return handle.invoke(record);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new GriffonException("Could not read property '" + property + "' of " + record, t);
+            }
+        };
+    }
+
+    @Nonnull
+    private static MethodHandle resolveHandle(@Nonnull Class<?> type, @Nonnull String property, @Nonnull Class<?>[] resolvedType) {
+        MethodType asObject = MethodType.methodType(Object.class, Object.class);
+        for (String name : new String[]{"get" + capitalize(property), "is" + capitalize(property)}) {
+            try {
+                Method getter = type.getMethod(name);
+                if (getter.getReturnType() != void.class && !Modifier.isStatic(getter.getModifiers())) {
+                    resolvedType[0] = getter.getReturnType();
+                    return MethodHandles.publicLookup().unreflect(getter).asType(asObject);
+                }
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                // try the next candidate
+            }
+        }
+
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            try {
+                Field field = c.getDeclaredField(property);
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    field.setAccessible(true);
+                    resolvedType[0] = field.getType();
+                    return MethodHandles.lookup().unreflectGetter(field).asType(asObject);
+                }
+            } catch (NoSuchFieldException | IllegalAccessException e) {
+                // keep looking
+            }
+        }
+        throw new IllegalArgumentException("Type " + type.getName() + " does not define a property named '" + property + "'");
+    }
+
+    @Nonnull
+    private static Class<?> box(@Nonnull Class<?> type) {
+        if (!type.isPrimitive()) {
+            return type;
+        }
+        return MethodType.methodType(type).wrap().returnType();
+    }
+
+    private static final class Entry {
+        private final Object key;
+        private final long id;
+
+        private Entry(@Nonnull Object key, long id) {
+            this.key = key;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Entry entry = (Entry) o;
+            return id == entry.id && Objects.equals(key, entry.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * key.hashCode() + (int) (id ^ (id >>> 32));
+        }
+    }
+}
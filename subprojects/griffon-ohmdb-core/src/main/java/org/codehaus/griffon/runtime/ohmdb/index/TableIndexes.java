@@ -0,0 +1,154 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb.index;
+
+import com.ohmdb.api.Db;
+import com.ohmdb.api.Table;
+import griffon.annotations.core.Nonnull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Indexes of a single table in a dataSource. Like {@code TableCache} the indexes are bound to the {@code Db} they
+ * were last used with, they are rebuilt from the table contents whenever the dataSource is reopened.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public final class TableIndexes<T> {
+    private static final int CHUNK_SIZE = 1000;
+
+    private final String dataSourceName;
+    private final Class<T> type;
+    private final Map<String, PropertyIndex> indexes = new LinkedHashMap<>();
+    private volatile Db db;
+
+    TableIndexes(@Nonnull String dataSourceName, @Nonnull Class<T> type, @Nonnull Collection<String> properties) {
+        this.dataSourceName = requireNonBlank(dataSourceName, "Argument 'dataSourceName' must not be blank");
+        this.type = requireNonNull(type, "Argument 'type' must not be null");
+        for (String property : requireNonNull(properties, "Argument 'properties' must not be null")) {
+            indexes.put(property, new PropertyIndex(type, property));
+        }
+    }
+
+    @Nonnull
+    public String getDataSourceName() {
+        return dataSourceName;
+    }
+
+    @Nonnull
+    public Class<T> getType() {
+        return type;
+    }
+
+    @Nonnull
+    public List<String> getProperties() {
+        return Collections.unmodifiableList(new ArrayList<>(indexes.keySet()));
+    }
+
+    public long getSize(@Nonnull String property) {
+        return index(property).size();
+    }
+
+    boolean isEmpty() {
+        return indexes.isEmpty();
+    }
+
+    void bind(@Nonnull Db db) {
+        if (this.db != db) {
+            synchronized (this) {
+                if (this.db != db) {
+                    build(db);
+                    this.db = db;
+                }
+            }
+        }
+    }
+
+    void unbind(@Nonnull Db db) {
+        synchronized (this) {
+            if (this.db == db) {
+                clear();
+                this.db = null;
+            }
+        }
+    }
+
+    synchronized void rebuild() {
+        if (db != null) {
+            build(db);
+        }
+    }
+
+    void put(long id, @Nonnull T record) {
+        for (PropertyIndex index : indexes.values()) {
+            index.put(id, record);
+        }
+    }
+
+    void remove(long id) {
+        for (PropertyIndex index : indexes.values()) {
+            index.remove(id);
+        }
+    }
+
+    @Nonnull
+    PropertyIndex index(@Nonnull String property) {
+        PropertyIndex index = indexes.get(property);
+        if (index == null) {
+            throw new IllegalArgumentException("Type " + type.getName() + " in dataSource '" + dataSourceName + "' has no index on '" + property + "'");
+        }
+        return index;
+    }
+
+    private void build(@Nonnull Db db) {
+        clear();
+        if (indexes.isEmpty()) {
+            return;
+        }
+
+        Table<T> table = db.table(type);
+        long[] ids = table.ids();
+        for (int offset = 0; ids != null && offset < ids.length; offset += CHUNK_SIZE) {
+            long[] chunk = Arrays.copyOfRange(ids, offset, Math.min(ids.length, offset + CHUNK_SIZE));
+            List<T> records = table.getAll(chunk);
+            for (int i = 0; records != null && i < records.size(); i++) {
+                T record = records.get(i);
+                // deleted since the ids were read
+                if (record != null) {
+                    put(chunk[i], record);
+                }
+            }
+        }
+    }
+
+    private void clear() {
+        for (PropertyIndex index : indexes.values()) {
+            index.clear();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb.monitor;
+
+import griffon.annotations.core.Nonnull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+
+/**
+ * Callback counters and latency histogram for a single dataSource.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public final class DataSourceMetrics {
+    private final String dataSourceName;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder inFlight = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private long lastSampleCalls;
+    private long lastSampleTime = System.nanoTime();
+    private double lastRate;
+
+    public DataSourceMetrics(@Nonnull String dataSourceName) {
+        this.dataSourceName = requireNonBlank(dataSourceName, "Argument 'dataSourceName' must not be blank");
+    }
+
+    @Nonnull
+    public String getDataSourceName() {
+        return dataSourceName;
+    }
+
+    /**
+     * Marks the start of a callback.
+     *
+     * @return a timestamp to be handed back to {@link #callEnded(long, boolean)}
+     */
+    public long callStarted() {
+        inFlight.increment();
+        return System.nanoTime();
+    }
+
+    public void callEnded(long startTime, boolean success) {
+        latency.record(System.nanoTime() - startTime);
+        calls.increment();
+        if (!success) {
+            errors.increment();
+        }
+        inFlight.decrement();
+    }
+
+    public long getCallCount() {
+        return calls.sum();
+    }
+
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+    @Nonnull
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Returns the call rate observed since the previous invocation of this method.
+     */
+    public synchronized double sampleCallsPerSecond() {
+        long now = System.nanoTime();
+        long total = calls.sum();
+        long elapsed = now - lastSampleTime;
+        if (elapsed >= TimeUnit.MILLISECONDS.toNanos(100)) {
+            lastRate = (total - lastSampleCalls) * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+            lastSampleCalls = total;
+            lastSampleTime = now;
+        }
+        return lastRate;
+    }
+
+    public synchronized void reset() {
+        calls.reset();
+        errors.reset();
+        latency.reset();
+        lastSampleCalls = 0;
+        lastSampleTime = System.nanoTime();
+        lastRate = 0;
+    }
+}
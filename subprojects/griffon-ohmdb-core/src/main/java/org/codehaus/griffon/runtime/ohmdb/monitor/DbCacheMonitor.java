@@ -0,0 +1,74 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb.monitor;
+
+import griffon.annotations.core.Nonnull;
+import griffon.core.env.Metadata;
+import org.codehaus.griffon.runtime.monitor.AbstractMBeanRegistration;
+import org.codehaus.griffon.runtime.ohmdb.cache.DefaultDbCacheManager;
+import org.codehaus.griffon.runtime.ohmdb.cache.TableCache;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DbCacheMonitor extends AbstractMBeanRegistration implements DbCacheMonitorMXBean {
+    private final DefaultDbCacheManager cacheManager;
+
+    public DbCacheMonitor(@Nonnull Metadata metadata, @Nonnull DefaultDbCacheManager cacheManager) {
+        super(metadata);
+        this.cacheManager = requireNonNull(cacheManager, "Argument 'cacheManager' must not be null");
+    }
+
+    @Override
+    public ObjectName preRegister() throws MalformedObjectNameException {
+        return new ObjectName("griffon.plugins:type=Ohmdb,application=" + metadata.getApplicationName() + ",name=caches");
+    }
+
+    @Override
+    public DbCacheStats[] getCacheStats() {
+        List<DbCacheStats> stats = new ArrayList<>();
+        for (TableCache<?> cache : cacheManager.getCaches()) {
+            stats.add(new DbCacheStats(
+                cache.getDataSourceName(),
+                cache.getType().getName(),
+                cache.getSize(),
+                cache.getHits(),
+                cache.getMisses(),
+                cache.getEvictions()));
+        }
+        return stats.toArray(new DbCacheStats[0]);
+    }
+
+    @Override
+    public void invalidate(String dataSourceName) {
+        cacheManager.invalidate(dataSourceName);
+    }
+
+    @Override
+    public void invalidateAll() {
+        cacheManager.invalidateAll();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb.monitor;
+
+import griffon.annotations.core.Nonnull;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Point in time view of a table cache.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DbCacheStats {
+    private final String dataSourceName;
+    private final String type;
+    private final long size;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+
+    @ConstructorProperties({"dataSourceName", "type", "size", "hits", "misses", "evictions"})
+    public DbCacheStats(@Nonnull String dataSourceName, @Nonnull String type, long size, long hits, long misses, long evictions) {
+        this.dataSourceName = dataSourceName;
+        this.type = type;
+        this.size = size;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+    }
+
+    @Nonnull
+    public String getDataSourceName() {
+        return dataSourceName;
+    }
+
+    @Nonnull
+    public String getType() {
+        return type;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0d : (double) hits / requests;
+    }
+}
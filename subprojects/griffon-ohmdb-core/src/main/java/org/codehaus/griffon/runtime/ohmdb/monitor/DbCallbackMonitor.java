@@ -0,0 +1,83 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb.monitor;
+
+import griffon.annotations.core.Nonnull;
+import griffon.core.env.Metadata;
+import org.codehaus.griffon.runtime.monitor.AbstractMBeanRegistration;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DbCallbackMonitor extends AbstractMBeanRegistration implements DbCallbackMonitorMXBean {
+    private final DbMetrics metrics;
+
+    public DbCallbackMonitor(@Nonnull Metadata metadata, @Nonnull DbMetrics metrics) {
+        super(metadata);
+        this.metrics = requireNonNull(metrics, "Argument 'metrics' must not be null");
+    }
+
+    @Override
+    public ObjectName preRegister() throws MalformedObjectNameException {
+        return new ObjectName("griffon.plugins:type=Ohmdb,application=" + metadata.getApplicationName() + ",name=callbacks");
+    }
+
+    @Override
+    public DbCallbackStats[] getCallbackStats() {
+        List<DbCallbackStats> stats = new ArrayList<>();
+        for (DataSourceMetrics m : metrics.getAll()) {
+            stats.add(toStats(m));
+        }
+        return stats.toArray(new DbCallbackStats[0]);
+    }
+
+    @Override
+    public DbCallbackStats getCallbackStatsFor(String dataSourceName) {
+        return toStats(metrics.forDataSource(dataSourceName));
+    }
+
+    @Override
+    public void reset() {
+        for (DataSourceMetrics m : metrics.getAll()) {
+            m.reset();
+        }
+    }
+
+    @Nonnull
+    private static DbCallbackStats toStats(@Nonnull DataSourceMetrics m) {
+        LatencyHistogram latency = m.getLatency();
+        return new DbCallbackStats(
+            m.getDataSourceName(),
+            m.getCallCount(),
+            m.getErrorCount(),
+            m.getInFlight(),
+            m.sampleCallsPerSecond(),
+            TimeUnit.NANOSECONDS.toMicros(latency.getValueAtPercentile(50d)),
+            TimeUnit.NANOSECONDS.toMicros(latency.getValueAtPercentile(99d)),
+            TimeUnit.NANOSECONDS.toMicros(latency.getMax()));
+    }
+}
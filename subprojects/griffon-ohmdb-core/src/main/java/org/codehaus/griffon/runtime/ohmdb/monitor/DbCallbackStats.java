@@ -0,0 +1,84 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb.monitor;
+
+import griffon.annotations.core.Nonnull;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Point in time view of a {@code DataSourceMetrics}. Latencies are given in microseconds.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DbCallbackStats {
+    private final String dataSourceName;
+    private final long callCount;
+    private final long errorCount;
+    private final long inFlight;
+    private final double callsPerSecond;
+    private final long p50;
+    private final long p99;
+    private final long max;
+
+    @ConstructorProperties({"dataSourceName", "callCount", "errorCount", "inFlight", "callsPerSecond", "p50", "p99", "max"})
+    public DbCallbackStats(@Nonnull String dataSourceName, long callCount, long errorCount, long inFlight, double callsPerSecond, long p50, long p99, long max) {
+        this.dataSourceName = dataSourceName;
+        this.callCount = callCount;
+        this.errorCount = errorCount;
+        this.inFlight = inFlight;
+        this.callsPerSecond = callsPerSecond;
+        this.p50 = p50;
+        this.p99 = p99;
+        this.max = max;
+    }
+
+    @Nonnull
+    public String getDataSourceName() {
+        return dataSourceName;
+    }
+
+    public long getCallCount() {
+        return callCount;
+    }
+
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    public long getInFlight() {
+        return inFlight;
+    }
+
+    public double getCallsPerSecond() {
+        return callsPerSecond;
+    }
+
+    public long getP50() {
+        return p50;
+    }
+
+    public long getP99() {
+        return p99;
+    }
+
+    public long getMax() {
+        return max;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb.monitor;
+
+import griffon.annotations.core.Nonnull;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+
+/**
+ * Keeps a {@code DataSourceMetrics} per dataSource name.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DbMetrics {
+    private final ConcurrentMap<String, DataSourceMetrics> metrics = new ConcurrentHashMap<>();
+
+    @Nonnull
+    public DataSourceMetrics forDataSource(@Nonnull String dataSourceName) {
+        DataSourceMetrics m = metrics.get(dataSourceName);
+        if (m == null) {
+            requireNonBlank(dataSourceName, "Argument 'dataSourceName' must not be blank");
+            m = metrics.computeIfAbsent(dataSourceName, DataSourceMetrics::new);
+        }
+        return m;
+    }
+
+    @Nonnull
+    public Collection<DataSourceMetrics> getAll() {
+        return Collections.unmodifiableCollection(metrics.values());
+    }
+}
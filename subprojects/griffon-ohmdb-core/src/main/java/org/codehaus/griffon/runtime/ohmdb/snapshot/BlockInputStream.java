@@ -0,0 +1,165 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb.snapshot;
+
+import griffon.annotations.core.Nonnull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static java.util.Objects.requireNonNull;
+import static org.codehaus.griffon.runtime.ohmdb.snapshot.SnapshotFormat.BLOCK_HEADER_SIZE;
+import static org.codehaus.griffon.runtime.ohmdb.snapshot.SnapshotFormat.BLOCK_SIZE;
+import static org.codehaus.griffon.runtime.ohmdb.snapshot.SnapshotFormat.HEADER_SIZE;
+import static org.codehaus.griffon.runtime.ohmdb.snapshot.SnapshotFormat.MAGIC;
+import static org.codehaus.griffon.runtime.ohmdb.snapshot.SnapshotFormat.VERSION;
+
+/**
+ * Reads the blocks written by {@link BlockOutputStream}, verifying their checksums.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+final class BlockInputStream extends InputStream {
+    private final FileChannel channel;
+    private final Inflater inflater;
+    private final CRC32 crc = new CRC32();
+    private final byte[] block = new byte[BLOCK_SIZE];
+    private final ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+    private final ByteBuffer stored = ByteBuffer.allocate(BLOCK_SIZE);
+    private int position;
+    private int limit;
+    private boolean eof;
+
+    BlockInputStream(@Nonnull FileChannel channel) throws IOException {
+        this.channel = requireNonNull(channel, "Argument 'channel' must not be null");
+
+        ByteBuffer fileHeader = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(fileHeader);
+        fileHeader.flip();
+        if (fileHeader.getInt() != MAGIC) {
+            throw new IOException("Not an Ohmdb snapshot");
+        }
+        short version = fileHeader.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        SnapshotFormat.Compression compression = SnapshotFormat.Compression.forId(fileHeader.get());
+        this.inflater = compression == SnapshotFormat.Compression.DEFLATE ? new Inflater(true) : null;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position == limit && !readBlock()) {
+            return -1;
+        }
+        return block[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(@Nonnull byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position == limit && !readBlock()) {
+            return -1;
+        }
+        int n = Math.min(len, limit - position);
+        System.arraycopy(block, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (inflater != null) {
+            inflater.end();
+        }
+    }
+
+    private boolean readBlock() throws IOException {
+        if (eof) {
+            return false;
+        }
+        header.clear();
+        readFully(header);
+        header.flip();
+        int storedLength = header.getInt();
+        int rawLength = header.getInt();
+        int checksum = header.getInt();
+        if (storedLength == 0 && rawLength == 0) {
+            eof = true;
+            return false;
+        }
+        if (storedLength < 0 || rawLength <= 0 || rawLength > block.length || storedLength > rawLength) {
+            throw new IOException("Corrupt snapshot block");
+        }
+
+        if (storedLength == rawLength) {
+            ByteBuffer target = ByteBuffer.wrap(block, 0, rawLength);
+            readFully(target);
+        } else {
+            if (inflater == null) {
+                throw new IOException("Corrupt snapshot block");
+            }
+            stored.clear();
+            stored.limit(storedLength);
+            readFully(stored);
+            inflater.reset();
+            inflater.setInput(stored.array(), 0, storedLength);
+            try {
+                int n = 0;
+                while (n < rawLength && !inflater.finished()) {
+                    int inflated = inflater.inflate(block, n, rawLength - n);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    n += inflated;
+                }
+                if (n != rawLength) {
+                    throw new IOException("Corrupt snapshot block");
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt snapshot block", e);
+            }
+        }
+
+        crc.reset();
+        crc.update(block, 0, rawLength);
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("Snapshot block checksum mismatch");
+        }
+        position = 0;
+        limit = rawLength;
+        return true;
+    }
+
+    private void readFully(@Nonnull ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Unexpected end of snapshot");
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb.snapshot;
+
+import griffon.annotations.core.Nonnull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static java.util.Objects.requireNonNull;
+import static org.codehaus.griffon.runtime.ohmdb.snapshot.SnapshotFormat.BLOCK_HEADER_SIZE;
+import static org.codehaus.griffon.runtime.ohmdb.snapshot.SnapshotFormat.BLOCK_SIZE;
+import static org.codehaus.griffon.runtime.ohmdb.snapshot.SnapshotFormat.HEADER_SIZE;
+import static org.codehaus.griffon.runtime.ohmdb.snapshot.SnapshotFormat.MAGIC;
+import static org.codehaus.griffon.runtime.ohmdb.snapshot.SnapshotFormat.VERSION;
+
+/**
+ * Splits a byte stream into checksummed, optionally compressed blocks written to a {@code FileChannel}.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+final class BlockOutputStream extends OutputStream {
+    private final FileChannel channel;
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    private final byte[] block = new byte[BLOCK_SIZE];
+    private final byte[] compressed;
+    private final ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+    private int count;
+    private boolean closed;
+
+    BlockOutputStream(@Nonnull FileChannel channel, @Nonnull SnapshotFormat.Compression compression) throws IOException {
+        this.channel = requireNonNull(channel, "Argument 'channel' must not be null");
+        requireNonNull(compression, "Argument 'compression' must not be null");
+        this.deflater = compression == SnapshotFormat.Compression.DEFLATE ? new Deflater(Deflater.BEST_SPEED, true) : null;
+        this.compressed = deflater != null ? new byte[BLOCK_SIZE] : null;
+
+        ByteBuffer fileHeader = ByteBuffer.allocate(HEADER_SIZE);
+        fileHeader.putInt(MAGIC).putShort(VERSION).put((byte) compression.getId());
+        fileHeader.flip();
+        writeFully(fileHeader);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == block.length) {
+            writeBlock();
+        }
+        block[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(@Nonnull byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == block.length) {
+                writeBlock();
+            }
+            int n = Math.min(len, block.length - count);
+            System.arraycopy(b, off, block, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writeBlock();
+            header.clear();
+            header.putInt(0).putInt(0).putInt(0);
+            header.flip();
+            writeFully(header);
+            channel.force(true);
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if (count == 0) {
+            return;
+        }
+        crc.reset();
+        crc.update(block, 0, count);
+
+        byte[] data = block;
+        int stored = count;
+        if (deflater != null) {
+            deflater.reset();
+            deflater.setInput(block, 0, count);
+            deflater.finish();
+            int n = 0;
+            while (!deflater.finished() && n < compressed.length) {
+                n += deflater.deflate(compressed, n, compressed.length - n);
+            }
+            // keep incompressible blocks as they are
+            if (deflater.finished() && n < count) {
+                data = compressed;
+                stored = n;
+            }
+        }
+
+        header.clear();
+        header.putInt(stored).putInt(count).putInt((int) crc.getValue());
+        header.flip();
+        writeFully(header);
+        writeFully(ByteBuffer.wrap(data, 0, stored));
+        count = 0;
+    }
+
+    private void writeFully(@Nonnull ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb.snapshot;
+
+import com.ohmdb.api.Db;
+import com.ohmdb.api.Table;
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+import griffon.exceptions.GriffonException;
+import griffon.plugins.ohmdb.DbCacheManager;
+import griffon.plugins.ohmdb.DbCallback;
+import griffon.plugins.ohmdb.DbChangeCapture;
+import griffon.plugins.ohmdb.DbFactory;
+import griffon.plugins.ohmdb.DbHandler;
+import griffon.plugins.ohmdb.DbIndexManager;
+import griffon.plugins.ohmdb.DbSnapshotManager;
+import org.codehaus.griffon.runtime.ohmdb.DefaultDbBatchWriter;
+import org.codehaus.griffon.runtime.ohmdb.DefaultDbHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static griffon.util.ConfigUtils.getConfigValueAsInt;
+import static griffon.util.ConfigUtils.getConfigValueAsString;
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+import static org.codehaus.griffon.runtime.ohmdb.DbSupport.deleteQuietly;
+import static org.codehaus.griffon.runtime.ohmdb.DbSupport.loadClass;
+import static org.codehaus.griffon.runtime.ohmdb.DbSupport.move;
+
+/**
+ * Takes snapshots by reading the ids of every table under the read lock of the dataSource, then reading their records
+ * one chunk at a time with {@code withOhmdbRead}; writers only wait while the ids are read. Restores go through a
+ * {@code DbBatchWriter}.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DefaultDbSnapshotManager implements DbSnapshotManager {
+    private static final Logger LOG = LoggerFactory.getLogger(DefaultDbSnapshotManager.class);
+    private static final String ERROR_DATASOURCE_NAME_BLANK = "Argument 'dataSourceName' must not be blank";
+    private static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    private final DbHandler dbHandler;
+    private final DbFactory dbFactory;
+    private final DbChangeCapture dbChangeCapture;
+    private final DbCacheManager dbCacheManager;
+    private final DbIndexManager dbIndexManager;
+
+    @Inject
+    public DefaultDbSnapshotManager(@Nonnull DbHandler dbHandler, @Nonnull DbFactory dbFactory, @Nonnull DbChangeCapture dbChangeCapture, @Nonnull DbCacheManager dbCacheManager, @Nonnull DbIndexManager dbIndexManager) {
+        this.dbHandler = requireNonNull(dbHandler, "Argument 'dbHandler' must not be null");
+        this.dbFactory = requireNonNull(dbFactory, "Argument 'dbFactory' must not be null");
+        this.dbChangeCapture = requireNonNull(dbChangeCapture, "Argument 'dbChangeCapture' must not be null");
+        this.dbCacheManager = requireNonNull(dbCacheManager, "Argument 'dbCacheManager' must not be null");
+        this.dbIndexManager = requireNonNull(dbIndexManager, "Argument 'dbIndexManager' must not be null");
+    }
+
+    @Override
+    public long snapshot(@Nonnull String dataSourceName, @Nonnull Path target, @Nonnull Class<?>... types) {
+        requireNonBlank(dataSourceName, ERROR_DATASOURCE_NAME_BLANK);
+        requireNonNull(target, "Argument 'target' must not be null");
+        requireNonNull(types, "Argument 'types' must not be null");
+        Map<String, Object> config = configurationFor(dataSourceName);
+        SnapshotFormat.Compression compression = SnapshotFormat.Compression.forName(getConfigValueAsString(config, "snapshot_compression", "deflate"));
+        int chunkSize = Math.max(1, getConfigValueAsInt(config, "snapshot_chunk_size", DEFAULT_CHUNK_SIZE));
+
+        DbCallback<long[][]> callback = (String name, Db db) -> {
+            long[][] ids = new long[types.length][];
+            for (int i = 0; i < types.length; i++) {
+                ids[i] = db.table(types[i]).ids();
+            }
+            return ids;
+        };
+        // writes wait for the ids of all tables to be read, not for the records to be written out
+        long[][] ids = dbHandler instanceof DefaultDbHandler ? ((DefaultDbHandler) dbHandler).withReadLock(dataSourceName, callback) : dbHandler.withOhmdb(dataSourceName, callback);
+        long count = writeSnapshot(target, compression, new DbRecordSource(dbHandler, dataSourceName, types, ids, chunkSize), types);
+        LOG.debug("Wrote {} records of dataSource '{}' to {}", count, dataSourceName, target);
+        return count;
+    }
+
+    @Override
+    public long restore(@Nonnull String dataSourceName, @Nonnull Path source) {
+        requireNonBlank(dataSourceName, ERROR_DATASOURCE_NAME_BLANK);
+        requireNonNull(source, "Argument 'source' must not be null");
+        Map<String, Object> config = configurationFor(dataSourceName);
+
+        long count = 0;
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(new BlockInputStream(channel), SnapshotFormat.BLOCK_SIZE))) {
+            byte tag = in.readByte();
+            while (tag == SnapshotFormat.TAG_TABLE) {
+                Class<?> type = loadType(in.readUTF());
+                AtomicLong restored = new AtomicLong();
+                tag = restoreTable(dataSourceName, RecordCodec.of(type), in, config, restored);
+                count += restored.get();
+            }
+            if (tag != SnapshotFormat.TAG_END) {
+                throw new IOException("Corrupt snapshot: unexpected entry " + tag);
+            }
+        } catch (IOException e) {
+            throw new GriffonException("Could not restore dataSource '" + dataSourceName + "' from " + source, e);
+        }
+
+        LOG.debug("Restored {} records into dataSource '{}' from {}", count, dataSourceName, source);
+        return count;
+    }
+
+    /**
+     * Inserts every record found in {@code source} into a {@code Db} that is not accessed through
+     * {@code DbHandler}; callers must ensure no one else uses it meanwhile.
+     *
+     * @return the number of records inserted
+     */
+    public long load(@Nonnull Path source, @Nonnull Db target) {
+        requireNonNull(source, "Argument 'source' must not be null");
+        requireNonNull(target, "Argument 'target' must not be null");
+
+        long count = 0;
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(new BlockInputStream(channel), SnapshotFormat.BLOCK_SIZE))) {
+            byte tag = in.readByte();
+            while (tag == SnapshotFormat.TAG_TABLE) {
+                Class<?> type = loadType(in.readUTF());
+                AtomicLong inserted = new AtomicLong();
+                tag = insertAll(RecordCodec.of(type), in, target, inserted);
+                count += inserted.get();
+            }
+            if (tag != SnapshotFormat.TAG_END) {
+                throw new IOException("Corrupt snapshot: unexpected entry " + tag);
+            }
+        } catch (IOException e) {
+            throw new GriffonException("Could not copy records from " + source, e);
+        }
+        return count;
+    }
+
+    private long writeSnapshot(@Nonnull Path target, @Nonnull SnapshotFormat.Compression compression, @Nonnull DbRecordSource source, @Nonnull Class<?>... types) {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        long count = 0;
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                 DataOutputStream out = new DataOutputStream(new BlockOutputStream(channel, compression))) {
+                for (Class<?> type : types) {
+                    count += writeTable(type, out, source);
+                }
+                out.writeByte(SnapshotFormat.TAG_END);
+            }
+            move(tmp, target);
+        } catch (IOException e) {
+            deleteQuietly(tmp);
+            throw new GriffonException("Could not write snapshot to " + target, e);
+        } catch (RuntimeException | Error e) {
+            deleteQuietly(tmp);
+            throw e;
+        }
+        return count;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> long writeTable(@Nonnull Class<T> type, @Nonnull DataOutputStream out, @Nonnull DbRecordSource source) throws IOException {
+        RecordCodec<T> codec = RecordCodec.of(type);
+        out.writeByte(SnapshotFormat.TAG_TABLE);
+        codec.writeSchema(out);
+
+        long[] ids = source.ids(type);
+        int chunkSize = source.getChunkSize();
+        long count = 0;
+        for (int offset = 0; ids != null && offset < ids.length; offset += chunkSize) {
+            long[] chunk = Arrays.copyOfRange(ids, offset, Math.min(ids.length, offset + chunkSize));
+            List<?> records = source.getAll(type, chunk);
+            if (records == null) {
+                continue;
+            }
+            for (Object record : records) {
+                // deleted since the ids were read
+                if (record != null) {
+                    out.writeByte(SnapshotFormat.TAG_RECORD);
+                    codec.write(out, (T) record);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private <T> byte insertAll(@Nonnull RecordCodec<T> codec, @Nonnull DataInputStream in, @Nonnull Db target, @Nonnull AtomicLong inserted) throws IOException {
+        RecordCodec.Reader<T> reader = codec.readSchema(in);
+        Table<T> table = target.table(codec.getType());
+        byte tag;
+        for (tag = in.readByte(); tag == SnapshotFormat.TAG_RECORD; tag = in.readByte()) {
+            table.insert(reader.read(in));
+            inserted.incrementAndGet();
+        }
+        return tag;
+    }
+
+    /**
+     * Restores the records of a single table.
+     *
+     * @return the tag of the entry that follows the records of the table
+     */
+    private <T> byte restoreTable(@Nonnull String dataSourceName, @Nonnull final RecordCodec<T> codec, @Nonnull DataInputStream in, @Nonnull Map<String, Object> config, @Nonnull AtomicLong restored) throws IOException {
+        RecordCodec.Reader<T> reader = codec.readSchema(in);
+        Integer size = dbHandler.withOhmdb(dataSourceName, (String name, Db db) -> {
+            Table<T> table = db.table(codec.getType());
+            return table.size();
+        });
+        if (size != null && size > 0) {
+            throw new IllegalStateException("Table " + codec.getType().getName() + " in dataSource '" + dataSourceName + "' is not empty");
+        }
+
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        DefaultDbBatchWriter<T> writer = DefaultDbBatchWriter.create(dbHandler, dataSourceName, codec.getType(), config, dbChangeCapture, dbCacheManager, dbIndexManager);
+        byte tag;
+        try {
+            for (tag = in.readByte(); tag == SnapshotFormat.TAG_RECORD && failure.get() == null; tag = in.readByte()) {
+                writer.insert(reader.read(in)).whenComplete((id, t) -> {
+                    if (t != null) {
+                        failure.compareAndSet(null, t);
+                    } else {
+                        restored.incrementAndGet();
+                    }
+                });
+            }
+            writer.flush().join();
+        } catch (CompletionException e) {
+            failure.compareAndSet(null, e.getCause());
+            tag = SnapshotFormat.TAG_END;
+        } finally {
+            writer.close();
+        }
+
+        Throwable t = failure.get();
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        } else if (t != null) {
+            throw new GriffonException("Could not restore " + codec.getType().getName() + " into dataSource '" + dataSourceName + "'", t);
+        }
+        return tag;
+    }
+
+    /**
+     * Reads the records of ids taken beforehand, a chunk of ids per read callback.
+     */
+    private static final class DbRecordSource {
+        private final DbHandler dbHandler;
+        private final String dataSourceName;
+        private final Map<Class<?>, long[]> ids = new HashMap<>();
+        private final int chunkSize;
+
+        private DbRecordSource(@Nonnull DbHandler dbHandler, @Nonnull String dataSourceName, @Nonnull Class<?>[] types, @Nonnull long[][] ids, int chunkSize) {
+            this.dbHandler = dbHandler;
+            this.dataSourceName = dataSourceName;
+            for (int i = 0; i < types.length; i++) {
+                this.ids.put(types[i], ids[i]);
+            }
+            this.chunkSize = chunkSize;
+        }
+
+        @Nullable
+        private long[] ids(@Nonnull Class<?> type) {
+            return ids.get(type);
+        }
+
+        @Nullable
+        private List<?> getAll(@Nonnull Class<?> type, @Nonnull long[] ids) {
+            return dbHandler.withOhmdbRead(dataSourceName, (String name, Db db) -> db.table(type).getAll(ids));
+        }
+
+        private int getChunkSize() {
+            return chunkSize;
+        }
+    }
+
+    @Nonnull
+    private static Class<?> loadType(@Nonnull String className) throws IOException {
+        try {
+            return loadClass(className);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Snapshot refers to unknown type " + className, e);
+        }
+    }
+
+    @Nonnull
+    private Map<String, Object> configurationFor(@Nonnull String dataSourceName) {
+        Map<String, Object> config = dbFactory.getConfigurationFor(dataSourceName);
+        if (config.isEmpty()) {
+            throw new IllegalArgumentException("DataSource '" + dataSourceName + "' is not configured.");
+        }
+        return config;
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb.snapshot;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * Binary encodings of the property types supported in snapshots. Integral values use zig-zag varints.
+ * Codes are part of the snapshot format and must never change.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+enum FieldCodec {
+    BOOLEAN(1) {
+        @Override
+        void write(@Nonnull DataOutput out, @Nonnull Object value) throws IOException {
+            out.writeBoolean((Boolean) value);
+        }
+
+        @Nonnull
+        @Override
+        Object read(@Nonnull DataInput in, @Nullable Class<?> type) throws IOException {
+            return in.readBoolean();
+        }
+    },
+    BYTE(2) {
+        @Override
+        void write(@Nonnull DataOutput out, @Nonnull Object value) throws IOException {
+            out.writeByte((Byte) value);
+        }
+
+        @Nonnull
+        @Override
+        Object read(@Nonnull DataInput in, @Nullable Class<?> type) throws IOException {
+            return in.readByte();
+        }
+    },
+    SHORT(3) {
+        @Override
+        void write(@Nonnull DataOutput out, @Nonnull Object value) throws IOException {
+            writeVarLong(out, (Short) value);
+        }
+
+        @Nonnull
+        @Override
+        Object read(@Nonnull DataInput in, @Nullable Class<?> type) throws IOException {
+            return (short) readVarLong(in);
+        }
+    },
+    CHAR(4) {
+        @Override
+        void write(@Nonnull DataOutput out, @Nonnull Object value) throws IOException {
+            out.writeChar((Character) value);
+        }
+
+        @Nonnull
+        @Override
+        Object read(@Nonnull DataInput in, @Nullable Class<?> type) throws IOException {
+            return in.readChar();
+        }
+    },
+    INT(5) {
+        @Override
+        void write(@Nonnull DataOutput out, @Nonnull Object value) throws IOException {
+            writeVarLong(out, (Integer) value);
+        }
+
+        @Nonnull
+        @Override
+        Object read(@Nonnull DataInput in, @Nullable Class<?> type) throws IOException {
+            return (int) readVarLong(in);
+        }
+    },
+    LONG(6) {
+        @Override
+        void write(@Nonnull DataOutput out, @Nonnull Object value) throws IOException {
+            writeVarLong(out, (Long) value);
+        }
+
+        @Nonnull
+        @Override
+        Object read(@Nonnull DataInput in, @Nullable Class<?> type) throws IOException {
+            return readVarLong(in);
+        }
+    },
+    FLOAT(7) {
+        @Override
+        void write(@Nonnull DataOutput out, @Nonnull Object value) throws IOException {
+            out.writeFloat((Float) value);
+        }
+
+        @Nonnull
+        @Override
+        Object read(@Nonnull DataInput in, @Nullable Class<?> type) throws IOException {
+            return in.readFloat();
+        }
+    },
+    DOUBLE(8) {
+        @Override
+        void write(@Nonnull DataOutput out, @Nonnull Object value) throws IOException {
+            out.writeDouble((Double) value);
+        }
+
+        @Nonnull
+        @Override
+        Object read(@Nonnull DataInput in, @Nullable Class<?> type) throws IOException {
+            return in.readDouble();
+        }
+    },
+    STRING(9) {
+        @Override
+        void write(@Nonnull DataOutput out, @Nonnull Object value) throws IOException {
+            writeBytes(out, ((String) value).getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Nonnull
+        @Override
+        Object read(@Nonnull DataInput in, @Nullable Class<?> type) throws IOException {
+            return new String(readBytes(in), StandardCharsets.UTF_8);
+        }
+    },
+    BIG_DECIMAL(10) {
+        @Override
+        void write(@Nonnull DataOutput out, @Nonnull Object value) throws IOException {
+            BigDecimal decimal = (BigDecimal) value;
+            writeVarLong(out, decimal.scale());
+            writeBytes(out, decimal.unscaledValue().toByteArray());
+        }
+
+        @Nonnull
+        @Override
+        Object read(@Nonnull DataInput in, @Nullable Class<?> type) throws IOException {
+            int scale = (int) readVarLong(in);
+            return new BigDecimal(new BigInteger(readBytes(in)), scale);
+        }
+    },
+    BIG_INTEGER(11) {
+        @Override
+        void write(@Nonnull DataOutput out, @Nonnull Object value) throws IOException {
+            writeBytes(out, ((BigInteger) value).toByteArray());
+        }
+
+        @Nonnull
+        @Override
+        Object read(@Nonnull DataInput in, @Nullable Class<?> type) throws IOException {
+            return new BigInteger(readBytes(in));
+        }
+    },
+    DATE(12) {
+        @Override
+        void write(@Nonnull DataOutput out, @Nonnull Object value) throws IOException {
+            writeVarLong(out, ((Date) value).getTime());
+        }
+
+        @Nonnull
+        @Override
+        Object read(@Nonnull DataInput in, @Nullable Class<?> type) throws IOException {
+            return new Date(readVarLong(in));
+        }
+    },
+    BYTES(13) {
+        @Override
+        void write(@Nonnull DataOutput out, @Nonnull Object value) throws IOException {
+            writeBytes(out, (byte[]) value);
+        }
+
+        @Nonnull
+        @Override
+        Object read(@Nonnull DataInput in, @Nullable Class<?> type) throws IOException {
+            return readBytes(in);
+        }
+    },
+    ENUM(14) {
+        @Override
+        void write(@Nonnull DataOutput out, @Nonnull Object value) throws IOException {
+            STRING.write(out, ((Enum<?>) value).name());
+        }
+
+        @Nonnull
+        @Override
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Object read(@Nonnull DataInput in, @Nullable Class<?> type) throws IOException {
+            String name = (String) STRING.read(in, String.class);
+            return type != null ? Enum.valueOf((Class<? extends Enum>) type, name) : name;
+        }
+    };
+
+    private final int code;
+
+    FieldCodec(int code) {
+        this.code = code;
+    }
+
+    int getCode() {
+        return code;
+    }
+
+    abstract void write(@Nonnull DataOutput out, @Nonnull Object value) throws IOException;
+
+    /**
+     * @param type the type of the target property, or {@code null} if the value will be discarded
+     */
+    @Nonnull
+    abstract Object read(@Nonnull DataInput in, @Nullable Class<?> type) throws IOException;
+
+    @Nonnull
+    static FieldCodec forCode(int code) throws IOException {
+        for (FieldCodec codec : values()) {
+            if (codec.code == code) {
+                return codec;
+            }
+        }
+        throw new IOException("Unknown field type " + code);
+    }
+
+    @Nullable
+    static FieldCodec forType(@Nonnull Class<?> type) {
+        if (type == boolean.class || type == Boolean.class) {
+            return BOOLEAN;
+        } else if (type == byte.class || type == Byte.class) {
+            return BYTE;
+        } else if (type == short.class || type == Short.class) {
+            return SHORT;
+        } else if (type == char.class || type == Character.class) {
+            return CHAR;
+        } else if (type == int.class || type == Integer.class) {
+            return INT;
+        } else if (type == long.class || type == Long.class) {
+            return LONG;
+        } else if (type == float.class || type == Float.class) {
+            return FLOAT;
+        } else if (type == double.class || type == Double.class) {
+            return DOUBLE;
+        } else if (type == String.class) {
+            return STRING;
+        } else if (type == BigDecimal.class) {
+            return BIG_DECIMAL;
+        } else if (type == BigInteger.class) {
+            return BIG_INTEGER;
+        } else if (type == Date.class) {
+            return DATE;
+        } else if (type == byte[].class) {
+            return BYTES;
+        } else if (type.isEnum()) {
+            return ENUM;
+        }
+        return null;
+    }
+
+    static void writeVarLong(@Nonnull DataOutput out, long value) throws IOException {
+        long v = (value << 1) ^ (value >> 63);
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    static long readVarLong(@Nonnull DataInput in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (v >>> 1) ^ -(v & 1);
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static void writeBytes(@Nonnull DataOutput out, @Nonnull byte[] bytes) throws IOException {
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    @Nonnull
+    private static byte[] readBytes(@Nonnull DataInput in) throws IOException {
+        long length = readVarLong(in);
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new IOException("Malformed length " + length);
+        }
+        byte[] bytes = new byte[(int) length];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb.snapshot;
+
+import griffon.annotations.core.Nonnull;
+import griffon.exceptions.GriffonException;
+import org.codehaus.griffon.runtime.ohmdb.EntityIds;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes and reads the fields of a record type. The {@code id} is written first, followed by every other
+ * non-static, non-final, non-transient field in name order. Field handles are resolved once per type.
+ * <p>
+ * Snapshots carry their own schema, so a snapshot can be read after fields were added or removed: unknown
+ * fields are skipped and missing ones keep their default value.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+final class RecordCodec<T> {
+    private static final Logger LOG = LoggerFactory.getLogger(RecordCodec.class);
+
+    private static final ClassValue<RecordCodec<?>> CODECS = new ClassValue<RecordCodec<?>>() {
+        @Override
+        protected RecordCodec<?> computeValue(Class<?> type) {
+            return new RecordCodec<>(type);
+        }
+    };
+
+    private final Class<T> type;
+    private final MethodHandle constructor;
+    private final Map<String, FieldHandle> fields = new LinkedHashMap<>();
+
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    static <T> RecordCodec<T> of(@Nonnull Class<T> type) {
+        return (RecordCodec<T>) CODECS.get(type);
+    }
+
+    private RecordCodec(@Nonnull Class<T> type) {
+        this.type = type;
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            this.constructor = lookup.findConstructor(type, MethodType.methodType(void.class))
+                .asType(MethodType.methodType(Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("Type " + type.getName() + " must define a public no-args constructor", e);
+        }
+
+        List<Field> declared = new ArrayList<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (!Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic() && !"id".equals(field.getName())) {
+                    declared.add(field);
+                }
+            }
+        }
+        declared.sort(Comparator.comparing(Field::getName));
+
+        for (Field field : declared) {
+            if (fields.containsKey(field.getName())) {
+                continue;
+            }
+            FieldCodec codec = FieldCodec.forType(field.getType());
+            if (codec == null) {
+                throw new IllegalArgumentException("Field " + type.getName() + "." + field.getName() + " of type " + field.getType().getName() + " cannot be written to a snapshot");
+            }
+            try {
+                field.setAccessible(true);
+                fields.put(field.getName(), new FieldHandle(field, codec,
+                    lookup.unreflectGetter(field).asType(MethodType.methodType(Object.class, Object.class)),
+                    lookup.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, Object.class))));
+            } catch (IllegalAccessException | RuntimeException e) {
+                throw new IllegalArgumentException("Field " + type.getName() + "." + field.getName() + " is not accessible", e);
+            }
+        }
+    }
+
+    @Nonnull
+    Class<T> getType() {
+        return type;
+    }
+
+    void writeSchema(@Nonnull DataOutput out) throws IOException {
+        out.writeUTF(type.getName());
+        FieldCodec.writeVarLong(out, fields.size());
+        for (FieldHandle field : fields.values()) {
+            out.writeUTF(field.name);
+            out.writeByte(field.codec.getCode());
+            out.writeBoolean(field.nullable);
+        }
+    }
+
+    void write(@Nonnull DataOutput out, @Nonnull T record) throws IOException {
+        FieldCodec.writeVarLong(out, EntityIds.idOf(record));
+        for (FieldHandle field : fields.values()) {
+            Object value;
+            try {
+                value = field.getter.invokeExact((Object) record);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new GriffonException("Could not read field '" + field.name + "' of " + record, t);
+            }
+            if (field.nullable) {
+                out.writeBoolean(value != null);
+                if (value == null) {
+                    continue;
+                }
+            }
+            field.codec.write(out, value);
+        }
+    }
+
+    /**
+     * Reads the schema that follows the type name in a snapshot and returns a reader for its records.
+     */
+    @Nonnull
+    Reader<T> readSchema(@Nonnull DataInput in) throws IOException {
+        int count = (int) FieldCodec.readVarLong(in);
+        List<SnapshotField> snapshotFields = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = in.readUTF();
+            FieldCodec codec = FieldCodec.forCode(in.readUnsignedByte());
+            boolean nullable = in.readBoolean();
+
+            FieldHandle target = fields.get(name);
+            if (target != null && target.codec != codec) {
+                LOG.warn("Field {}.{} changed type since the snapshot was taken, its values will be skipped", type.getName(), name);
+                target = null;
+            }
+            snapshotFields.add(new SnapshotField(codec, nullable, target));
+        }
+        return new Reader<>(this, snapshotFields);
+    }
+
+    static final class Reader<T> {
+        private final RecordCodec<T> codec;
+        private final List<SnapshotField> fields;
+
+        private Reader(@Nonnull RecordCodec<T> codec, @Nonnull List<SnapshotField> fields) {
+            this.codec = codec;
+            this.fields = fields;
+        }
+
+        /**
+         * Reads the next record. The id stored in the snapshot is discarded, a new one is assigned on insert.
+         */
+        @Nonnull
+        T read(@Nonnull DataInput in) throws IOException {
+            FieldCodec.readVarLong(in);
+            Object bean;
+            try {
+                bean = codec.constructor.invokeExact();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new GriffonException("Could not create an instance of " + codec.type.getName(), t);
+            }
+
+            for (SnapshotField field : fields) {
+                if (field.nullable && !in.readBoolean()) {
+                    continue;
+                }
+                Object value = field.codec.read(in, field.target != null ? field.target.type : null);
+                if (field.target != null) {
+                    field.target.set(bean, value);
+                }
+            }
+            return codec.type.cast(bean);
+        }
+    }
+
+    private static final class SnapshotField {
+        private final FieldCodec codec;
+        private final boolean nullable;
+        private final FieldHandle target;
+
+        private SnapshotField(@Nonnull FieldCodec codec, boolean nullable, FieldHandle target) {
+            this.codec = codec;
+            this.nullable = nullable;
+            this.target = target;
+        }
+    }
+
+    private static final class FieldHandle {
+        private final String name;
+        private final Class<?> type;
+        private final FieldCodec codec;
+        private final boolean nullable;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        private FieldHandle(@Nonnull Field field, @Nonnull FieldCodec codec, @Nonnull MethodHandle getter, @Nonnull MethodHandle setter) {
+            this.name = field.getName();
+            this.type = field.getType();
+            this.codec = codec;
+            this.nullable = !type.isPrimitive();
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        private void set(@Nonnull Object bean, @Nonnull Object value) {
+            try {
+                setter.invokeExact(bean, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new GriffonException("Could not set field '" + name + "'", t);
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb.snapshot;
+
+import griffon.annotations.core.Nonnull;
+
+import java.io.IOException;
+
+/**
+ * Layout of a snapshot file.
+ * <pre>
+ * header  : magic (int) version (short) compression (byte)
+ * block*  : storedLength (int) rawLength (int) crc32 (int) data (storedLength bytes)
+ * end     : 0 (int) 0 (int) 0 (int)
+ * </pre>
+ * A block whose stored length equals its raw length is not compressed. Blocks decode to a stream of entries:
+ * {@code TABLE} followed by the type name and its schema, {@code RECORD} followed by the fields of a record of the
+ * last table, and a final {@code END}.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+final class SnapshotFormat {
+    static final int MAGIC = 0x4F484D53; // OHMS
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 7;
+    static final int BLOCK_HEADER_SIZE = 12;
+    static final int BLOCK_SIZE = 64 * 1024;
+
+    static final byte TAG_END = 0;
+    static final byte TAG_TABLE = 1;
+    static final byte TAG_RECORD = 2;
+
+    private SnapshotFormat() {
+        // prevent instantiation
+    }
+
+    enum Compression {
+        NONE(0),
+        DEFLATE(1);
+
+        private final int id;
+
+        Compression(int id) {
+            this.id = id;
+        }
+
+        int getId() {
+            return id;
+        }
+
+        @Nonnull
+        static Compression forId(int id) throws IOException {
+            for (Compression compression : values()) {
+                if (compression.id == id) {
+                    return compression;
+                }
+            }
+            throw new IOException("Unknown snapshot compression " + id);
+        }
+
+        @Nonnull
+        static Compression forName(@Nonnull String name) {
+            for (Compression compression : values()) {
+                if (compression.name().equalsIgnoreCase(name.trim())) {
+                    return compression;
+                }
+            }
+            throw new IllegalArgumentException("Unsupported snapshot_compression '" + name + "'. Valid values are 'none' and 'deflate'");
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ohmdb
+
+import com.ohmdb.api.Db
+import griffon.core.GriffonApplication
+import griffon.plugins.ohmdb.events.OhmdbConnectEndEvent
+import griffon.plugins.ohmdb.events.OhmdbConnectStartEvent
+import griffon.test.core.GriffonUnitRule
+import org.junit.Rule
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import javax.application.event.EventHandler
+import javax.inject.Inject
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+@Unroll
+class DbHandlerConcurrencySpec extends Specification {
+    private static final int THREADS = 256
+
+    static {
+        System.setProperty('org.slf4j.simpleLogger.defaultLogLevel', 'info')
+    }
+
+    @Rule
+    public final GriffonUnitRule griffon = new GriffonUnitRule()
+
+    @Inject
+    private DbHandler dbHandler
+
+    @Inject
+    private GriffonApplication application
+
+    void 'Concurrent access to #name dataSource opens it only once'() {
+        given:
+        ConnectEventCounter counter = new ConnectEventCounter()
+        application.eventRouter.subscribe(counter)
+        CyclicBarrier barrier = new CyclicBarrier(THREADS)
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS)
+        Set<Db> dbs = ConcurrentHashMap.newKeySet()
+
+        when:
+        List<Future> futures = (1..THREADS).collect {
+            executor.submit({
+                barrier.await()
+                dbHandler.withOhmdb(name) { String dataSourceName, Db db ->
+                    dbs << db
+                    dataSourceName == name
+                }
+            } as Callable)
+        }
+
+        then:
+        futures.every { it.get(30, TimeUnit.SECONDS) }
+        dbs.size() == 1
+        counter.connectStart.get() == 1
+        counter.connectEnd.get() == 1
+
+        cleanup:
+        executor.shutdownNow()
+        dbHandler.closeOhmdb(name)
+
+        where:
+        name      | _
+        'default' | _
+        'people'  | _
+    }
+
+    void 'Concurrent access to a bogus dataSource fails on every thread'() {
+        given:
+        CyclicBarrier barrier = new CyclicBarrier(THREADS)
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS)
+        AtomicInteger failures = new AtomicInteger()
+
+        when:
+        List<Future> futures = (1..THREADS).collect {
+            executor.submit({
+                barrier.await()
+                try {
+                    dbHandler.withOhmdb('bogus') { String dataSourceName, Db db -> true }
+                } catch (IllegalArgumentException ignored) {
+                    failures.incrementAndGet()
+                }
+            } as Callable)
+        }
+        futures*.get(30, TimeUnit.SECONDS)
+
+        then:
+        failures.get() == THREADS
+
+        cleanup:
+        executor.shutdownNow()
+    }
+
+    private static class ConnectEventCounter {
+        final AtomicInteger connectStart = new AtomicInteger()
+        final AtomicInteger connectEnd = new AtomicInteger()
+
+        @EventHandler
+        void handleOhmdbConnectStartEvent(OhmdbConnectStartEvent event) {
+            connectStart.incrementAndGet()
+        }
+
+        @EventHandler
+        void handleOhmdbConnectEndEvent(OhmdbConnectEndEvent event) {
+            connectEnd.incrementAndGet()
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ohmdb
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+@Unroll
+class DbIdsSpec extends Specification {
+    void 'IdBitmap matches a sorted set for #count ids spaced by #step'() {
+        given:
+        long[] ids = (0..<count).collect { it * step + 7L } as long[]
+        TreeSet<Long> expected = new TreeSet<>(ids.toList())
+
+        when:
+        IdBitmap bitmap = IdBitmap.of(ids)
+
+        then:
+        bitmap.cardinality() == expected.size()
+        bitmap.toArray() as List == expected as List
+        ids.every { bitmap.contains(it) }
+        !bitmap.contains(ids[-1] + 1)
+
+        when:
+        ids.findAll { it % 3 == 0 }.each { bitmap.remove(it) }
+        expected.removeAll { it % 3 == 0 }
+
+        then:
+        bitmap.toArray() as List == expected as List
+
+        where:
+        count | step
+        10    | 1
+        5000  | 1
+        70000 | 1
+        20000 | 13
+    }
+
+    void 'IdBitmap set algebra across array and bitmap containers'() {
+        given:
+        IdBitmap evens = IdBitmap.of((0L..<200000L).findAll { it % 2 == 0 } as long[])
+        IdBitmap sparse = IdBitmap.of((0L..<200000L).step(1000) as long[])
+        IdBitmap tail = IdBitmap.of((150000L..<250000L) as long[])
+
+        expect:
+        DbIds.intersect(evens, sparse) == sparse
+        DbIds.intersect(evens, tail).cardinality() == 25000
+        DbIds.union(sparse, tail).cardinality() == 150 + 100000
+        DbIds.difference(evens, tail).cardinality() == 75000
+        DbIds.difference(sparse, evens).isEmpty()
+        !DbIds.union(evens).is(evens)
+    }
+
+    void 'LongIdSet keeps ids unique including id 0'() {
+        given:
+        LongIdSet set = new LongIdSet()
+
+        when:
+        (0L..<100000L).each { set.add(it) }
+        (0L..<100000L).each { set.add(it) }
+        (0L..<100000L).step(2).each { set.remove(it) }
+
+        then:
+        set.size() == 50000
+        !set.contains(0L)
+        set.contains(99999L)
+        set.toSortedArray() as List == (1L..<100000L).step(2)
+
+        when:
+        set.retainAll(LongIdSet.of(1L, 3L, 4L, 0L))
+
+        then:
+        set.toSortedArray() as List == [1L, 3L]
+        IdBitmap.of(set).toArray() as List == [1L, 3L]
+    }
+}
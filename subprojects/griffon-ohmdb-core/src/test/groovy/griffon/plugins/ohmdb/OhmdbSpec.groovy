@@ -18,21 +18,46 @@
 package griffon.plugins.ohmdb
 
 import com.ohmdb.api.Db
+import com.ohmdb.api.Ohm
 import com.ohmdb.api.Table
 import griffon.annotations.inject.BindTo
 import griffon.core.GriffonApplication
+import griffon.plugins.ohmdb.events.OhmdbChangesEvent
 import griffon.plugins.ohmdb.events.OhmdbConfigurationSetupEvent
 import griffon.plugins.ohmdb.events.OhmdbConnectEndEvent
 import griffon.plugins.ohmdb.events.OhmdbConnectStartEvent
 import griffon.plugins.ohmdb.events.OhmdbDisconnectEndEvent
 import griffon.plugins.ohmdb.events.OhmdbDisconnectStartEvent
 import griffon.test.core.GriffonUnitRule
+import org.codehaus.griffon.runtime.ohmdb.DbLocks
+import org.codehaus.griffon.runtime.ohmdb.DbReplicas
+import org.codehaus.griffon.runtime.ohmdb.DbReplicator
+import org.codehaus.griffon.runtime.ohmdb.DefaultDbFactory
+import org.codehaus.griffon.runtime.ohmdb.DefaultDbHandler
+import org.codehaus.griffon.runtime.ohmdb.monitor.DataSourceMetrics
+import org.codehaus.griffon.runtime.ohmdb.monitor.DbMetrics
 import org.junit.Rule
 import spock.lang.Specification
 import spock.lang.Unroll
 
 import javax.application.event.EventHandler
 import javax.inject.Inject
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.util.concurrent.Callable
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.Function
+import java.util.function.Predicate
+import java.util.stream.Collectors
 
 @Unroll
 class OhmdbSpec extends Specification {
@@ -49,6 +74,36 @@ class OhmdbSpec extends Specification {
     @Inject
     private GriffonApplication application
 
+    @Inject
+    private DbMetrics dbMetrics
+
+    @Inject
+    private DbCacheManager dbCacheManager
+
+    @Inject
+    private DbIndexManager dbIndexManager
+
+    @Inject
+    private DbQueryExecutor dbQueryExecutor
+
+    @Inject
+    private DbSnapshotManager dbSnapshotManager
+
+    @Inject
+    private DbReplicator dbReplicator
+
+    @Inject
+    private DbReplicas dbReplicas
+
+    @Inject
+    private DbLocks dbLocks
+
+    @Inject
+    private DbFactory dbFactory
+
+    @Inject
+    private DbChangeCapture dbChangeCapture
+
     void 'Open and close default dataSource'() {
         given:
         List eventNames = [
@@ -127,10 +182,13 @@ class OhmdbSpec extends Specification {
         thrown(IllegalArgumentException)
 
         where:
-        name    | _
-        null    | _
-        ''      | _
-        'bogus' | _
+        name        | _
+        null        | _
+        ''          | _
+        'bogus'     | _
+        'sharded#3' | _
+        'sharded#x' | _
+        'people#0'  | _
     }
 
     void 'Execute statements on people dataSource'() {
@@ -162,9 +220,761 @@ class OhmdbSpec extends Specification {
         dbHandler.closeOhmdb()
     }
 
+    void 'Read and write callbacks on people dataSource'() {
+        when:
+        long id = dbHandler.withOhmdbWrite('people') { String dataSourceName, Db db ->
+            db.table(Person).insert(new Person(name: 'Andres', lastname: 'Almiray'))
+        }
+        Person person = dbHandler.withOhmdbRead('people') { String dataSourceName, Db db ->
+            db.table(Person).get(id)
+        }
+
+        then:
+        person.lastname == 'Almiray'
+
+        cleanup:
+        dbHandler.closeOhmdb('people')
+    }
+
+    void 'A read callback that fails during a concurrent write is retried under the read lock'() {
+        given:
+        AtomicInteger attempts = new AtomicInteger()
+
+        when:
+        String result = dbHandler.withOhmdbRead('people') { String dataSourceName, Db db ->
+            if (attempts.incrementAndGet() == 1) {
+                Thread writer = Thread.start {
+                    dbHandler.withOhmdbWrite('people') { String name, Db d ->
+                        d.table(Person).insert(new Person(name: 'Andres', lastname: 'Almiray'))
+                    }
+                }
+                writer.join(10000)
+                throw new IllegalStateException('inconsistent read')
+            }
+            'consistent'
+        }
+
+        then:
+        result == 'consistent'
+        attempts.get() == 2
+        // one write plus one read, the retry is not counted
+        dbMetrics.forDataSource('people').callCount == 2
+        dbMetrics.forDataSource('people').errorCount == 0
+
+        cleanup:
+        dbHandler.closeOhmdb('people')
+    }
+
+    void 'A read callback that fails without a concurrent write is not retried'() {
+        given:
+        AtomicInteger attempts = new AtomicInteger()
+
+        when:
+        dbHandler.withOhmdbRead('people') { String dataSourceName, Db db ->
+            attempts.incrementAndGet()
+            throw new IllegalStateException('failed read')
+        }
+
+        then:
+        thrown(IllegalStateException)
+        attempts.get() == 1
+
+        cleanup:
+        dbHandler.closeOhmdb('people')
+    }
+
+    void 'Write callbacks can not be nested in a read callback of the same dataSource'() {
+        when:
+        dbHandler.withOhmdbRead('people') { String dataSourceName, Db db ->
+            dbHandler.withOhmdbWrite('people') { String name, Db d -> true }
+        }
+
+        then:
+        thrown(IllegalStateException)
+
+        cleanup:
+        dbHandler.closeOhmdb('people')
+    }
+
+    void 'Plain callbacks can not be nested in a #mode read callback of the same dataSource'() {
+        given:
+        AtomicInteger writes = new AtomicInteger()
+        DbCallback<Object> read = { String dataSourceName, Db db ->
+            dbHandler.withOhmdb('people') { String name, Db d ->
+                d.table(Person).insert(new Person(name: 'Andres', lastname: 'Almiray'))
+                writes.incrementAndGet()
+            }
+        }
+
+        when:
+        if (mode == 'optimistic') {
+            dbHandler.withOhmdbRead('people', read)
+        } else {
+            ((DefaultDbHandler) dbHandler).withReadLock('people', read)
+        }
+
+        then:
+        thrown(IllegalStateException)
+        writes.get() == 0
+        dbHandler.withOhmdb('people') { String dataSourceName, Db db -> db.table(Person).size() } == 0
+
+        cleanup:
+        dbHandler.closeOhmdb('people')
+
+        where:
+        mode << ['optimistic', 'locked']
+    }
+
+    void 'Plain callbacks take the write lock only on dataSources with exclusive_callbacks'() {
+        expect:
+        dbHandler.withOhmdb(name) { String dataSourceName, Db db -> dbLocks.lockFor(name).isWriteLocked() } == locked
+
+        cleanup:
+        dbHandler.closeOhmdb(name)
+
+        where:
+        name        | locked
+        'people'    | false
+        'exclusive' | true
+    }
+
+    void 'Callbacks nested in a plain callback take the lock they need'() {
+        when:
+        List<Boolean> locked = dbHandler.withOhmdb('people') { String dataSourceName, Db db ->
+            [dbHandler.withOhmdbWrite('people') { String name, Db d -> dbLocks.lockFor('people').isWriteLocked() },
+             dbHandler.withOhmdb('people') { String name, Db d -> dbLocks.lockFor('people').isWriteLocked() }]
+        }
+
+        then:
+        locked == [true, false]
+
+        cleanup:
+        dbHandler.closeOhmdb('people')
+    }
+
+    void 'Callbacks nested in a write callback of the same dataSource share its lock'() {
+        when:
+        boolean nested = dbHandler.withOhmdbWrite('people') { String dataSourceName, Db db ->
+            dbHandler.withOhmdbWrite('people') { String name, Db d ->
+                dbHandler.withOhmdbRead('people') { String n, Db x -> true }
+            }
+        }
+
+        then:
+        nested
+
+        cleanup:
+        dbHandler.closeOhmdb('people')
+    }
+
+    void 'Writes on durable dataSource are in its file before the callbacks return'() {
+        given:
+        Path copy = Files.createTempFile('durable', '.bin')
+
+        when:
+        dbHandler.withOhmdb('durable') { String dataSourceName, Db db ->
+            db.table(Person).insert(new Person(name: 'plain', lastname: 'durable'))
+        }
+        dbHandler.withOhmdbWrite('durable') { String dataSourceName, Db db ->
+            db.table(Person).insert(new Person(name: 'write', lastname: 'durable'))
+        }
+        // as if the process died now, the file is copied while the dataSource is still open
+        Files.copy(((DefaultDbFactory) dbFactory).resolveDbFile('durable').toPath(), copy, StandardCopyOption.REPLACE_EXISTING)
+        Db reopened = Ohm.db(copy.toString())
+        List names
+        try {
+            Table<Person> people = reopened.table(Person)
+            names = people.getAll(people.ids())*.name.sort()
+        } finally {
+            reopened.shutdown()
+        }
+
+        then:
+        names == ['plain', 'write']
+
+        cleanup:
+        dbHandler.closeOhmdb('durable')
+        Files.deleteIfExists(copy)
+    }
+
+    void 'Execute statements asynchronously on #name dataSource'() {
+        when:
+        String threadName = dbHandler.withOhmdbAsync(name) { String dataSourceName, Db db ->
+            Thread.currentThread().name
+        }.get(10, TimeUnit.SECONDS)
+
+        then:
+        threadName.startsWith("ohmdb-${name}-")
+
+        cleanup:
+        dbHandler.closeOhmdb(name)
+
+        where:
+        name      | _
+        'default' | _
+        'people'  | _
+    }
+
+    void 'Insert rows in batches on people dataSource'() {
+        given:
+        DbBatchWriter<Person> writer = dbHandler.withOhmdbBatch('people', Person)
+
+        when:
+        List<CompletableFuture<Long>> ids = (1..50).collect { i ->
+            writer.insert(new Person(name: "name${i}", lastname: "lastname${i}"))
+        }
+        writer.flush().get(10, TimeUnit.SECONDS)
+
+        List peopleOut = dbHandler.withOhmdb('people') { String dataSourceName, Db db ->
+            Table<Person> people = db.table(Person)
+            people.getAll(people.ids()).collect { it }
+        }
+
+        then:
+        ids.every { it.isDone() && !it.isCompletedExceptionally() }
+        peopleOut*.id.containsAll(ids*.get())
+
+        cleanup:
+        dbHandler.closeOhmdb('people')
+    }
+
+    void 'Closing a batch writer completes every operation queued concurrently'() {
+        given:
+        DbBatchWriter<Person> writer = dbHandler.withOhmdbBatch('people', Person)
+        ExecutorService executor = Executors.newFixedThreadPool(8)
+        CountDownLatch started = new CountDownLatch(8)
+        List<CompletableFuture<Long>> ids = new CopyOnWriteArrayList<>()
+
+        when:
+        List<Future> producers = (1..8).collect { p ->
+            executor.submit({
+                started.countDown()
+                200.times { i -> ids << writer.insert(new Person(name: "name${p}-${i}", lastname: 'Closing')) }
+            } as Runnable)
+        }
+        started.await(10, TimeUnit.SECONDS)
+        dbHandler.closeOhmdb('people')
+        producers*.get(30, TimeUnit.SECONDS)
+
+        then:
+        ids.size() == 1600
+        ids.every { CompletableFuture<Long> future ->
+            try {
+                future.get(10, TimeUnit.SECONDS) != null
+            } catch (ExecutionException e) {
+                e.cause instanceof IllegalStateException
+            }
+        }
+
+        cleanup:
+        executor.shutdownNow()
+        dbHandler.closeOhmdb('people')
+    }
+
+    @Unroll
+    void 'Import #format records into people dataSource'() {
+        given:
+        InputStream input = new ByteArrayInputStream(text.getBytes('UTF-8'))
+
+        when:
+        long imported = dbHandler.importInto('people', Person, input, format)
+
+        List peopleOut = dbHandler.withOhmdb('people') { String dataSourceName, Db db ->
+            Table<Person> people = db.table(Person)
+            people.getAll(people.ids()).collect { it }
+        }
+
+        then:
+        imported == 3
+        peopleOut.findAll { it.lastname == "imported-${format}" }*.name.sort() == ['Alexander', 'Danno', 'Ray, Jr.']
+
+        cleanup:
+        dbHandler.closeOhmdb('people')
+
+        where:
+        format                  | text
+        ImportFormat.CSV        | "name,lastname\nDanno,imported-CSV\n\"Ray, Jr.\",imported-CSV\r\nAlexander,imported-CSV"
+        ImportFormat.JSON_LINES | '{"name": "Danno", "lastname": "imported-JSON_LINES"}\n{"name": "Ray, Jr.", "lastname": "imported-JSON_LINES"}\n\n{"lastname": "imported-JSON_LINES", "name": "Alexander"}\n'
+    }
+
+    void 'Snapshot people dataSource and restore it into restored dataSource'() {
+        given:
+        Path snapshot = Files.createTempFile('people', '.snapshot')
+        dbHandler.withOhmdb('people') { String dataSourceName, Db db ->
+            Table<Person> people = db.table(Person)
+            people.insert(new Person(name: 'Danno', lastname: 'Ferrin'))
+            people.insert(new Person(name: 'Ray', lastname: 'Tayek'))
+        }
+        Closure<List> names = { String dataSourceName ->
+            dbHandler.withOhmdb(dataSourceName) { String n, Db db ->
+                Table<Person> people = db.table(Person)
+                people.getAll(people.ids()).collect { "${it.name} ${it.lastname}".toString() }.sort()
+            }
+        }
+
+        when:
+        long written = dbSnapshotManager.snapshot('people', snapshot, Person)
+        long restored = dbSnapshotManager.restore('restored', snapshot)
+
+        then:
+        written == restored
+        names('restored') == names('people')
+
+        cleanup:
+        dbHandler.closeOhmdb('people')
+        dbHandler.closeOhmdb('restored')
+        Files.deleteIfExists(snapshot)
+    }
+
+    void 'Indexed lookups on indexed dataSource survive a reopen'() {
+        given:
+        dbHandler.withOhmdb('indexed') { String dataSourceName, Db db ->
+            IndexedTable<Person> people = dbIndexManager.table(dataSourceName, db, Person)
+            ['Alpha', 'Bravo', 'Charlie', 'Delta'].each { people.insert(new Person(name: it, lastname: 'Indexed')) }
+            long id = people.insert(new Person(name: 'Echo', lastname: 'Removed'))
+            people.delete(id)
+            Person bravo = people.findBy('name', 'Bravo')[0]
+            bravo.lastname = 'Reindexed'
+            people.update(bravo)
+        }
+        dbHandler.closeOhmdb('indexed')
+
+        when:
+        Map result = dbHandler.withOhmdb('indexed') { String dataSourceName, Db db ->
+            IndexedTable<Person> people = dbIndexManager.table(dataSourceName, db, Person)
+            [
+                indexed  : people.findBy('lastname', 'Indexed')*.name.sort(),
+                reindexed: people.findBy('lastname', 'Reindexed')*.name,
+                removed  : people.findIds('lastname', 'Removed'),
+                range    : people.findBy('name', 'Alpha', false, 'Delta', true)*.name
+            ]
+        }
+
+        then:
+        result.indexed == ['Alpha', 'Charlie', 'Delta']
+        result.reindexed == ['Bravo']
+        result.removed.length == 0
+        result.range == ['Bravo', 'Charlie', 'Delta']
+
+        when:
+        dbHandler.withOhmdb('indexed') { String dataSourceName, Db db ->
+            dbIndexManager.table(dataSourceName, db, Person).findIds('id', 1L)
+        }
+
+        then:
+        thrown(IllegalArgumentException)
+
+        cleanup:
+        dbHandler.closeOhmdb('indexed')
+    }
+
+    void 'Rows written by a batch writer or a cached table are found by index on indexed dataSource'() {
+        given:
+        DbBatchWriter<Person> writer = dbHandler.withOhmdbBatch('indexed', Person)
+
+        when:
+        CompletableFuture<Long> batched = writer.insert(new Person(name: 'Foxtrot', lastname: 'Batched'))
+        CompletableFuture<Long> removed = writer.insert(new Person(name: 'Golf', lastname: 'Batched'))
+        writer.flush().get(10, TimeUnit.SECONDS)
+        writer.delete(removed.get())
+        writer.flush().get(10, TimeUnit.SECONDS)
+        dbHandler.withOhmdb('indexed') { String dataSourceName, Db db ->
+            dbCacheManager.table(dataSourceName, db, Person).insert(new Person(name: 'Hotel', lastname: 'Cached'))
+        }
+
+        Map result = dbHandler.withOhmdb('indexed') { String dataSourceName, Db db ->
+            IndexedTable<Person> people = dbIndexManager.table(dataSourceName, db, Person)
+            [
+                batched: people.findBy('lastname', 'Batched')*.id,
+                cached : people.findBy('lastname', 'Cached')*.name
+            ]
+        }
+
+        then:
+        result.batched == [batched.get()]
+        result.cached == ['Hotel']
+
+        cleanup:
+        dbHandler.closeOhmdb('indexed')
+    }
+
+    void 'Imported rows are found by index on indexed dataSource'() {
+        given:
+        InputStream input = new ByteArrayInputStream("name,lastname\nIndia,Imported\nJuliett,Imported".getBytes('UTF-8'))
+
+        when:
+        long imported = dbHandler.importInto('indexed', Person, input, ImportFormat.CSV)
+
+        List names = dbHandler.withOhmdb('indexed') { String dataSourceName, Db db ->
+            dbIndexManager.table(dataSourceName, db, Person).findBy('lastname', 'Imported')*.name.sort()
+        }
+
+        then:
+        imported == 2
+        names == ['India', 'Juliett']
+
+        cleanup:
+        dbHandler.closeOhmdb('indexed')
+    }
+
+    void 'Internal dataSource is kept in memory'() {
+        given:
+        DefaultDbFactory factory = (DefaultDbFactory) dbFactory
+
+        when:
+        dbHandler.withOhmdb('internal') { String dataSourceName, Db db ->
+            db.table(Person).insert(new Person(name: 'Andres', lastname: 'Almiray'))
+        }
+        dbHandler.closeOhmdb('internal')
+        int size = dbHandler.withOhmdb('internal') { String dataSourceName, Db db ->
+            db.table(Person).ids().length
+        }
+
+        then:
+        factory.isInMemory('internal')
+        !factory.isInMemory('people')
+        size == 0
+
+        when:
+        factory.resolveDbFile('internal')
+
+        then:
+        thrown(IllegalStateException)
+
+        cleanup:
+        dbHandler.closeOhmdb('internal')
+    }
+
+    void 'Stream records of internal dataSource lazily'() {
+        given:
+        dbHandler.withOhmdb('internal') { String dataSourceName, Db db ->
+            Table<Person> people = db.table(Person)
+            (1..3000).each { people.insert(new Person(name: "name${it}", lastname: 'Streamed')) }
+        }
+
+        when:
+        Map result = dbHandler.withOhmdb('internal') { String dataSourceName, Db db ->
+            Table<Person> people = db.table(Person)
+            [
+                sequential: DbStreams.stream(people, 100).filter { it.lastname == 'Streamed' }.count(),
+                parallel  : DbStreams.stream(people, 100).parallel().filter { it.lastname == 'Streamed' }.count(),
+                first     : DbStreams.stream(db, Person).filter { it.lastname == 'Streamed' }.findFirst().get().name
+            ]
+        }
+
+        then:
+        result.sequential == 3000
+        result.parallel == 3000
+        result.first == 'name1'
+
+        cleanup:
+        dbHandler.closeOhmdb('internal')
+    }
+
+    void 'Parallel group-by over internal dataSource matches a sequential loop'() {
+        given:
+        dbHandler.withOhmdb('internal') { String dataSourceName, Db db ->
+            Table<Person> people = db.table(Person)
+            (1..5000).each { people.insert(new Person(name: "name${it}", lastname: "Queried${it % 7}")) }
+        }
+
+        when:
+        Map result = dbHandler.withOhmdb('internal') { String dataSourceName, Db db ->
+            Table<Person> people = db.table(Person)
+            Predicate<Person> queried = { Person p -> p.lastname.startsWith('Queried') } as Predicate<Person>
+            [
+                parallel  : dbQueryExecutor.collect(dataSourceName, db, Person, queried, Collectors.groupingBy({ Person p -> p.lastname } as Function, Collectors.counting())),
+                sequential: people.getAll(people.ids()).findAll { it && queried.test(it) }.countBy { it.lastname }.collectEntries { k, v -> [k, v as Long] },
+                count     : dbQueryExecutor.count(dataSourceName, db, Person, queried)
+            ]
+        }
+
+        then:
+        result.parallel == result.sequential
+        result.count == 5000
+
+        cleanup:
+        dbHandler.closeOhmdb('internal')
+    }
+
+    void 'Records are routed by key and gathered across sharded dataSource'() {
+        given:
+        List<String> keys = (1..30).collect { "key${it}".toString() }
+
+        when:
+        Map<String, String> routes = keys.collectEntries { String key ->
+            [key, dbHandler.withOhmdbShard('sharded', key) { String dataSourceName, Db db ->
+                db.table(Person).insert(new Person(name: key, lastname: 'Sharded'))
+                dataSourceName
+            }]
+        }
+        Map<String, String> again = keys.collectEntries { String key ->
+            [key, dbHandler.withOhmdbShard('sharded', key) { String dataSourceName, Db db -> dataSourceName }]
+        }
+        List<Integer> counts = dbHandler.withOhmdbShards('sharded') { String dataSourceName, Db db ->
+            Table<Person> people = db.table(Person)
+            people.getAll(people.ids()).count { it?.lastname == 'Sharded' } as Integer
+        }
+
+        then:
+        routes == again
+        routes.values().every { it in ['sharded#0', 'sharded#1', 'sharded#2'] }
+        counts.size() == 3
+        counts.sum() == keys.size()
+
+        cleanup:
+        (0..2).each { dbHandler.closeOhmdb("sharded#${it}".toString()) }
+    }
+
+    void 'Shards are gathered on the calling thread from inside an asynchronous callback'() {
+        when:
+        // the executor of each shard has a single thread, waiting for it from that thread would never return
+        List<String> names = dbHandler.withOhmdbAsync('sharded#0') { String dataSourceName, Db db ->
+            dbHandler.withOhmdbShards('sharded') { String shardName, Db shard -> shardName }
+        }.get(5, TimeUnit.SECONDS)
+
+        then:
+        names == ['sharded#0', 'sharded#1', 'sharded#2']
+
+        cleanup:
+        (0..2).each { dbHandler.closeOhmdb("sharded#${it}".toString()) }
+    }
+
+    void 'Shards are gathered on the calling thread from inside a callback holding the lock of a shard'() {
+        given:
+        ExecutorService caller = Executors.newSingleThreadExecutor()
+
+        when:
+        // an executor of shard 1 would wait for the write lock held by the calling thread
+        Future<List<String>> gathered = caller.submit({
+            dbHandler.withOhmdb('sharded#1') { String dataSourceName, Db db ->
+                dbHandler.withOhmdbShards('sharded') { String shardName, Db shard -> shardName }
+            }
+        } as Callable<List<String>>)
+
+        then:
+        gathered.get(5, TimeUnit.SECONDS) == ['sharded#0', 'sharded#1', 'sharded#2']
+
+        cleanup:
+        caller.shutdownNow()
+        (0..2).each { dbHandler.closeOhmdb("sharded#${it}".toString()) }
+    }
+
+    void 'Reads on replicated dataSource are served by its replica only when asked for'() {
+        given:
+        dbHandler.withOhmdbWrite('replicated') { String dataSourceName, Db db ->
+            Table<Person> people = db.table(Person)
+            (1..10).each { people.insert(new Person(name: "name${it}", lastname: 'Replicated')) }
+        }
+
+        when:
+        long shipped = dbReplicator.ship('replica')
+        Map result = dbHandler.withOhmdbReplica('replicated') { String dataSourceName, Db db ->
+            Table<Person> people = db.table(Person)
+            [name: dataSourceName, count: people.getAll(people.ids()).count { it?.lastname == 'Replicated' }]
+        }
+        String reader = dbHandler.withOhmdbRead('replicated') { String dataSourceName, Db db -> dataSourceName }
+
+        then:
+        shipped >= 10
+        result.name == 'replica'
+        result.count == 10
+        reader == 'replicated'
+
+        when:
+        dbHandler.withOhmdbWrite('replica') { String dataSourceName, Db db -> null }
+
+        then:
+        thrown(IllegalStateException)
+
+        cleanup:
+        dbHandler.closeOhmdb('replica')
+        dbHandler.closeOhmdb('replicated')
+    }
+
+    void 'Plain callbacks on replicated dataSource leave its replicas stale'() {
+        given:
+        dbReplicator.ship('replica')
+        boolean staleAfterShipment = dbReplicas.isStale('replica')
+
+        when:
+        dbHandler.withOhmdb('replicated') { String dataSourceName, Db db ->
+            db.table(Person).insert(new Person(name: 'plain', lastname: 'Stale'))
+        }
+
+        then:
+        !staleAfterShipment
+        dbReplicas.isStale('replica')
+
+        cleanup:
+        dbHandler.closeOhmdb('replica')
+        dbHandler.closeOhmdb('replicated')
+    }
+
+    void 'In-memory replica of replicated dataSource is replaced by every shipment'() {
+        given:
+        dbHandler.withOhmdbWrite('replicated') { String dataSourceName, Db db ->
+            Table<Person> people = db.table(Person)
+            (1..5).each { people.insert(new Person(name: "name${it}", lastname: 'InMemory')) }
+        }
+        DbCallback<Integer> counter = { String dataSourceName, Db db ->
+            Table<Person> people = db.table(Person)
+            people.getAll(people.ids()).count { it?.lastname == 'InMemory' } as Integer
+        } as DbCallback<Integer>
+
+        when:
+        dbReplicator.ship('memory_replica')
+        int first = dbHandler.withOhmdbRead('memory_replica', counter)
+        dbReplicator.ship('memory_replica')
+        int second = dbHandler.withOhmdbRead('memory_replica', counter)
+
+        then:
+        first == 5
+        second == 5
+
+        cleanup:
+        dbHandler.closeOhmdb('memory_replica')
+        dbHandler.closeOhmdb('replicated')
+    }
+
+    void 'Writes on captured dataSource are delivered to listeners and events'() {
+        given:
+        List<DbChange> received = new CopyOnWriteArrayList<>()
+        CountDownLatch delivered = new CountDownLatch(3)
+        DbChangeListener listener = { String dataSourceName, List<DbChange> changes ->
+            received.addAll(changes)
+            changes.each { delivered.countDown() }
+        } as DbChangeListener
+        ChangesEventHandler eventHandler = new ChangesEventHandler()
+        application.eventRouter.subscribe(eventHandler)
+        dbChangeCapture.subscribe('captured', listener)
+
+        when:
+        long id = dbHandler.withOhmdb('captured') { String dataSourceName, Db db ->
+            CachedTable<Person> people = dbCacheManager.table(dataSourceName, db, Person)
+            Person person = new Person(name: 'Andres', lastname: 'Captured')
+            long inserted = people.insert(person)
+            person.id = inserted
+            people.update(person)
+            people.delete(inserted)
+            inserted
+        }
+
+        then:
+        delivered.await(10, TimeUnit.SECONDS)
+        eventHandler.delivered.await(10, TimeUnit.SECONDS)
+        received*.operation == [DbChange.Operation.INSERT, DbChange.Operation.UPDATE, DbChange.Operation.DELETE]
+        received*.id == [id, id, id]
+        received*.type == [Person, Person, Person]
+        received[1].sequence == received[0].sequence + 1
+        received[2].record == null
+        eventHandler.changes*.operation == received*.operation
+
+        cleanup:
+        dbChangeCapture.unsubscribe('captured', listener)
+        application.eventRouter.unsubscribe(eventHandler)
+        dbHandler.closeOhmdb('captured')
+    }
+
+    void 'Cached lookups on people dataSource'() {
+        when:
+        Map result = dbHandler.withOhmdb('people') { String dataSourceName, Db db ->
+            CachedTable<Person> people = dbCacheManager.table(dataSourceName, db, Person)
+            long id = people.insert(new Person(name: 'Andres', lastname: 'Almiray'))
+            Person first = people.get(id)
+            people.getTable().delete(id)
+            Person second = people.get(id)
+            people.invalidate(id)
+            [first: first, second: second, third: people.get(id)]
+        }
+
+        then:
+        result.first.name == 'Andres'
+        result.second.name == 'Andres'
+        !result.second.is(result.first)
+        result.third == null
+
+        cleanup:
+        dbHandler.closeOhmdb('people')
+    }
+
+    void 'Changing a cached record does not change the cache until it is written back'() {
+        when:
+        List<String> names = dbHandler.withOhmdb('people') { String dataSourceName, Db db ->
+            CachedTable<Person> people = dbCacheManager.table(dataSourceName, db, Person)
+            long id = people.insert(new Person(name: 'Andres', lastname: 'Almiray'))
+            Person person = people.get(id)
+            person.name = 'Duke'
+            String unsaved = people.get(id).name
+            people.update(person)
+            person.name = 'Dummy'
+            [unsaved, people.get(id).name]
+        }
+
+        then:
+        names == ['Andres', 'Duke']
+
+        cleanup:
+        dbHandler.closeOhmdb('people')
+    }
+
+    void 'Writes made through a batch writer invalidate cached records'() {
+        given:
+        long id = dbHandler.withOhmdb('people') { String dataSourceName, Db db ->
+            CachedTable<Person> people = dbCacheManager.table(dataSourceName, db, Person)
+            long id = people.insert(new Person(name: 'Andres', lastname: 'Almiray'))
+            people.get(id)
+            id
+        }
+
+        when:
+        DbBatchWriter<Person> writer = dbHandler.withOhmdbBatch('people', Person)
+        writer.update(new Person(id: id, name: 'Duke', lastname: 'Almiray')).get(10, TimeUnit.SECONDS)
+        String name = dbHandler.withOhmdb('people') { String dataSourceName, Db db ->
+            dbCacheManager.table(dataSourceName, db, Person).get(id).name
+        }
+
+        then:
+        name == 'Duke'
+
+        cleanup:
+        dbHandler.closeOhmdb('people')
+    }
+
+    void 'Callback metrics are recorded for people dataSource'() {
+        when:
+        3.times {
+            dbHandler.withOhmdb('people') { String dataSourceName, Db db -> true }
+        }
+        dbHandler.withOhmdb('people') { String dataSourceName, Db db -> throw new IllegalStateException() }
+
+        then:
+        thrown(IllegalStateException)
+        DataSourceMetrics metrics = dbMetrics.forDataSource('people')
+        metrics.callCount == 4
+        metrics.errorCount == 1
+        metrics.inFlight == 0
+        metrics.latency.count == 4
+        metrics.latency.getValueAtPercentile(99d) <= metrics.latency.max
+
+        cleanup:
+        dbHandler.closeOhmdb('people')
+    }
+
     @BindTo(OhmdbBootstrap)
     private TestOhmdbBootstrap bootstrap = new TestOhmdbBootstrap()
 
+    private class ChangesEventHandler {
+        List<DbChange> changes = new CopyOnWriteArrayList<>()
+        CountDownLatch delivered = new CountDownLatch(3)
+
+        @EventHandler
+        void handleOhmdbChangesEvent(OhmdbChangesEvent event) {
+            changes.addAll(event.changes)
+            event.changes.each { delivered.countDown() }
+        }
+    }
+
     private class TestEventHandler {
         List<String> events = []
 
@@ -0,0 +1,107 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb
+
+import griffon.core.GriffonApplication
+import griffon.plugins.ohmdb.events.OhmdbImportProgressEvent
+import griffon.test.core.GriffonUnitRule
+import org.junit.Rule
+import spock.lang.Specification
+
+import javax.application.event.EventHandler
+import javax.inject.Inject
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class DbEventsSpec extends Specification {
+    static {
+        System.setProperty('org.slf4j.simpleLogger.defaultLogLevel', 'info')
+    }
+
+    @Rule
+    public final GriffonUnitRule griffon = new GriffonUnitRule()
+
+    @Inject
+    private GriffonApplication application
+
+    @Inject
+    private DbEvents events
+
+    void 'An event is delivered when its only listener is an annotated handler'() {
+        given:
+        ProgressEventHandler handler = new ProgressEventHandler()
+        application.eventRouter.subscribe(handler)
+
+        when:
+        events.publish(OhmdbImportProgressEvent, { OhmdbImportProgressEvent.of('people', String, 10L) })
+
+        then:
+        events.hasListeners(OhmdbImportProgressEvent)
+        handler.delivered.await(10, TimeUnit.SECONDS)
+        handler.event.dataSourceName == 'people'
+        handler.event.records == 10L
+
+        cleanup:
+        application.eventRouter.unsubscribe(handler)
+    }
+
+    void 'An event without listeners is skipped before it is built'() {
+        given:
+        boolean built = false
+
+        when:
+        events.publish(OhmdbImportProgressEvent, {
+            built = true
+            OhmdbImportProgressEvent.of('people', String, 10L)
+        })
+
+        then:
+        !events.hasListeners(OhmdbImportProgressEvent)
+        !built
+    }
+
+    void 'Events are delivered off the calling thread when events_async is set'() {
+        given:
+        DbEvents asyncEvents = new DbEvents(application.eventRouter, true)
+        ProgressEventHandler handler = new ProgressEventHandler()
+        application.eventRouter.subscribe(handler)
+
+        when:
+        asyncEvents.publish(OhmdbImportProgressEvent, { OhmdbImportProgressEvent.of('people', String, 10L) })
+
+        then:
+        handler.delivered.await(10, TimeUnit.SECONDS)
+        handler.thread != Thread.currentThread()
+
+        cleanup:
+        application.eventRouter.unsubscribe(handler)
+    }
+
+    private static class ProgressEventHandler {
+        final CountDownLatch delivered = new CountDownLatch(1)
+        volatile OhmdbImportProgressEvent event
+        volatile Thread thread
+
+        @EventHandler
+        void handleOhmdbImportProgressEvent(OhmdbImportProgressEvent event) {
+            this.event = event
+            this.thread = Thread.currentThread()
+            delivered.countDown()
+        }
+    }
+}
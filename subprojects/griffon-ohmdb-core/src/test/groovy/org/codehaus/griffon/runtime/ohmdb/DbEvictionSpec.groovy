@@ -0,0 +1,214 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb
+
+import com.ohmdb.api.Db
+import griffon.annotations.core.Nonnull
+import griffon.annotations.inject.BindTo
+import griffon.core.Configuration
+import griffon.plugins.ohmdb.DbFactory
+import griffon.plugins.ohmdb.DbHandler
+import griffon.plugins.ohmdb.DbStorage
+import griffon.plugins.ohmdb.Person
+import griffon.test.core.GriffonUnitRule
+import org.junit.Rule
+import spock.lang.Specification
+
+import javax.inject.Inject
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class DbEvictionSpec extends Specification {
+    static {
+        System.setProperty('org.slf4j.simpleLogger.defaultLogLevel', 'info')
+    }
+
+    @Rule
+    public final GriffonUnitRule griffon = new GriffonUnitRule()
+
+    @Inject
+    private DbHandler dbHandler
+
+    @Inject
+    private DbStorage dbStorage
+
+    @BindTo(DbEvictionPolicy)
+    private TestEvictionPolicy evictionPolicy = new TestEvictionPolicy(Mock(Configuration), Mock(DbFactory))
+
+    void 'Opening a dataSource beyond max_open evicts the least recently used one but never an in-memory one'() {
+        given:
+        evictionPolicy.maxOpen = 2
+        dbHandler.withOhmdb('internal') { String dataSourceName, Db db ->
+            db.table(Person).insert(new Person(name: 'Andres', lastname: 'Almiray'))
+        }
+        dbHandler.withOhmdb('people') { String dataSourceName, Db db -> true }
+
+        when:
+        dbHandler.withOhmdb('restored') { String dataSourceName, Db db -> true }
+
+        then:
+        dbStorage.keys as Set == ['internal', 'restored'] as Set
+        dbHandler.withOhmdb('internal') { String dataSourceName, Db db -> db.table(Person).ids().length } == 1
+
+        cleanup:
+        ['internal', 'people', 'restored'].each { dbHandler.closeOhmdb(it) }
+    }
+
+    void 'Idle dataSources are evicted but in-memory ones are kept'() {
+        given:
+        evictionPolicy.idleTimeouts = [people: 1L, captured: 1L]
+        dbHandler.withOhmdb('people') { String dataSourceName, Db db -> true }
+        dbHandler.withOhmdb('captured') { String dataSourceName, Db db -> true }
+        Thread.sleep(50)
+
+        when:
+        ((DefaultDbHandler) dbHandler).evictIdle()
+
+        then:
+        !dbStorage.keys.contains('people')
+        dbStorage.keys.contains('captured')
+        dbHandler.withOhmdb('people') { String dataSourceName, Db db -> dataSourceName } == 'people'
+
+        cleanup:
+        ['people', 'captured'].each { dbHandler.closeOhmdb(it) }
+    }
+
+    void 'A dataSource is not evicted while a callback uses it'() {
+        given:
+        CountDownLatch started = new CountDownLatch(1)
+        CountDownLatch release = new CountDownLatch(1)
+        Thread busy = Thread.start {
+            dbHandler.withOhmdb('people') { String dataSourceName, Db db ->
+                started.countDown()
+                release.await(10, TimeUnit.SECONDS)
+            }
+        }
+        started.await(10, TimeUnit.SECONDS)
+
+        when:
+        boolean evictedWhileBusy = ((DefaultDbHandler) dbHandler).evict('people')
+        release.countDown()
+        busy.join(10000)
+        boolean evictedWhenIdle = ((DefaultDbHandler) dbHandler).evict('people')
+
+        then:
+        !evictedWhileBusy
+        evictedWhenIdle
+
+        cleanup:
+        release.countDown()
+        dbHandler.closeOhmdb('people')
+    }
+
+    void 'Callbacks nested inside exclusive access to the same dataSource fail right away'() {
+        when:
+        ((DefaultDbHandler) dbHandler).withExclusiveAccess('people', 1000L) { String dataSourceName, Db db ->
+            dbHandler.withOhmdb('people') { String name, Db d -> true }
+        }
+
+        then:
+        thrown(IllegalStateException)
+
+        cleanup:
+        dbHandler.closeOhmdb('people')
+    }
+
+    void 'Callbacks nested inside a callback do not wait for pending exclusive access'() {
+        given:
+        CountDownLatch started = new CountDownLatch(1)
+        CountDownLatch proceed = new CountDownLatch(1)
+        boolean nested = false
+        Thread outer = Thread.start {
+            dbHandler.withOhmdb('people') { String dataSourceName, Db db ->
+                started.countDown()
+                proceed.await(10, TimeUnit.SECONDS)
+                nested = dbHandler.withOhmdb('people') { String name, Db d -> true }
+            }
+        }
+        started.await(10, TimeUnit.SECONDS)
+
+        when:
+        String result = null
+        Thread exclusive = Thread.start {
+            result = ((DefaultDbHandler) dbHandler).withExclusiveAccess('people', 10000L) { String dataSourceName, Db db -> 'exclusive' }
+        }
+        // let the exclusive callback start waiting for the outer one
+        Thread.sleep(100)
+        proceed.countDown()
+        outer.join(10000)
+        exclusive.join(10000)
+
+        then:
+        nested
+        result == 'exclusive'
+
+        cleanup:
+        proceed.countDown()
+        dbHandler.closeOhmdb('people')
+    }
+
+    void 'Callbacks waiting for exclusive access give up after lease_timeout'() {
+        given:
+        CountDownLatch inside = new CountDownLatch(1)
+        CountDownLatch release = new CountDownLatch(1)
+        Thread exclusive = Thread.start {
+            ((DefaultDbHandler) dbHandler).withExclusiveAccess('restored', 1000L) { String dataSourceName, Db db ->
+                inside.countDown()
+                release.await(10, TimeUnit.SECONDS)
+            }
+        }
+        inside.await(10, TimeUnit.SECONDS)
+
+        when:
+        // restored sets lease_timeout = 200
+        dbHandler.withOhmdb('restored') { String dataSourceName, Db db -> true }
+
+        then:
+        thrown(IllegalStateException)
+
+        cleanup:
+        release.countDown()
+        exclusive.join(10000)
+        dbHandler.closeOhmdb('restored')
+    }
+
+    private static class TestEvictionPolicy extends DbEvictionPolicy {
+        int maxOpen
+        Map<String, Long> idleTimeouts = [:]
+
+        TestEvictionPolicy(@Nonnull Configuration configuration, @Nonnull DbFactory dbFactory) {
+            super(configuration, dbFactory)
+        }
+
+        @Override
+        int getMaxOpen() {
+            maxOpen
+        }
+
+        @Override
+        long getIdleTimeout(@Nonnull String dataSourceName) {
+            idleTimeouts[dataSourceName] ?: 0L
+        }
+
+        @Override
+        boolean hasIdleTimeouts() {
+            // evictIdle() is called by the features themselves
+            false
+        }
+    }
+}
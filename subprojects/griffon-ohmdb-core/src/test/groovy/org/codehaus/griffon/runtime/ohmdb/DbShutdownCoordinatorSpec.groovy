@@ -0,0 +1,152 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb
+
+import com.ohmdb.api.Db
+import griffon.core.Configuration
+import griffon.core.GriffonApplication
+import griffon.plugins.ohmdb.DbExecutorProvider
+import griffon.plugins.ohmdb.DbFactory
+import griffon.plugins.ohmdb.DbHandler
+import griffon.plugins.ohmdb.DbQueryExecutor
+import griffon.plugins.ohmdb.events.OhmdbDisconnectEndEvent
+import griffon.test.core.GriffonUnitRule
+import org.codehaus.griffon.runtime.ohmdb.monitor.DbMetrics
+import org.junit.Rule
+import spock.lang.Specification
+
+import javax.application.event.EventHandler
+import javax.inject.Inject
+import javax.inject.Named
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class DbShutdownCoordinatorSpec extends Specification {
+    static {
+        System.setProperty('org.slf4j.simpleLogger.defaultLogLevel', 'info')
+    }
+
+    @Rule
+    public final GriffonUnitRule griffon = new GriffonUnitRule()
+
+    @Inject
+    private GriffonApplication application
+
+    @Inject
+    private DbHandler dbHandler
+
+    @Inject
+    private DbFactory dbFactory
+
+    @Inject
+    private DbExecutorProvider dbExecutorProvider
+
+    @Inject
+    private DbQueryExecutor dbQueryExecutor
+
+    @Inject
+    private DbMetrics dbMetrics
+
+    @Inject
+    private DbEvents events
+
+    @Inject
+    @Named('ohmdb')
+    private Configuration configuration
+
+    void 'DataSources are grouped in waves following close_after'() {
+        expect:
+        coordinator().resolveWaves(['restored', 'people', 'replicated', 'replica', 'internal']) ==
+            [['people', 'replica', 'internal'], ['restored', 'replicated']]
+    }
+
+    void 'DataSources are closed after those listed in their close_after'() {
+        given:
+        DisconnectEventHandler handler = new DisconnectEventHandler()
+        application.eventRouter.subscribe(handler)
+        ['restored', 'people'].each { String name -> dbHandler.withOhmdb(name) { String dataSourceName, Db db -> true } }
+
+        when:
+        coordinator().closeAll(['restored', 'people'], System.nanoTime() + TimeUnit.SECONDS.toNanos(10))
+
+        then:
+        handler.events*.name == ['people', 'restored']
+        handler.events.every { it.clean }
+
+        cleanup:
+        application.eventRouter.unsubscribe(handler)
+    }
+
+    void 'A dataSource whose callbacks outlast its shutdown_timeout is reported once and refuses new callbacks'() {
+        given:
+        DisconnectEventHandler handler = new DisconnectEventHandler()
+        application.eventRouter.subscribe(handler)
+        CountDownLatch started = new CountDownLatch(1)
+        CountDownLatch release = new CountDownLatch(1)
+        Thread busy = Thread.start {
+            dbHandler.withOhmdb('restored') { String dataSourceName, Db db ->
+                started.countDown()
+                release.await(10, TimeUnit.SECONDS)
+            }
+        }
+        started.await(10, TimeUnit.SECONDS)
+
+        when:
+        long start = System.nanoTime()
+        coordinator().closeAll(['restored'], System.nanoTime() + TimeUnit.SECONDS.toNanos(10))
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+
+        then:
+        // restored sets shutdown_timeout = 500
+        elapsed < 5000
+        handler.events*.name == ['restored']
+        !handler.events[0].clean
+
+        when:
+        dbHandler.withOhmdb('restored') { String dataSourceName, Db db -> true }
+
+        then:
+        thrown(IllegalStateException)
+
+        when:
+        release.countDown()
+        busy.join(10000)
+        Thread.sleep(200)
+
+        then:
+        handler.events.size() == 1
+
+        cleanup:
+        release.countDown()
+        application.eventRouter.unsubscribe(handler)
+    }
+
+    private DbShutdownCoordinator coordinator() {
+        new DbShutdownCoordinator(dbHandler, dbFactory, dbExecutorProvider, dbQueryExecutor, dbMetrics, configuration, events)
+    }
+
+    private static class DisconnectEventHandler {
+        final List<OhmdbDisconnectEndEvent> events = new CopyOnWriteArrayList<>()
+
+        @EventHandler
+        void handleOhmdbDisconnectEndEvent(OhmdbDisconnectEndEvent event) {
+            events << event
+        }
+    }
+}
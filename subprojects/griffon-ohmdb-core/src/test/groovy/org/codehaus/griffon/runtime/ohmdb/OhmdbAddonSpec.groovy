@@ -0,0 +1,141 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ohmdb
+
+import com.ohmdb.api.Db
+import griffon.annotations.core.Nonnull
+import griffon.annotations.inject.BindTo
+import griffon.core.GriffonApplication
+import griffon.plugins.ohmdb.DbHandler
+import griffon.plugins.ohmdb.OhmdbBootstrap
+import griffon.plugins.ohmdb.events.OhmdbStartupConnectEndEvent
+import griffon.test.core.GriffonUnitRule
+import org.junit.Rule
+import spock.lang.Specification
+
+import javax.application.event.EventHandler
+import javax.inject.Inject
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class OhmdbAddonSpec extends Specification {
+    static {
+        System.setProperty('org.slf4j.simpleLogger.defaultLogLevel', 'info')
+    }
+
+    @Rule
+    public final GriffonUnitRule griffon = new GriffonUnitRule()
+
+    @Inject
+    private GriffonApplication application
+
+    @Inject
+    private DbHandler dbHandler
+
+    @BindTo(OhmdbBootstrap)
+    private BlockingBootstrap bootstrap = new BlockingBootstrap()
+
+    void 'Startup connection reports the dataSources that failed to open'() {
+        given:
+        OhmdbAddon addon = findAddon()
+        StartupEventHandler handler = new StartupEventHandler()
+        application.eventRouter.subscribe(handler)
+
+        when:
+        addon.connect(['people', 'bogus'] as LinkedHashSet, 2, false)
+
+        then:
+        thrown(IllegalArgumentException)
+        handler.delivered.await(10, TimeUnit.SECONDS)
+        handler.event.dataSourceNames == ['people', 'bogus'] as Set
+        handler.event.failures.keySet() == ['bogus'] as Set
+        handler.event.failures.bogus instanceof IllegalArgumentException
+        addon.startupConnection.isCompletedExceptionally()
+        bootstrap.opened == ['people'] as Set
+
+        cleanup:
+        application.eventRouter.unsubscribe(handler)
+        dbHandler.closeOhmdb('people')
+    }
+
+    void 'Asynchronous startup connection opens dataSources in parallel and completes once all are open'() {
+        given:
+        OhmdbAddon addon = findAddon()
+        StartupEventHandler handler = new StartupEventHandler()
+        application.eventRouter.subscribe(handler)
+        bootstrap.release = new CountDownLatch(1)
+
+        when:
+        CompletableFuture<Set<String>> connection = addon.connect(['people', 'internal'] as LinkedHashSet, 2, true)
+
+        then:
+        // both dataSources are being opened at the same time, neither is done yet
+        bootstrap.entered.await(10, TimeUnit.SECONDS)
+        !connection.isDone()
+        addon.startupConnection.is(connection)
+        handler.delivered.count == 1
+
+        when:
+        bootstrap.release.countDown()
+
+        then:
+        connection.get(10, TimeUnit.SECONDS) == ['people', 'internal'] as Set
+        handler.delivered.await(10, TimeUnit.SECONDS)
+        handler.event.failures.isEmpty()
+        bootstrap.opened == ['people', 'internal'] as Set
+
+        cleanup:
+        bootstrap.release.countDown()
+        application.eventRouter.unsubscribe(handler)
+        dbHandler.closeOhmdb('people')
+        dbHandler.closeOhmdb('internal')
+    }
+
+    private OhmdbAddon findAddon() {
+        (OhmdbAddon) application.addonManager.addons.values().find { it instanceof OhmdbAddon }
+    }
+
+    private static class BlockingBootstrap implements OhmdbBootstrap {
+        final Set<String> opened = Collections.synchronizedSet(new LinkedHashSet<String>())
+        final CountDownLatch entered = new CountDownLatch(2)
+        volatile CountDownLatch release = new CountDownLatch(0)
+
+        @Override
+        void init(@Nonnull String dataSourceName, @Nonnull Db db) {
+            entered.countDown()
+            release.await(10, TimeUnit.SECONDS)
+            opened << dataSourceName
+        }
+
+        @Override
+        void destroy(@Nonnull String dataSourceName, @Nonnull Db db) {
+        }
+    }
+
+    private static class StartupEventHandler {
+        volatile OhmdbStartupConnectEndEvent event
+        final CountDownLatch delivered = new CountDownLatch(1)
+
+        @EventHandler
+        void handleOhmdbStartupConnectEndEvent(OhmdbStartupConnectEndEvent event) {
+            this.event = event
+            delivered.countDown()
+        }
+    }
+}
@@ -39,11 +39,62 @@ environments {
 
 dataSources {
     internal {
-        name = '${application_name}-internal.bin'
-        delete = true
+        storage = 'memory'
+        query_parallelism = 4
+        query_chunk_size = 256
     }
     people {
         name = '${application_name}-people.bin'
         delete = true
+        cache_size = 1000
+    }
+    durable {
+        name = '${application_name}-durable.bin'
+        delete = true
+        durability = 'sync'
     }
-}
\ No newline at end of file
+    exclusive {
+        storage = 'memory'
+        exclusive_callbacks = true
+    }
+    restored {
+        name = '${application_name}-restored.bin'
+        delete = true
+        close_after = 'people'
+        shutdown_timeout = 500
+        lease_timeout = 200
+    }
+    indexed {
+        name = '${application_name}-indexed.bin'
+        delete = true
+        indexes = ['griffon.plugins.ohmdb.Person': ['lastname', 'name']]
+    }
+    sharded {
+        name = '${application_name}-sharded.bin'
+        delete = true
+        shards = 3
+        async_pool_size = 1
+    }
+    replicated {
+        name = '${application_name}-replicated.bin'
+        delete = true
+        close_after = 'replica'
+        tables = ['griffon.plugins.ohmdb.Person']
+    }
+    replica {
+        name = '${application_name}-replica.bin'
+        delete = true
+        replica_of = 'replicated'
+        replica_interval = 60000
+    }
+    memory_replica {
+        storage = 'memory'
+        replica_of = 'replicated'
+        replica_interval = 60000
+    }
+    captured {
+        storage = 'memory'
+        cdc_batch_size = 2
+        cdc_events = true
+    }
+}
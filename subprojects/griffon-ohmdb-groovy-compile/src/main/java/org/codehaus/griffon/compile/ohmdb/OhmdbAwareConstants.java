@@ -36,10 +36,27 @@ public interface OhmdbAwareConstants extends BaseConstants {
     String DB_TYPE = "com.ohmdb.api.Db";
     String DB_HANDLER_TYPE = "griffon.plugins.ohmdb.DbHandler";
     String DB_CALLBACK_TYPE = "griffon.plugins.ohmdb.DbCallback";
+    String DB_BATCH_WRITER_TYPE = "griffon.plugins.ohmdb.DbBatchWriter";
+    String COMPLETABLE_FUTURE_TYPE = "java.util.concurrent.CompletableFuture";
+    String JAVA_LANG_CLASS = "java.lang.Class";
+    String IMPORT_FORMAT_TYPE = "griffon.plugins.ohmdb.ImportFormat";
+    String JAVA_IO_INPUT_STREAM = "java.io.InputStream";
+    String JAVA_LANG_OBJECT = "java.lang.Object";
+    String JAVA_UTIL_LIST = "java.util.List";
+    String LONG = "long";
+    String T = "T";
     String DB_HANDLER_PROPERTY = "dbHandler";
     String DB_HANDLER_FIELD_NAME = "this$" + DB_HANDLER_PROPERTY;
 
     String METHOD_WITH_DB = "withOhmdb";
+    String METHOD_WITH_DB_READ = "withOhmdbRead";
+    String METHOD_WITH_DB_REPLICA = "withOhmdbReplica";
+    String METHOD_WITH_DB_WRITE = "withOhmdbWrite";
+    String METHOD_WITH_DB_ASYNC = "withOhmdbAsync";
+    String METHOD_WITH_DB_SHARD = "withOhmdbShard";
+    String METHOD_WITH_DB_SHARDS = "withOhmdbShards";
+    String METHOD_WITH_DB_BATCH = "withOhmdbBatch";
+    String METHOD_IMPORT_INTO = "importInto";
     String METHOD_CLOSE_DB = "closeOhmdb";
     String DB_NAME = "dataSourceName";
     String CALLBACK = "callback";
@@ -70,6 +87,148 @@ public interface OhmdbAwareConstants extends BaseConstants {
             args(
                 annotatedType(annotations(ANNOTATION_NONNULL), JAVA_LANG_STRING),
                 annotatedType(annotations(ANNOTATION_NONNULL), DB_CALLBACK_TYPE, R))
+        ),
+
+        annotatedMethod(
+            annotations(ANNOTATION_NONNULL),
+            type(R),
+            typeParams(R),
+            METHOD_WITH_DB_READ,
+            args(annotatedType(annotations(ANNOTATION_NONNULL), DB_CALLBACK_TYPE, R))
+        ),
+        annotatedMethod(
+            types(type(ANNOTATION_NONNULL)),
+            type(R),
+            typeParams(R),
+            METHOD_WITH_DB_READ,
+            args(
+                annotatedType(annotations(ANNOTATION_NONNULL), JAVA_LANG_STRING),
+                annotatedType(annotations(ANNOTATION_NONNULL), DB_CALLBACK_TYPE, R))
+        ),
+
+        annotatedMethod(
+            annotations(ANNOTATION_NONNULL),
+            type(R),
+            typeParams(R),
+            METHOD_WITH_DB_REPLICA,
+            args(annotatedType(annotations(ANNOTATION_NONNULL), DB_CALLBACK_TYPE, R))
+        ),
+        annotatedMethod(
+            types(type(ANNOTATION_NONNULL)),
+            type(R),
+            typeParams(R),
+            METHOD_WITH_DB_REPLICA,
+            args(
+                annotatedType(annotations(ANNOTATION_NONNULL), JAVA_LANG_STRING),
+                annotatedType(annotations(ANNOTATION_NONNULL), DB_CALLBACK_TYPE, R))
+        ),
+
+        annotatedMethod(
+            annotations(ANNOTATION_NONNULL),
+            type(R),
+            typeParams(R),
+            METHOD_WITH_DB_WRITE,
+            args(annotatedType(annotations(ANNOTATION_NONNULL), DB_CALLBACK_TYPE, R))
+        ),
+        annotatedMethod(
+            types(type(ANNOTATION_NONNULL)),
+            type(R),
+            typeParams(R),
+            METHOD_WITH_DB_WRITE,
+            args(
+                annotatedType(annotations(ANNOTATION_NONNULL), JAVA_LANG_STRING),
+                annotatedType(annotations(ANNOTATION_NONNULL), DB_CALLBACK_TYPE, R))
+        ),
+
+        annotatedMethod(
+            annotations(ANNOTATION_NONNULL),
+            type(COMPLETABLE_FUTURE_TYPE, R),
+            typeParams(R),
+            METHOD_WITH_DB_ASYNC,
+            args(annotatedType(annotations(ANNOTATION_NONNULL), DB_CALLBACK_TYPE, R))
+        ),
+        annotatedMethod(
+            annotations(ANNOTATION_NONNULL),
+            type(COMPLETABLE_FUTURE_TYPE, R),
+            typeParams(R),
+            METHOD_WITH_DB_ASYNC,
+            args(
+                annotatedType(annotations(ANNOTATION_NONNULL), JAVA_LANG_STRING),
+                annotatedType(annotations(ANNOTATION_NONNULL), DB_CALLBACK_TYPE, R))
+        ),
+
+        annotatedMethod(
+            types(type(ANNOTATION_NONNULL)),
+            type(R),
+            typeParams(R),
+            METHOD_WITH_DB_SHARD,
+            args(
+                annotatedType(annotations(ANNOTATION_NONNULL), JAVA_LANG_OBJECT),
+                annotatedType(annotations(ANNOTATION_NONNULL), DB_CALLBACK_TYPE, R))
+        ),
+        annotatedMethod(
+            types(type(ANNOTATION_NONNULL)),
+            type(R),
+            typeParams(R),
+            METHOD_WITH_DB_SHARD,
+            args(
+                annotatedType(annotations(ANNOTATION_NONNULL), JAVA_LANG_STRING),
+                annotatedType(annotations(ANNOTATION_NONNULL), JAVA_LANG_OBJECT),
+                annotatedType(annotations(ANNOTATION_NONNULL), DB_CALLBACK_TYPE, R))
+        ),
+
+        annotatedMethod(
+            annotations(ANNOTATION_NONNULL),
+            type(JAVA_UTIL_LIST, R),
+            typeParams(R),
+            METHOD_WITH_DB_SHARDS,
+            args(annotatedType(annotations(ANNOTATION_NONNULL), DB_CALLBACK_TYPE, R))
+        ),
+        annotatedMethod(
+            annotations(ANNOTATION_NONNULL),
+            type(JAVA_UTIL_LIST, R),
+            typeParams(R),
+            METHOD_WITH_DB_SHARDS,
+            args(
+                annotatedType(annotations(ANNOTATION_NONNULL), JAVA_LANG_STRING),
+                annotatedType(annotations(ANNOTATION_NONNULL), DB_CALLBACK_TYPE, R))
+        ),
+
+        annotatedMethod(
+            annotations(ANNOTATION_NONNULL),
+            type(DB_BATCH_WRITER_TYPE, T),
+            typeParams(T),
+            METHOD_WITH_DB_BATCH,
+            args(annotatedType(annotations(ANNOTATION_NONNULL), JAVA_LANG_CLASS, T))
+        ),
+        annotatedMethod(
+            annotations(ANNOTATION_NONNULL),
+            type(DB_BATCH_WRITER_TYPE, T),
+            typeParams(T),
+            METHOD_WITH_DB_BATCH,
+            args(
+                annotatedType(annotations(ANNOTATION_NONNULL), JAVA_LANG_STRING),
+                annotatedType(annotations(ANNOTATION_NONNULL), JAVA_LANG_CLASS, T))
+        ),
+
+        method(
+            type(LONG),
+            typeParams(T),
+            METHOD_IMPORT_INTO,
+            args(
+                annotatedType(annotations(ANNOTATION_NONNULL), JAVA_LANG_CLASS, T),
+                annotatedType(annotations(ANNOTATION_NONNULL), JAVA_IO_INPUT_STREAM),
+                annotatedType(annotations(ANNOTATION_NONNULL), IMPORT_FORMAT_TYPE))
+        ),
+        method(
+            type(LONG),
+            typeParams(T),
+            METHOD_IMPORT_INTO,
+            args(
+                annotatedType(annotations(ANNOTATION_NONNULL), JAVA_LANG_STRING),
+                annotatedType(annotations(ANNOTATION_NONNULL), JAVA_LANG_CLASS, T),
+                annotatedType(annotations(ANNOTATION_NONNULL), JAVA_IO_INPUT_STREAM),
+                annotatedType(annotations(ANNOTATION_NONNULL), IMPORT_FORMAT_TYPE))
         )
     };
 }
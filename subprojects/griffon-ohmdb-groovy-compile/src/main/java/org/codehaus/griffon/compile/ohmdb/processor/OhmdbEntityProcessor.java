@@ -0,0 +1,305 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.compile.ohmdb.processor;
+
+import griffon.transform.ohmdb.OhmdbEntity;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Generates an {@code EntityAccessor} for every class annotated with {@link OhmdbEntity}. Properties are the public
+ * getter/setter pairs of the class (inherited ones included); the class must have a public no-args constructor and a
+ * {@code long getId()} method. Generated accessors are listed in
+ * {@code META-INF/services/griffon.plugins.ohmdb.EntityAccessor}.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+@SupportedAnnotationTypes("griffon.transform.ohmdb.OhmdbEntity")
+public class OhmdbEntityProcessor extends AbstractProcessor {
+    private static final String SERVICE_FILE = "META-INF/services/griffon.plugins.ohmdb.EntityAccessor";
+    private static final String ACCESSOR_SUFFIX = "OhmdbAccessor";
+
+    private final Set<String> accessors = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            if (!accessors.isEmpty()) {
+                writeServiceFile();
+            }
+            return false;
+        }
+
+        for (Element element : roundEnv.getElementsAnnotatedWith(OhmdbEntity.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "@OhmdbEntity can only be applied to classes");
+                continue;
+            }
+            TypeElement type = (TypeElement) element;
+            if (validate(type)) {
+                generate(type);
+            }
+        }
+        return true;
+    }
+
+    private boolean validate(TypeElement type) {
+        boolean valid = true;
+        if (type.getModifiers().contains(Modifier.ABSTRACT) || !type.getModifiers().contains(Modifier.PUBLIC)) {
+            error(type, "@OhmdbEntity classes must be public and concrete");
+            valid = false;
+        }
+        if (type.getNestingKind() != NestingKind.TOP_LEVEL && !type.getModifiers().contains(Modifier.STATIC)) {
+            error(type, "@OhmdbEntity classes must be top level or static nested classes");
+            valid = false;
+        }
+
+        boolean constructor = false;
+        for (ExecutableElement candidate : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (candidate.getParameters().isEmpty() && candidate.getModifiers().contains(Modifier.PUBLIC)) {
+                constructor = true;
+            }
+        }
+        if (!constructor) {
+            error(type, "@OhmdbEntity classes must define a public no-args constructor");
+            valid = false;
+        }
+
+        ExecutableElement id = getters(type).get("id");
+        if (id == null || id.getReturnType().getKind() != TypeKind.LONG) {
+            error(type, "@OhmdbEntity classes must define a public 'long getId()' method");
+            valid = false;
+        }
+        return valid;
+    }
+
+    private void generate(TypeElement type) {
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        String typeName = type.getQualifiedName().toString();
+        String simpleName = packageName.isEmpty() ? typeName : typeName.substring(packageName.length() + 1);
+        String accessorName = simpleName.replace('.', '_') + ACCESSOR_SUFFIX;
+        String qualifiedAccessorName = packageName.isEmpty() ? accessorName : packageName + "." + accessorName;
+
+        Map<String, ExecutableElement> getters = getters(type);
+        Map<String, ExecutableElement> setters = setters(type);
+        Set<String> properties = new TreeSet<>(getters.keySet());
+        properties.addAll(setters.keySet());
+
+        try (PrintWriter out = new PrintWriter(processingEnv.getFiler().createSourceFile(qualifiedAccessorName, type).openWriter())) {
+            if (!packageName.isEmpty()) {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+            out.println("/**");
+            out.println(" * Generated by " + getClass().getName() + " for {@code " + typeName + "}. Do not edit.");
+            out.println(" */");
+            out.println("public final class " + accessorName + " implements griffon.plugins.ohmdb.EntityAccessor<" + typeName + "> {");
+            out.println("    private static final java.util.List<String> PROPERTIES = java.util.Collections.unmodifiableList(java.util.Arrays.asList(");
+            int index = 0;
+            for (String property : properties) {
+                out.println("        \"" + property + "\"" + (++index < properties.size() ? "," : ""));
+            }
+            out.println("    ));");
+            out.println();
+            out.println("    @Override");
+            out.println("    public Class<" + typeName + "> getType() {");
+            out.println("        return " + typeName + ".class;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public " + typeName + " newInstance() {");
+            out.println("        return new " + typeName + "();");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public long getId(" + typeName + " entity) {");
+            out.println("        return entity.getId();");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public java.util.List<String> getProperties() {");
+            out.println("        return PROPERTIES;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public Class<?> getPropertyType(String property) {");
+            out.println("        switch (property) {");
+            for (String property : properties) {
+                ExecutableElement getter = getters.get(property);
+                TypeMirror propertyType = getter != null ? getter.getReturnType() : setters.get(property).getParameters().get(0).asType();
+                out.println("            case \"" + property + "\":");
+                out.println("                return " + erasure(propertyType) + ".class;");
+            }
+            out.println("            default:");
+            out.println("                return null;");
+            out.println("        }");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public java.util.function.Function<" + typeName + ", Object> getter(String property) {");
+            out.println("        switch (property) {");
+            for (Map.Entry<String, ExecutableElement> e : getters.entrySet()) {
+                out.println("            case \"" + e.getKey() + "\":");
+                out.println("                return " + typeName + "::" + e.getValue().getSimpleName() + ";");
+            }
+            out.println("            default:");
+            out.println("                return null;");
+            out.println("        }");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public java.util.function.BiConsumer<" + typeName + ", Object> setter(String property) {");
+            out.println("        switch (property) {");
+            for (Map.Entry<String, ExecutableElement> e : setters.entrySet()) {
+                TypeMirror parameterType = e.getValue().getParameters().get(0).asType();
+                out.println("            case \"" + e.getKey() + "\":");
+                out.println("                return (entity, value) -> entity." + e.getValue().getSimpleName() + "((" + boxed(parameterType) + ") value);");
+            }
+            out.println("            default:");
+            out.println("                return null;");
+            out.println("        }");
+            out.println("    }");
+            out.println("}");
+        } catch (IOException e) {
+            error(type, "Could not generate " + qualifiedAccessorName + ": " + e.getMessage());
+            return;
+        }
+        accessors.add(qualifiedAccessorName);
+    }
+
+    private Map<String, ExecutableElement> getters(TypeElement type) {
+        Map<String, ExecutableElement> getters = new LinkedHashMap<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+            if (!isInstanceMethod(method) || !method.getParameters().isEmpty() || method.getReturnType().getKind() == TypeKind.VOID) {
+                continue;
+            }
+            String name = method.getSimpleName().toString();
+            if (name.startsWith("get") && name.length() > 3 && !"getClass".equals(name)) {
+                getters.put(propertyName(name.substring(3)), method);
+            } else if (name.startsWith("is") && name.length() > 2 && method.getReturnType().getKind() == TypeKind.BOOLEAN) {
+                getters.put(propertyName(name.substring(2)), method);
+            }
+        }
+        return getters;
+    }
+
+    private Map<String, ExecutableElement> setters(TypeElement type) {
+        Map<String, ExecutableElement> setters = new LinkedHashMap<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+            String name = method.getSimpleName().toString();
+            if (isInstanceMethod(method) && method.getParameters().size() == 1 && name.startsWith("set") && name.length() > 3) {
+                setters.put(propertyName(name.substring(3)), method);
+            }
+        }
+        return setters;
+    }
+
+    private static boolean isInstanceMethod(ExecutableElement method) {
+        Set<Modifier> modifiers = method.getModifiers();
+        return modifiers.contains(Modifier.PUBLIC) && !modifiers.contains(Modifier.STATIC);
+    }
+
+    private static String propertyName(String suffix) {
+        // follows java.beans.Introspector.decapitalize
+        if (suffix.length() > 1 && Character.isUpperCase(suffix.charAt(1)) && Character.isUpperCase(suffix.charAt(0))) {
+            return suffix;
+        }
+        return Character.toLowerCase(suffix.charAt(0)) + suffix.substring(1);
+    }
+
+    private String erasure(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    private String boxed(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return processingEnv.getTypeUtils().boxedClass((PrimitiveType) type).getQualifiedName().toString();
+        }
+        return erasure(type);
+    }
+
+    private void writeServiceFile() {
+        Filer filer = processingEnv.getFiler();
+        // keep entries written by earlier, incremental compilations
+        try {
+            FileObject existing = filer.getResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(existing.openInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (!line.isEmpty() && !line.startsWith("#")) {
+                        accessors.add(line);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // no previous entries
+        }
+
+        try {
+            FileObject file = filer.createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (Writer writer = file.openWriter()) {
+                for (String accessor : accessors) {
+                    writer.write(accessor);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not write " + SERVICE_FILE + ": " + e.getMessage());
+        }
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -54,9 +54,12 @@ class OhmdbAwareASTTransformationSpec extends Specification {
         GroovyShell shell = new GroovyShell()
 
         when:
-        def bean = shell.evaluate('''import griffon.plugins.ohmdb.DbCallback
+        def bean = shell.evaluate('''import griffon.plugins.ohmdb.DbBatchWriter
+        import griffon.plugins.ohmdb.DbCallback
         import griffon.plugins.ohmdb.DbHandler
+        import griffon.plugins.ohmdb.ImportFormat
         import griffon.annotations.core.Nonnull
+        import java.util.concurrent.CompletableFuture
         @griffon.transform.ohmdb.OhmdbAware
         class DbHandlerBean implements DbHandler {
             @Override
@@ -67,6 +70,70 @@ class OhmdbAwareASTTransformationSpec extends Specification {
              <R> R withOhmdb(@Nonnull String dataSourceName, @Nonnull DbCallback<R> callback) {
                  return null
             }
+            @Override
+             <R> R withOhmdbRead(@Nonnull DbCallback<R> callback) {
+                return null
+            }
+            @Override
+             <R> R withOhmdbRead(@Nonnull String dataSourceName, @Nonnull DbCallback<R> callback) {
+                return null
+            }
+            @Override
+             <R> R withOhmdbReplica(@Nonnull DbCallback<R> callback) {
+                return null
+            }
+            @Override
+             <R> R withOhmdbReplica(@Nonnull String dataSourceName, @Nonnull DbCallback<R> callback) {
+                return null
+            }
+            @Override
+             <R> R withOhmdbWrite(@Nonnull DbCallback<R> callback) {
+                return null
+            }
+            @Override
+             <R> R withOhmdbWrite(@Nonnull String dataSourceName, @Nonnull DbCallback<R> callback) {
+                return null
+            }
+            @Override
+             <R> CompletableFuture<R> withOhmdbAsync(@Nonnull DbCallback<R> callback) {
+                return null
+            }
+            @Override
+             <R> CompletableFuture<R> withOhmdbAsync(@Nonnull String dataSourceName, @Nonnull DbCallback<R> callback) {
+                return null
+            }
+            @Override
+             <R> R withOhmdbShard(@Nonnull Object key, @Nonnull DbCallback<R> callback) {
+                return null
+            }
+            @Override
+             <R> R withOhmdbShard(@Nonnull String dataSourceName, @Nonnull Object key, @Nonnull DbCallback<R> callback) {
+                return null
+            }
+            @Override
+             <R> List<R> withOhmdbShards(@Nonnull DbCallback<R> callback) {
+                return null
+            }
+            @Override
+             <R> List<R> withOhmdbShards(@Nonnull String dataSourceName, @Nonnull DbCallback<R> callback) {
+                return null
+            }
+            @Override
+             <T> DbBatchWriter<T> withOhmdbBatch(@Nonnull Class<T> type) {
+                return null
+            }
+            @Override
+             <T> DbBatchWriter<T> withOhmdbBatch(@Nonnull String dataSourceName, @Nonnull Class<T> type) {
+                return null
+            }
+            @Override
+            <T> long importInto(@Nonnull Class<T> type, @Nonnull InputStream input, @Nonnull ImportFormat format) {
+                return 0L
+            }
+            @Override
+            <T> long importInto(@Nonnull String dataSourceName, @Nonnull Class<T> type, @Nonnull InputStream input, @Nonnull ImportFormat format) {
+                return 0L
+            }
             @Override
             void closeOhmdb(){}
             @Override
@@ -0,0 +1,88 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.compile.ohmdb.processor
+
+import griffon.plugins.ohmdb.EntityAccessor
+import spock.lang.Specification
+
+import javax.tools.JavaCompiler
+import javax.tools.ToolProvider
+import java.nio.file.Files
+import java.nio.file.Path
+
+/**
+ * @author Andres Almiray
+ */
+class OhmdbEntityProcessorSpec extends Specification {
+    def 'OhmdbEntityProcessor generates an EntityAccessor for @OhmdbEntity classes'() {
+        given:
+        Path sources = Files.createTempDirectory('ohmdb-sources')
+        Path classes = Files.createTempDirectory('ohmdb-classes')
+        Path source = sources.resolve('com/acme/Person.java')
+        Files.createDirectories(source.parent)
+        source.text = '''
+        package com.acme;
+
+        @griffon.transform.ohmdb.OhmdbEntity
+        public class Person {
+            private long id;
+            private String name;
+            private int age;
+            private boolean active;
+
+            public long getId() { return id; }
+            public void setId(long id) { this.id = id; }
+            public String getName() { return name; }
+            public void setName(String name) { this.name = name; }
+            public int getAge() { return age; }
+            public void setAge(int age) { this.age = age; }
+            public boolean isActive() { return active; }
+            public void setActive(boolean active) { this.active = active; }
+        }
+        '''
+        JavaCompiler compiler = ToolProvider.systemJavaCompiler
+
+        when:
+        int status = compiler.run(null, null, null,
+            '-processor', OhmdbEntityProcessor.name,
+            '-classpath', System.getProperty('java.class.path'),
+            '-d', classes.toString(),
+            source.toString())
+        URLClassLoader classLoader = new URLClassLoader([classes.toUri().toURL()] as URL[], getClass().classLoader)
+        EntityAccessor accessor = ServiceLoader.load(EntityAccessor, classLoader).iterator().next()
+        def person = accessor.newInstance()
+        accessor.setter('name').accept(person, 'Andres')
+        accessor.setter('age').accept(person, 42)
+        accessor.setter('active').accept(person, true)
+        accessor.setter('id').accept(person, 7L)
+
+        then:
+        status == 0
+        accessor.type.name == 'com.acme.Person'
+        accessor.getProperties() == ['active', 'age', 'id', 'name']
+        accessor.getPropertyType('age') == int
+        accessor.getId(person) == 7L
+        accessor.getter('name').apply(person) == 'Andres'
+        accessor.getter('age').apply(person) == 42
+        accessor.getter('active').apply(person) == true
+        accessor.getter('unknown') == null
+
+        cleanup:
+        classLoader?.close()
+    }
+}